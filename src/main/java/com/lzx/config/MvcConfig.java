@@ -24,8 +24,10 @@ public class MvcConfig implements WebMvcConfigurer {
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // 刷新登录状态拦截器, 对所有请求都生效
+        // 店铺类型列表直接返回内存中的快照，不需要登录用户，也不访问 Redis
         registry.addInterceptor(refreshTokenInterceptor)
                 .addPathPatterns("/**")
+                .excludePathPatterns("/shopTypes/list")
                 .order(0);
         // 登录拦截器
         registry.addInterceptor(loginInterceptor)
@@ -36,7 +38,8 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/shopTypes/list",
                         "/doc.html",
                         "/webjars/**",
-                        "/v3/**"
+                        "/v3/**",
+                        "/actuator/**"
                 )
                 .order(1);
 
@@ -0,0 +1,85 @@
+package com.lzx.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 配置类
+ */
+@Slf4j
+@Configuration
+public class RedisConfig {
+
+    // 订阅启动失败后的重试间隔，单位秒
+    private static final long SUBSCRIBE_RETRY_SECONDS = 5L;
+
+    /**
+     * Redis 消息监听容器，所有的 pub/sub 订阅共用这一个容器（一条订阅连接）
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RetryingMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    /**
+     * 缓存专用的 RedisTemplate，键是字符串，值是原始字节，由 CacheCodecs 负责编解码
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> cacheRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    /**
+     * 启动失败时不阻塞应用启动的监听容器
+     * 默认的容器在启动时连不上 Redis 会直接抛异常导致应用启动失败，这里改为记录日志并在后台重试订阅。
+     * 启动成功之后的断线重连由容器自身的 recovery 机制负责。
+     */
+    private static class RetryingMessageListenerContainer extends RedisMessageListenerContainer {
+
+        private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-subscribe-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private volatile boolean destroyed = false;
+
+        @Override
+        public void start() {
+            if (destroyed) {
+                return;
+            }
+            try {
+                super.start();
+            } catch (Exception e) {
+                log.error("Redis 订阅启动失败，{} 秒后重试：{}", SUBSCRIBE_RETRY_SECONDS, e.getMessage());
+                super.stop();
+                retryExecutor.schedule(this::start, SUBSCRIBE_RETRY_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+
+        @Override
+        public void destroy() throws Exception {
+            destroyed = true;
+            retryExecutor.shutdownNow();
+            super.destroy();
+        }
+    }
+}
@@ -8,6 +8,8 @@ public class SystemConstants {
     public static final String USER_NICK_NAME_PREFIX = "user_";
     // 登录拦截器，从请求头中获取 token 键名
     public static final String HEADER_TOKEN_KEY = "authorization";
+    // 登录用户保存在请求属性中的键名，异步请求再次分派时从这里恢复用户，不用再查询 Redis
+    public static final String REQUEST_USER_ATTRIBUTE = "zxdp.loginUser";
 
     // 最早点赞的 n 个人
     public static final int DEFAULT_PAGE_SIZE = 5;
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.stereotype.Controller;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 博客接口
@@ -56,10 +57,9 @@ public class BlogController {
      * @return 博客实体
      */
     @GetMapping("/{id}")
-    public Result<Blog> getBlogDetail(@PathVariable Long id) {
+    public CompletableFuture<Result<Blog>> getBlogDetail(@PathVariable Long id) {
         log.debug("查询博客详情");
-        Blog blog = blogService.getById(id);
-        return Result.success("查询博客详情成功", blog);
+        return blogService.getByIdAsync(id).thenApply(blog -> Result.success("查询博客详情成功", blog));
     }
 
     /**
@@ -0,0 +1,38 @@
+package com.lzx.controller;
+
+import com.lzx.dto.HotKeyDTO;
+import com.lzx.redis.HotKeyDetector;
+import com.lzx.result.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 热点键接口，供运维查看当前的热点键
+ */
+@Slf4j
+@RestController
+@RequestMapping("/hotKeys")
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class HotKeyController {
+
+    private final HotKeyDetector hotKeyDetector;
+
+    /**
+     * 查询访问次数最多的键
+     *
+     * @param limit 返回数量
+     * @return 热点键列表，按访问次数从高到低排列
+     */
+    @GetMapping
+    public Result<List<HotKeyDTO>> list(@RequestParam(value = "limit", defaultValue = "20") Integer limit) {
+        log.info("查询热点键：{}", limit);
+        return Result.success("查询热点键成功", hotKeyDetector.topKeys(limit));
+    }
+}
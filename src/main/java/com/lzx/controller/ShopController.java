@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.stereotype.Controller;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 商户接口
@@ -23,16 +24,15 @@ public class ShopController {
     private final ShopService shopService;
 
     /**
-     * 根据 ID 查询商户详情
+     * 根据 ID 查询商户详情，异步返回，等待 Redis 和数据库时不占用 Web 线程
      *
      * @param id 商户 ID
      * @return 商户实体类
      */
     @GetMapping("/{id}")
-    public Result<Shop> getShopById(@PathVariable("id") Long id) {
+    public CompletableFuture<Result<Shop>> getShopById(@PathVariable("id") Long id) {
         log.info("根据 ID 查询商户详情，id：{}", id);
-        Shop shop = shopService.getById(id);
-        return Result.success("获取商户详情成功", shop);
+        return shopService.getByIdAsync(id).thenApply(shop -> Result.success("获取商户详情成功", shop));
     }
 
     /**
@@ -1,18 +1,20 @@
 package com.lzx.controller;
 
-import com.lzx.entity.ShopType;
+import com.lzx.dto.ShopTypeSnapshot;
 import com.lzx.result.Result;
 import com.lzx.service.ShopTypeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 /**
  * 店铺类型接口
  */
@@ -26,12 +28,31 @@ public class ShopTypeController {
 
     /**
      * 获取所有店铺类型列表
+     * 直接返回快照中预先序列化好的响应体，带上 ETag；
+     * 请求头 If-None-Match 与 ETag 相同时，Spring 会返回 304，不再发送响应体
      *
      * @return 所有店铺类型实体列表
      */
     @GetMapping("/list")
-    public Result<List<ShopType>> list() {
-        log.info("获取所有店铺类型列表");
-        return Result.success("获取所有店铺类型列表成功", shopTypeService.getList());
+    public ResponseEntity<byte[]> list() {
+        log.debug("获取所有店铺类型列表");
+        ShopTypeSnapshot snapshot = shopTypeService.getSnapshot();
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.body());
+    }
+
+    /**
+     * 直接修改数据库中的店铺类型之后调用，删除列表缓存并通知所有节点重新加载快照，不需要等待定期轮询
+     *
+     * @return 刷新结果
+     */
+    @PostMapping("/refresh")
+    public Result<Void> refresh() {
+        log.info("刷新店铺类型快照");
+        shopTypeService.publishChange();
+        return Result.success("刷新店铺类型成功");
     }
 }
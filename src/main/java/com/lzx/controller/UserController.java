@@ -1,5 +1,6 @@
 package com.lzx.controller;
 
+import com.lzx.constant.SystemConstants;
 import com.lzx.dto.LoginFormDTO;
 import com.lzx.dto.UserDTO;
 import com.lzx.result.Result;
@@ -49,6 +50,19 @@ public class UserController {
         return Result.success("登录成功", token);
     }
 
+    /**
+     * 登出
+     *
+     * @param token 登录凭证
+     * @return 登出成功
+     */
+    @PostMapping("/logout")
+    public Result<Void> logout(@RequestHeader(value = SystemConstants.HEADER_TOKEN_KEY, required = false) String token) {
+        log.info("登出");
+        userService.logout(token);
+        return Result.success("登出成功");
+    }
+
     /**
      * 获取当前登录用户信息
      *
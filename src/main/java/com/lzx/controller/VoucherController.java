@@ -6,9 +6,12 @@ import com.lzx.service.VoucherService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -34,4 +37,18 @@ public class VoucherController {
         Long id = voucherService.addSeckillVoucher(voucher);
         return Result.success("新增秒杀券成功", id);
     }
+
+    /**
+     * 补充秒杀券库存，同时清除所有节点的售罄标记
+     *
+     * @param id     秒杀券 ID
+     * @param amount 补充的数量
+     * @return 补充结果
+     */
+    @PutMapping("/seckill/{id}/stock")
+    public Result<Void> addSeckillStock(@PathVariable("id") Long id, @RequestParam("amount") Integer amount) {
+        log.info("补充秒杀券库存，id：{}，amount：{}", id, amount);
+        voucherService.addSeckillStock(id, amount);
+        return Result.success("补充秒杀券库存成功");
+    }
 }
@@ -2,6 +2,7 @@ package com.lzx.controller;
 
 import com.lzx.result.Result;
 import com.lzx.service.VoucherOrderService;
+import com.lzx.task.SeckillOrderRecovery;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +19,7 @@ import org.springframework.stereotype.Controller;
 public class VoucherOrderController {
 
     private final VoucherOrderService voucherOrderService;
+    private final SeckillOrderRecovery seckillOrderRecovery;
 
     /**
      * 秒杀券下单接口
@@ -32,4 +34,25 @@ public class VoucherOrderController {
         return Result.success("秒杀券下单成功", orderId);
     }
 
+    /**
+     * 查询秒杀订单死信队列中的消息数
+     *
+     * @return 消息数
+     */
+    @GetMapping("/seckill/dlq")
+    public Result<Long> deadLetterSize() {
+        return Result.success("查询秒杀订单死信队列成功", seckillOrderRecovery.deadLetterSize());
+    }
+
+    /**
+     * 把秒杀订单死信队列中最早的一批消息放回订单队列，重新处理
+     *
+     * @param count 本批最多重放的消息数
+     * @return 实际重放的消息数
+     */
+    @PostMapping("/seckill/dlq/replay")
+    public Result<Integer> replayDeadLetters(@RequestParam(value = "count", defaultValue = "100") Integer count) {
+        log.info("重放秒杀订单死信消息，count：{}", count);
+        return Result.success("重放秒杀订单死信消息成功", seckillOrderRecovery.replayDeadLetters(count));
+    }
 }
@@ -0,0 +1,19 @@
+package com.lzx.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HotKeyDTO {
+    // 缓存键
+    private String key;
+    // 本节点在统计窗口内的访问次数（估计值）
+    private Long localCount;
+    // 所有节点在统计窗口内的访问次数，未启用集群汇总时为 0
+    private Long clusterCount;
+    // 是否已经复制到本地缓存
+    private Boolean pinned;
+}
@@ -0,0 +1,16 @@
+package com.lzx.dto;
+
+import com.lzx.entity.ShopType;
+
+import java.util.List;
+
+/**
+ * 店铺类型快照，创建之后不再修改，店铺类型变化时整体替换
+ *
+ * @param version 版本号，与 Redis 中的版本号一致，Redis 不可用时加载的快照为 -1
+ * @param list    店铺类型列表，不可修改
+ * @param body    预先序列化好的响应体（JSON）
+ * @param etag    响应体的 ETag，按内容计算，各节点相同内容的 ETag 相同
+ */
+public record ShopTypeSnapshot(long version, List<ShopType> list, byte[] body, String etag) {
+}
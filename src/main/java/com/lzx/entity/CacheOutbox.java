@@ -0,0 +1,53 @@
+package com.lzx.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * <p>
+ * 缓存失效发件箱实体类，与业务数据在同一个事务中写入，提交后由后台任务删除对应的缓存
+ * </p>
+ */
+@Getter
+@Setter
+@TableName("tb_cache_outbox")
+public class CacheOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 需要删除的缓存键
+     */
+    private String cacheKey;
+
+    /**
+     * 已完成的删除次数：0 还没删除，1 第一次删除已完成、等待延迟双删
+     */
+    private Integer deleteCount;
+
+    /**
+     * 失败重试次数
+     */
+    private Integer retryCount;
+
+    /**
+     * 下一次处理的时间
+     */
+    private LocalDateTime nextTime;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,15 @@
+package com.lzx.exception;
+
+/**
+ * Redis 不可用异常类：熔断器打开，或者 Redis 调用超时、连接失败
+ * 调用方可以捕获后降级，没有降级的会按普通业务异常返回给前端
+ */
+public class RedisUnavailableException extends BaseException {
+    public RedisUnavailableException(String message) {
+        super(message);
+    }
+
+    public RedisUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,10 +2,14 @@ package com.lzx.interceptor;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
+import com.lzx.redis.LocalCache;
+import com.lzx.redis.RedisCircuitBreaker;
 import com.lzx.redis.RedisConstants;
 import com.lzx.constant.SystemConstants;
 import com.lzx.dto.UserDTO;
+import com.lzx.exception.RedisUnavailableException;
 import com.lzx.utils.UserHolder;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -13,25 +17,38 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 刷新登录状态拦截器
+ * Redis 不可用时使用本地最近保存的登录用户旧副本，不刷新过期时间；旧副本只在很短的时间内有效，登出时删除
+ * 异步接口（返回 CompletableFuture）结果写回时会再次分派请求，这时直接从请求属性中恢复用户
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor(onConstructor_ = {@Autowired})
-public class RefreshTokenInterceptor implements HandlerInterceptor {
+public class RefreshTokenInterceptor implements AsyncHandlerInterceptor {
 
     private final StringRedisTemplate stringRedisTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final LocalCache localCache;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
         log.info("刷新登录状态拦截器 preHandle 方法被调用，请求路径：{}", request.getRequestURI());
 
+        // 0、异步请求再次分派，恢复第一次分派时查询到的用户
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            Object user = request.getAttribute(SystemConstants.REQUEST_USER_ATTRIBUTE);
+            if (user instanceof UserDTO userDTO) {
+                UserHolder.saveUser(userDTO);
+            }
+            return true;
+        }
+
         // 1、获取请求头中的 token
         String token = request.getHeader(SystemConstants.HEADER_TOKEN_KEY);
         if (StrUtil.isBlank(token)) {
@@ -45,7 +62,19 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         String redisKey = RedisConstants.LOGIN_USER_KEY + token;
 
         // 2.2 从 redis 中获取用户信息
-        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(redisKey);
+        Map<Object, Object> entries;
+        try {
+            entries = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForHash().entries(redisKey));
+        } catch (RedisUnavailableException e) {
+            // Redis 不可用，使用本地最近保存的旧副本，没有旧副本或者保存太久的当作未登录
+            UserDTO stale = localCache.getStale(redisKey, RedisConstants.LOCAL_STALE_LOGIN_TTL, TimeUnit.SECONDS);
+            if (stale != null) {
+                log.debug("Redis 不可用，使用本地保存的登录状态，用户：{}", stale.getId());
+                UserHolder.saveUser(stale);
+                request.setAttribute(SystemConstants.REQUEST_USER_ATTRIBUTE, stale);
+            }
+            return true;
+        }
         if (entries.isEmpty()) {
             // 用户不存在，直接放行
             log.info("用户不存在，直接放行请求：{}", request.getRequestURI());
@@ -57,11 +86,17 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         // 保存到 ThreadLocal
         log.info("用户存在，用户信息：{}", user);
         UserHolder.saveUser(user);
+        request.setAttribute(SystemConstants.REQUEST_USER_ATTRIBUTE, user);
+        localCache.putStale(redisKey, user);
 
-        // 4、刷新 token 过期时间
+        // 4、刷新 token 过期时间，失败时不影响这次请求
         log.info("刷新 token 过期时间");
         // TODO 后面需要改为分钟
-        stringRedisTemplate.expire(redisKey, RedisConstants.LOGIN_USER_TTL, TimeUnit.DAYS);
+        try {
+            redisCircuitBreaker.run(() -> stringRedisTemplate.expire(redisKey, RedisConstants.LOGIN_USER_TTL, TimeUnit.DAYS));
+        } catch (RedisUnavailableException e) {
+            log.warn("Redis 不可用，跳过刷新 token 过期时间");
+        }
 
         // 5、校验通过，放行
         return true;
@@ -72,4 +107,10 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         // 移除 ThreadLocal 中的用户
         UserHolder.removeUser();
     }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 异步处理开始后，这个线程会被放回线程池，不会调用 afterCompletion，在这里移除 ThreadLocal 中的用户
+        UserHolder.removeUser();
+    }
 }
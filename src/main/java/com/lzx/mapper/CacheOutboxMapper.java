@@ -0,0 +1,13 @@
+package com.lzx.mapper;
+
+import com.lzx.entity.CacheOutbox;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 缓存失效发件箱 Mapper 接口
+ */
+@Mapper
+public interface CacheOutboxMapper extends BaseMapper<CacheOutbox> {
+
+}
@@ -3,6 +3,10 @@ package com.lzx.mapper;
 import com.lzx.entity.Shop;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
 /**
  * <p>
@@ -15,4 +19,14 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface ShopMapper extends BaseMapper<Shop> {
 
+    /**
+     * 流式读取所有商户，用于缓存预热
+     * fetchSize 为 Integer.MIN_VALUE 时，MySQL 驱动逐行从服务端读取，不会一次把整张表加载到内存
+     * 游标只能在连接打开期间使用，调用方需要在事务中遍历
+     *
+     * @return 商户游标
+     */
+    @Select("SELECT * FROM tb_shop ORDER BY id")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<Shop> scanAll();
 }
@@ -3,8 +3,11 @@ package com.lzx.mapper;
 import com.lzx.entity.VoucherOrder;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
+
 /**
  * <p>
  * Mapper 接口
@@ -28,4 +31,12 @@ public interface VoucherOrderMapper extends BaseMapper<VoucherOrder> {
      */
     @Select("SELECT COUNT(*) FROM tb_voucher_order WHERE user_id = #{userId} AND voucher_id = #{voucherId} FOR UPDATE")
     Long countByUserIdAndVoucherId(Long userId, Long voucherId);
+
+    /**
+     * 批量插入订单，使用一条多行 INSERT 语句
+     *
+     * @param orders 订单列表，不能为空
+     * @return 插入的行数
+     */
+    int insertBatch(@Param("orders") List<VoucherOrder> orders);
 }
@@ -0,0 +1,300 @@
+package com.lzx.redis;
+
+import com.lzx.exception.BaseException;
+import com.lzx.exception.RedisUnavailableException;
+import com.lzx.redis.codec.CacheCodecs;
+import com.lzx.redis.codec.CacheValue;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 异步缓存客户端，返回 CompletableFuture，不占用 Web 线程等待 Redis 和数据库
+ * 1. 本地缓存命中、Redis 命中时全程不阻塞：使用单独的一条 Lettuce 连接发送异步命令（多个请求共用一条连接），
+ * 解码在 Lettuce 的事件线程中完成
+ * 2. 未命中、数据格式不兼容时，交给 {@link CacheClient} 在回源线程池中处理，
+ * 单飞合并、互斥锁都与同步版本一致；Redis 不可用时直接降级（本地旧副本、限流回源数据库）
+ * 3. 回源线程池的线程数有上限，队列满了直接返回系统繁忙，避免数据库变慢时堆积请求
+ * 4. 异步连接还没建立（例如启动时 Redis 不可用）时，所有查询都走回源线程池
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class AsyncCacheClient {
+
+    // 异步连接建立失败后，重新连接的间隔，单位秒
+    private static final long RECONNECT_DELAY_SECONDS = 30L;
+
+    private final LettuceConnectionFactory lettuceConnectionFactory;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final CacheClient cacheClient;
+    private final CacheCodecs cacheCodecs;
+    private final LocalCache localCache;
+    private final HotKeyDetector hotKeyDetector;
+    private final CacheMetrics cacheMetrics;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    // Redis 命令超时时间，与同步客户端一致
+    @Value("${spring.data.redis.timeout:1s}")
+    private Duration commandTimeout;
+
+    // 回源线程池的线程数，同时也是异步查询回源数据库的最大并发数
+    @Value("${zxdp.cache.async.threads:16}")
+    private int threads;
+
+    // 回源线程池排队任务的上限
+    @Value("${zxdp.cache.async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private volatile StatefulRedisConnection<String, byte[]> connection;
+
+    // 回源线程池：查询数据库、同步客户端等阻塞操作都在这里执行，不能在 Lettuce 的事件线程中执行
+    private ThreadPoolExecutor executor;
+
+    // 建立异步连接的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "async-cache-connect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "async-cache-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        // 在后台建立连接，Redis 不可用时不影响应用启动
+        scheduler.execute(this::connect);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        executor.shutdown();
+        StatefulRedisConnection<String, byte[]> current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * 在回源线程池中执行阻塞操作（查询数据库等）
+     *
+     * @param task 阻塞操作
+     * @return 执行结果，线程池已满时以 {@link BaseException} 结束
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new BaseException("系统繁忙，请稍后重试"));
+        }
+    }
+
+    /**
+     * 缓存穿透解决方案：缓存空对象，异步版本，参数与 {@link CacheClient#queryWithPassThrough} 一致
+     *
+     * @return 缓存值
+     */
+    public <T, ID> CompletableFuture<T> queryWithPassThrough(String keyPrefix, ID id, Class<T> clazz, Function<ID, T> dbFallback, Long timeout, TimeUnit unit) {
+        String key = keyPrefix + id;
+        Supplier<T> blocking = () -> cacheClient.queryWithPassThrough(keyPrefix, id, clazz, dbFallback, timeout, unit);
+
+        // 1. 查询本地缓存
+        boolean useLocal = useLocalCache(keyPrefix, key);
+        if (useLocal) {
+            T local = localCache.get(key);
+            if (local != null) {
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_PASS_THROUGH, CacheMetrics.RESULT_LOCAL_HIT);
+                return CompletableFuture.completedFuture(local);
+            }
+        }
+        long stamp = localCache.stamp();
+
+        // 2. 异步查询 Redis，命中直接返回，空值说明数据库中不存在
+        return get(key).<CompletableFuture<T>>handle((bytes, e) -> {
+            if (e != null) {
+                return onRedisError(e, key, CacheMetrics.STRATEGY_PASS_THROUGH, () -> dbFallback.apply(id), blocking);
+            }
+            if (bytes == null) {
+                // 3. 未命中，交给同步客户端回源
+                return supply(blocking);
+            }
+            if (bytes.length == 0) {
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_PASS_THROUGH, CacheMetrics.RESULT_NULL_HIT);
+                return CompletableFuture.completedFuture(null);
+            }
+            CacheValue<T> cacheValue = cacheCodecs.decode(key, bytes, clazz);
+            if (cacheValue == null) {
+                return supply(blocking);
+            }
+            T data = cacheValue.data();
+            cacheMetrics.request(key, CacheMetrics.STRATEGY_PASS_THROUGH, CacheMetrics.RESULT_HIT);
+            if (useLocal) {
+                localCache.put(keyPrefix, key, data, stamp);
+            }
+            localCache.putStale(key, data);
+            return CompletableFuture.completedFuture(data);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * 缓存击穿解决方案：逻辑过期 + 概率提前刷新，异步版本，参数与 {@link CacheClient#queryWithEarlyRefresh} 一致
+     *
+     * @return 缓存值
+     */
+    public <T, ID> CompletableFuture<T> queryWithEarlyRefresh(String keyPrefix, ID id, Class<T> clazz, Function<ID, T> dbFallback, Long timeout, TimeUnit unit, String lockKeyPrefix) {
+        String key = keyPrefix + id;
+        Supplier<T> blocking = () -> cacheClient.queryWithEarlyRefresh(keyPrefix, id, clazz, dbFallback, timeout, unit, lockKeyPrefix);
+
+        // 1. 查询本地缓存，本地副本的过期时间不会超过逻辑过期时间
+        boolean useLocal = useLocalCache(keyPrefix, key);
+        if (useLocal) {
+            T local = localCache.get(key);
+            if (local != null) {
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_EARLY_REFRESH, CacheMetrics.RESULT_LOCAL_HIT);
+                return CompletableFuture.completedFuture(local);
+            }
+        }
+        long stamp = localCache.stamp();
+
+        // 2. 异步查询 Redis
+        return get(key).<CompletableFuture<T>>handle((bytes, e) -> {
+            if (e != null) {
+                return onRedisError(e, key, CacheMetrics.STRATEGY_EARLY_REFRESH, () -> dbFallback.apply(id), blocking);
+            }
+            if (bytes != null && bytes.length == 0) {
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_EARLY_REFRESH, CacheMetrics.RESULT_NULL_HIT);
+                return CompletableFuture.completedFuture(null);
+            }
+            CacheValue<T> cacheValue = bytes == null ? null : cacheCodecs.decodeLogical(key, bytes, clazz);
+            if (cacheValue == null) {
+                // 3. 未命中或者数据格式不兼容，交给同步客户端回源
+                return supply(blocking);
+            }
+
+            // 4. 命中缓存，按概率决定是否提前刷新，获取互斥锁是阻塞操作，放到回源线程池中执行
+            T data = cacheValue.data();
+            long now = System.currentTimeMillis();
+            cacheMetrics.request(key, CacheMetrics.STRATEGY_EARLY_REFRESH, cacheValue.expireAt() > now ? CacheMetrics.RESULT_HIT : CacheMetrics.RESULT_STALE);
+            if (CacheClient.shouldRefreshEarly(cacheValue, now)) {
+                int priority = cacheValue.expireAt() <= now ? CacheRefreshExecutor.PRIORITY_HIGH : CacheRefreshExecutor.PRIORITY_NORMAL;
+                supply(() -> {
+                    cacheClient.rebuildAsync(key, lockKeyPrefix + id, () -> dbFallback.apply(id), timeout, unit, priority, CacheMetrics.STRATEGY_EARLY_REFRESH);
+                    return null;
+                });
+            }
+            if (useLocal && cacheValue.expireAt() > now) {
+                localCache.put(keyPrefix, key, data, stamp, cacheValue.expireAt() - now);
+            }
+            localCache.putStale(key, data);
+            return CompletableFuture.completedFuture(data);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * 查询有序集合中成员的分数
+     *
+     * @param key    键名
+     * @param member 成员
+     * @return 分数，成员不存在返回 null；Redis 不可用时以 {@link RedisUnavailableException} 结束
+     */
+    public CompletableFuture<Double> zScore(String key, String member) {
+        StatefulRedisConnection<String, byte[]> current = connection;
+        if (current == null) {
+            return supply(() -> redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForZSet().score(key, member)));
+        }
+        return redisCircuitBreaker.executeAsync(() -> current.async()
+                .zscore(key, member.getBytes(StandardCharsets.UTF_8))
+                .toCompletableFuture()
+                .orTimeout(commandTimeout.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 异步查询 Redis 失败的处理
+     * 1. Redis 不可用：直接降级（本地旧副本、限流回源数据库），不再让同步客户端重新访问一次 Redis
+     * 2. 异步连接还没建立等其他情况：交给同步客户端
+     */
+    private <T> CompletableFuture<T> onRedisError(Throwable e, String key, String strategy, Supplier<T> dbLoader, Supplier<T> blocking) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof RedisUnavailableException) {
+            return supply(() -> cacheClient.fallback(key, strategy, dbLoader));
+        }
+        return supply(blocking);
+    }
+
+    /**
+     * 异步查询原始数据，并记录耗时；异步连接还没建立时以异常结束，由调用方交给同步客户端
+     *
+     * @param key 缓存键
+     * @return 缓存数据，不存在为 null
+     */
+    private CompletableFuture<byte[]> get(String key) {
+        StatefulRedisConnection<String, byte[]> current = connection;
+        if (current == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("异步连接还没有建立"));
+        }
+        long start = System.nanoTime();
+        return redisCircuitBreaker.executeAsync(() -> current.async()
+                        .get(key)
+                        .toCompletableFuture()
+                        .orTimeout(commandTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                .whenComplete((bytes, e) -> cacheMetrics.recordRedisGet(key, System.nanoTime() - start));
+    }
+
+    /**
+     * 记录一次访问，并判断是否使用本地缓存：前缀启用了本地缓存，或者是复制到本地的热点键
+     */
+    private boolean useLocalCache(String keyPrefix, String key) {
+        hotKeyDetector.record(key);
+        return localCache.isEnabled(keyPrefix) || localCache.isPinned(key);
+    }
+
+    /**
+     * 建立异步连接，失败时稍后重试；建立之后由 Lettuce 负责自动重连
+     */
+    private void connect() {
+        AbstractRedisClient nativeClient = lettuceConnectionFactory.getNativeClient();
+        if (!(nativeClient instanceof RedisClient redisClient)) {
+            log.warn("当前 Redis 部署方式不支持异步缓存连接，异步查询全部交给回源线程池");
+            return;
+        }
+        try {
+            connection = redisClient.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+            log.info("异步缓存连接已建立");
+        } catch (Exception e) {
+            log.warn("建立异步缓存连接失败，{} 秒后重试：{}", RECONNECT_DELAY_SECONDS, e.getMessage());
+            scheduler.schedule(this::connect, RECONNECT_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
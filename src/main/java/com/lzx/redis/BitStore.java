@@ -0,0 +1,60 @@
+package com.lzx.redis;
+
+/**
+ * 布隆过滤器的位数组存储
+ * 可以是 Redis 位图（多节点共享），也可以是 JVM 内的位数组（每个节点各一份）
+ * 存储自己负责重建期间的双写：{@link #createEmpty()} 之后到 {@link #replaceWith(BitStore)} 或 {@link #discard(BitStore)} 之前，
+ * 新增的元素同时写入重建中的存储
+ */
+public interface BitStore {
+
+    /**
+     * 将指定的位全部置为 1，正在重建时同时写入重建中的存储；至少有一位从 0 变为 1 时元素个数加一
+     *
+     * @param offsets 位偏移量
+     */
+    void set(long[] offsets);
+
+    /**
+     * 判断指定的位是否全部为 1
+     *
+     * @param offsets 位偏移量
+     * @return 是否全部为 1
+     */
+    boolean allSet(long[] offsets);
+
+    /**
+     * 创建一个同类型的空存储用于重建，并开始把新增的元素同时写入这个存储
+     *
+     * @return 空存储
+     */
+    BitStore createEmpty();
+
+    /**
+     * 用重建好的存储原子地替换当前存储的内容和元素个数，并停止双写
+     *
+     * @param rebuilt 由 {@link #createEmpty()} 创建并写满数据的存储
+     */
+    void replaceWith(BitStore rebuilt);
+
+    /**
+     * 重建失败，丢弃重建中的存储并停止双写
+     *
+     * @param rebuilt 由 {@link #createEmpty()} 创建的存储
+     */
+    void discard(BitStore rebuilt);
+
+    /**
+     * 存储是否已经构建完成（例如其他节点已经构建过 Redis 位图）
+     *
+     * @return 是否构建完成
+     */
+    boolean exists();
+
+    /**
+     * 已经写入的元素个数（近似值），用于估算误判率
+     *
+     * @return 元素个数，未知时返回 -1
+     */
+    long count();
+}
@@ -0,0 +1,150 @@
+package com.lzx.redis;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * 布隆过滤器
+ * 判断一个 ID 是否"可能存在"：返回 false 时一定不存在，返回 true 时有一定概率误判。
+ * 用于在访问 Redis 和数据库之前拦截不存在的 ID，解决缓存穿透问题。
+ */
+public class BloomFilter {
+
+    private final String name;
+    // 位数组长度
+    private final long numBits;
+    // 哈希函数个数
+    private final int numHashes;
+    // 位数组存储，元素个数也由存储记录，共享存储时所有节点看到的是同一个值
+    private final BitStore store;
+    // 是否已经构建完成，构建完成之前不做拦截
+    private volatile boolean ready = false;
+
+    /**
+     * 创建布隆过滤器
+     *
+     * @param name               名称
+     * @param expectedInsertions 预计元素个数
+     * @param fpp                期望的误判率
+     * @param storeFactory       根据位数组长度创建存储
+     */
+    public BloomFilter(String name, long expectedInsertions, double fpp, LongFunction<BitStore> storeFactory) {
+        this.name = name;
+        // m = -n * ln(p) / (ln2)^2
+        this.numBits = Math.max(64, (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        // k = m / n * ln2
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        this.store = storeFactory.apply(numBits);
+    }
+
+    /**
+     * 判断 ID 是否可能存在
+     *
+     * @param id 业务 ID
+     * @return false 表示一定不存在，true 表示可能存在
+     */
+    public boolean mightContain(Object id) {
+        if (!ready) {
+            // 还没构建完成，全部放行
+            return true;
+        }
+        return store.allSet(offsets(id));
+    }
+
+    /**
+     * 新增一个 ID
+     *
+     * @param id 业务 ID
+     * @throws com.lzx.exception.RedisUnavailableException 共享存储时 Redis 不可用
+     */
+    public void put(Object id) {
+        // 重建期间的双写由存储负责
+        store.set(offsets(id));
+    }
+
+    /**
+     * 重建布隆过滤器：先写入一份新的存储，写完之后原子替换，重建期间查询不受影响
+     *
+     * @param loader 数据加载函数，参数是写入函数，加载函数需要把所有 ID 分批交给写入函数
+     */
+    public synchronized void rebuild(Consumer<Consumer<Collection<?>>> loader) {
+        BitStore target = store.createEmpty();
+        try {
+            loader.accept(ids -> {
+                for (Object id : ids) {
+                    target.set(offsets(id));
+                }
+            });
+        } catch (RuntimeException e) {
+            store.discard(target);
+            throw e;
+        }
+        store.replaceWith(target);
+        ready = true;
+    }
+
+    /**
+     * 存储中已有数据时（例如其他节点已经构建过共享的 Redis 位图），直接标记为可用
+     *
+     * @return 是否标记成功
+     */
+    public boolean markReadyIfExists() {
+        if (store.exists()) {
+            ready = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 根据当前元素个数估算的误判率：(1 - e^(-k * n / m)) ^ k
+     *
+     * @return 误判率，元素个数未知时返回 NaN
+     */
+    public double expectedFpp() {
+        long insertions = store.count();
+        if (insertions < 0) {
+            return Double.NaN;
+        }
+        return Math.pow(1 - Math.exp(-numHashes * (double) insertions / numBits), numHashes);
+    }
+
+    /**
+     * 使用 MurmurHash3 128 位哈希，再用双重哈希 h1 + i * h2 模拟 k 个哈希函数
+     */
+    private long[] offsets(Object id) {
+        long[] hash = MurmurHash.hash128(String.valueOf(id));
+        long h1 = hash[0];
+        long h2 = hash[1];
+        long[] offsets = new long[numHashes];
+        long combined = h1;
+        for (int i = 0; i < numHashes; i++) {
+            offsets[i] = (combined & Long.MAX_VALUE) % numBits;
+            combined += h2;
+        }
+        return offsets;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public long getInsertions() {
+        return store.count();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+}
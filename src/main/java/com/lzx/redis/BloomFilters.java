@@ -0,0 +1,236 @@
+package com.lzx.redis;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.BooleanUtil;
+import com.lzx.exception.RedisUnavailableException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 布隆过滤器管理
+ * 1. 业务方注册过滤器，并提供按 ID 分页读取全部 ID 的函数
+ * 2. 应用启动后在后台构建过滤器，之后定期重建（清理已删除的 ID，修正误判率）
+ * 3. 存储方式可选：redis（Redis 位图，多节点共享）或 local（JVM 内位数组，查询无网络开销）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class BloomFilters implements MessageListener {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    // 存储方式：redis 或 local
+    @Value("${zxdp.bloom-filter.store:redis}")
+    private String storeType;
+
+    // 当前节点标识，本地模式下广播新增元素时用于忽略自己发出的消息
+    private final String nodeId = UUID.randomUUID().toString(true);
+
+    // 已注册的过滤器
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+    // 构建、重建过滤器的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "bloom-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 过滤器注册信息
+     *
+     * @param filter       布隆过滤器
+     * @param idPageLoader 分页读取 ID 的函数：参数是上一页最后一个 ID，返回按 ID 升序的下一页
+     */
+    private record Registration(BloomFilter filter, Function<Long, List<Long>> idPageLoader) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (isLocal()) {
+            // 本地模式需要接收其他节点的新增元素
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RedisConstants.BLOOM_ADD_CHANNEL));
+        }
+    }
+
+    /**
+     * 注册布隆过滤器
+     *
+     * @param name         过滤器名称
+     * @param idPageLoader 分页读取 ID 的函数：参数是上一页最后一个 ID，返回按 ID 升序的下一页
+     * @return 布隆过滤器
+     */
+    public BloomFilter register(String name, Function<Long, List<Long>> idPageLoader) {
+        String key = RedisConstants.BLOOM_FILTER_KEY + name;
+        BloomFilter filter = new BloomFilter(
+                name,
+                RedisConstants.BLOOM_EXPECTED_INSERTIONS,
+                RedisConstants.BLOOM_FPP,
+                numBits -> isLocal() ? new LocalBitStore(numBits) : new RedisBitStore(key, stringRedisTemplate, redisCircuitBreaker)
+        );
+        registrations.put(name, new Registration(filter, idPageLoader));
+        return filter;
+    }
+
+    /**
+     * 获取布隆过滤器
+     *
+     * @param name 过滤器名称
+     * @return 布隆过滤器
+     */
+    public BloomFilter get(String name) {
+        return registrations.get(name).filter();
+    }
+
+    /**
+     * 新增元素，本地模式下同时广播给其他节点
+     * Redis 不可用时不影响业务，在后台重试，重试期间查询同样因为 Redis 不可用而全部放行
+     *
+     * @param name 过滤器名称
+     * @param id   业务 ID
+     */
+    public void add(String name, Object id) {
+        if (isLocal()) {
+            get(name).put(id);
+            try {
+                stringRedisTemplate.convertAndSend(RedisConstants.BLOOM_ADD_CHANNEL, nodeId + ":" + name + ":" + id);
+            } catch (Exception e) {
+                // 广播失败时其他节点在下次重建时补上
+                log.warn("布隆过滤器 {} 广播新增元素 {} 失败", name, id, e);
+            }
+            return;
+        }
+        tryAdd(name, id, 0);
+    }
+
+    /**
+     * 写入共享存储，Redis 不可用时延迟重试，超过最大重试次数后等待定期重建补上
+     *
+     * @param attempt 已经重试的次数
+     */
+    private void tryAdd(String name, Object id, int attempt) {
+        try {
+            get(name).put(id);
+        } catch (RedisUnavailableException e) {
+            if (attempt >= RedisConstants.BLOOM_ADD_MAX_RETRIES) {
+                log.error("布隆过滤器 {} 新增元素 {} 失败，等待定期重建", name, id, e);
+                return;
+            }
+            log.warn("布隆过滤器 {} 新增元素 {} 失败，{} 秒后重试", name, id, RedisConstants.BLOOM_ADD_RETRY_SECONDS);
+            scheduler.schedule(() -> tryAdd(name, id, attempt + 1), RedisConstants.BLOOM_ADD_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 应用启动完成后，在后台构建过滤器，并开启定期重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduler.execute(() -> registrations.values().forEach(registration -> build(registration, false)));
+        scheduler.scheduleWithFixedDelay(
+                () -> registrations.values().forEach(registration -> build(registration, true)),
+                RedisConstants.BLOOM_REBUILD_HOURS,
+                RedisConstants.BLOOM_REBUILD_HOURS,
+                TimeUnit.HOURS
+        );
+    }
+
+    /**
+     * 构建过滤器
+     *
+     * @param registration 注册信息
+     * @param force        是否强制重建，false 时如果共享存储中已有数据则直接使用
+     */
+    private void build(Registration registration, boolean force) {
+        BloomFilter filter = registration.filter();
+        String lockKey = RedisConstants.LOCK_KEY_PREFIX + RedisConstants.BLOOM_FILTER_KEY + filter.getName();
+        boolean locked = false;
+        try {
+            if (!force && filter.markReadyIfExists()) {
+                log.info("布隆过滤器 {} 已存在，直接使用", filter.getName());
+                return;
+            }
+            // Redis 位图是共享的，只需要一个节点重建
+            if (!isLocal()) {
+                locked = BooleanUtil.isTrue(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, "1", 10, TimeUnit.MINUTES));
+                if (!locked) {
+                    if (!filter.markReadyIfExists()) {
+                        // 其他节点正在构建，构建完成后共享存储中才有元素个数；在此之前定期检查，构建节点宕机时锁过期后由当前节点接手
+                        scheduler.schedule(() -> build(registration, false), RedisConstants.BLOOM_READY_CHECK_SECONDS, TimeUnit.SECONDS);
+                    }
+                    return;
+                }
+            }
+            long start = System.currentTimeMillis();
+            filter.rebuild(sink -> {
+                long lastId = 0L;
+                while (true) {
+                    List<Long> ids = registration.idPageLoader().apply(lastId);
+                    if (ids == null || ids.isEmpty()) {
+                        break;
+                    }
+                    sink.accept(ids);
+                    lastId = ids.get(ids.size() - 1);
+                }
+            });
+            log.info("布隆过滤器 {} 构建完成，元素个数：{}，位数组长度：{}，哈希函数个数：{}，预计误判率：{}，耗时：{} ms",
+                    filter.getName(), filter.getInsertions(), filter.getNumBits(), filter.getNumHashes(),
+                    String.format("%.6f", filter.expectedFpp()), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 构建失败不影响业务，过滤器未就绪时不做拦截
+            log.error("布隆过滤器 {} 构建失败", filter.getName(), e);
+        } finally {
+            if (locked) {
+                stringRedisTemplate.delete(lockKey);
+            }
+        }
+    }
+
+    /**
+     * 收到其他节点新增的元素（本地模式）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // 消息格式：nodeId:name:id
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        Registration registration = registrations.get(parts[1]);
+        if (registration != null) {
+            registration.filter().put(parts[2]);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private boolean isLocal() {
+        return "local".equalsIgnoreCase(storeType);
+    }
+}
@@ -1,32 +1,96 @@
 package com.lzx.redis;
 
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.lzx.exception.BaseException;
+import com.lzx.exception.RedisUnavailableException;
+import com.lzx.redis.codec.CacheCodecs;
+import com.lzx.redis.codec.CacheValue;
+import com.lzx.result.CacheResult;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 缓存客户端
+ * 所有 Redis 调用都经过熔断器（{@link RedisCircuitBreaker}），Redis 变慢或不可用时，
+ * 查询方法先返回本地旧副本，没有旧副本的在并发限制（{@link DbFallbackLimiter}）内回源数据库，不回写缓存
  */
+@Slf4j
 @Component
 @RequiredArgsConstructor(onConstructor_ = {@Autowired})
 public class CacheClient {
 
+    // 空值缓存，用于解决缓存穿透，与旧版的空字符串兼容
+    static final byte[] NULL_VALUE = new byte[0];
+
     private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+    private final CacheCodecs cacheCodecs;
+    private final LocalCache localCache;
+    private final SingleFlight singleFlight;
+    private final CacheRefreshExecutor cacheRefreshExecutor;
+    private final HotKeyDetector hotKeyDetector;
+    private final CacheMetrics cacheMetrics;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final DbFallbackLimiter dbFallbackLimiter;
+    private final RedisLockClient redisLockClient;
 
-    // 线程池：用于异步更新缓存
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
 
+    /**
+     * 为指定的键名前缀启用本地缓存（一级缓存）
+     * 启用之后，查询时先查本地缓存，未命中再查 Redis，Redis 命中后回填本地缓存
+     *
+     * @param keyPrefix 缓存键前缀
+     * @param timeout   本地缓存过期时间
+     * @param unit      过期时间单位
+     */
+    public void enableLocalCache(String keyPrefix, long timeout, TimeUnit unit) {
+        localCache.enable(keyPrefix, timeout, unit);
+    }
+
+    /**
+     * 删除缓存：删除 Redis 中的数据，并通知所有节点删除本地缓存
+     *
+     * @param key 缓存键
+     */
+    public void invalidate(String key) {
+        redisCircuitBreaker.run(() -> stringRedisTemplate.delete(key));
+        localCache.invalidate(key);
+    }
+
+    /**
+     * 批量删除缓存：一次 DEL 删除 Redis 中的数据，并通知所有节点删除本地缓存
+     *
+     * @param keys 缓存键集合
+     */
+    public void invalidateAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        redisCircuitBreaker.run(() -> stringRedisTemplate.delete(keys));
+        keys.forEach(localCache::invalidate);
+    }
 
     /**
      * 将任意类型的对象存储到缓存中，并设置过期时间
@@ -37,7 +101,20 @@ public class CacheClient {
      * @param unit    过期时间单位
      */
     public void set(String key, Object value, long timeout, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), timeout, unit);
+        // 过期时间加上随机抖动，避免批量写入的数据同时过期
+        byte[] bytes = cacheCodecs.encode(key, value);
+        redisCircuitBreaker.run(() -> cacheRedisTemplate.opsForValue().set(key, bytes, jitter(timeout, unit), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 缓存空值（空字符串），用于解决缓存穿透
+     *
+     * @param key     缓存键
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     */
+    public void setNull(String key, long timeout, TimeUnit unit) {
+        redisCircuitBreaker.run(() -> cacheRedisTemplate.opsForValue().set(key, NULL_VALUE, timeout, unit));
     }
 
     /**
@@ -49,12 +126,141 @@ public class CacheClient {
      * @param unit    过期时间单位
      */
     public void setWithLogicalExpire(String key, Object value, long timeout, TimeUnit unit) {
-        // 设置数据
-        RedisData redisData = new RedisData();
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(timeout)));
-        redisData.setData(value);
-        // 存入缓存
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        setWithLogicalExpire(key, value, timeout, unit, 0);
+    }
+
+    /**
+     * 将任意类型的对象存储到缓存中，并设置逻辑过期时间，同时记录重建这条数据的耗时，用于概率提前刷新
+     *
+     * @param key     缓存键
+     * @param value   缓存值
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     * @param delta   重建耗时，单位毫秒
+     */
+    public void setWithLogicalExpire(String key, Object value, long timeout, TimeUnit unit, long delta) {
+        byte[] bytes = cacheCodecs.encode(key, value, expireAt(timeout, unit), delta);
+        redisCircuitBreaker.run(() -> cacheRedisTemplate.opsForValue().set(key, bytes));
+    }
+
+    /**
+     * 批量写入逻辑过期的缓存，使用 pipeline 一次发送，用于缓存预热
+     * 每个键的逻辑过期时间单独计算抖动，避免同一批数据同时过期
+     *
+     * @param values  缓存键和缓存值
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     */
+    public void setBatchWithLogicalExpire(Map<String, ?> values, long timeout, TimeUnit unit) {
+        Map<String, byte[]> data = new HashMap<>(values.size());
+        values.forEach((key, value) -> data.put(key, cacheCodecs.encode(key, value, expireAt(timeout, unit))));
+        multiSet(data, -1, unit);
+    }
+
+    /**
+     * 查询缓存，不会回源数据库
+     *
+     * @param key   缓存键
+     * @param clazz 缓存值类型
+     * @return 缓存结果：命中、空值或未命中
+     */
+    public <T> CacheResult<T> get(String key, Class<T> clazz) {
+        CacheResult<T> cacheResult = getFromRedis(key, clazz);
+        recordResult(key, CacheMetrics.STRATEGY_DIRECT, cacheResult);
+        return cacheResult;
+    }
+
+    /**
+     * 查询带逻辑过期时间的缓存，不会回源数据库
+     *
+     * @param key   缓存键
+     * @param clazz 缓存值类型
+     * @return 缓存值和逻辑过期时间，未命中、空值或格式不兼容时返回 null
+     */
+    public <T> CacheValue<T> getWithLogicalExpire(String key, Class<T> clazz) {
+        byte[] bytes = redisGet(key);
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return cacheCodecs.decodeLogical(key, bytes, clazz);
+    }
+
+    /**
+     * 将列表存储到缓存中（Redis List，每个元素单独编码），并设置过期时间
+     *
+     * @param key     缓存键
+     * @param values  缓存值列表
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     */
+    public void setList(String key, List<?> values, long timeout, TimeUnit unit) {
+        List<byte[]> encoded = new ArrayList<>(values.size());
+        for (Object value : values) {
+            encoded.add(cacheCodecs.encode(key, value));
+        }
+        redisCircuitBreaker.run(() -> {
+            // 先删除旧数据，避免格式不兼容的旧列表被追加
+            cacheRedisTemplate.delete(key);
+            cacheRedisTemplate.opsForList().rightPushAll(key, encoded);
+            cacheRedisTemplate.expire(key, timeout, unit);
+        });
+        localCache.invalidateLocal(key);
+        localCache.putStale(key, values);
+    }
+
+    /**
+     * 查询缓存中的列表
+     *
+     * @param key   缓存键
+     * @param clazz 元素类型
+     * @return 缓存值列表，未命中或有元素格式不兼容时返回空列表，Redis 不可用时返回本地旧副本
+     */
+    public <T> List<T> getList(String key, Class<T> clazz) {
+        // 1. 键名前缀启用了本地缓存或者是热点键时，先查本地缓存
+        hotKeyDetector.record(key);
+        String keyPrefix = localCache.prefixOf(key);
+        boolean useLocal = keyPrefix != null || localCache.isPinned(key);
+        if (useLocal) {
+            List<T> local = localCache.get(key);
+            if (local != null) {
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_DIRECT, CacheMetrics.RESULT_LOCAL_HIT);
+                return local;
+            }
+        }
+        long stamp = localCache.stamp();
+
+        // 2. 查询 Redis，Redis 不可用时返回旧副本，没有旧副本的当作未命中，由调用方回源数据库
+        long start = System.nanoTime();
+        List<byte[]> encoded;
+        try {
+            encoded = redisCircuitBreaker.execute(() -> cacheRedisTemplate.opsForList().range(key, 0, -1));
+        } catch (RedisUnavailableException e) {
+            List<T> stale = localCache.getStale(key);
+            cacheMetrics.request(key, CacheMetrics.STRATEGY_DIRECT, stale == null ? CacheMetrics.RESULT_MISS : CacheMetrics.RESULT_FALLBACK_STALE);
+            return stale == null ? List.of() : stale;
+        }
+        cacheMetrics.recordRedisGet(key, System.nanoTime() - start);
+        if (encoded == null || encoded.isEmpty()) {
+            cacheMetrics.request(key, CacheMetrics.STRATEGY_DIRECT, CacheMetrics.RESULT_MISS);
+            return List.of();
+        }
+        List<T> values = new ArrayList<>(encoded.size());
+        for (byte[] bytes : encoded) {
+            CacheValue<T> cacheValue = bytes.length == 0 ? null : cacheCodecs.decode(key, bytes, clazz);
+            if (cacheValue == null) {
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_DIRECT, CacheMetrics.RESULT_MISS);
+                return List.of();
+            }
+            values.add(cacheValue.data());
+        }
+        cacheMetrics.request(key, CacheMetrics.STRATEGY_DIRECT, CacheMetrics.RESULT_HIT);
+        // 3. 回填本地缓存，本地缓存保存的是拷贝，调用方修改返回的列表元素不会影响本地副本
+        values = List.copyOf(values);
+        if (useLocal) {
+            localCache.put(keyPrefix, key, values, stamp);
+        }
+        localCache.putStale(key, values);
+        return values;
     }
 
     /**
@@ -75,33 +281,69 @@ public class CacheClient {
     public <T, ID> T queryWithPassThrough(String keyPrefix, ID id, Class<T> clazz, Function<ID, T> dbFallback, Long timeout, TimeUnit unit) {
         // 构建 Redis 缓存键名
         String key = keyPrefix + id;
+        return guarded(key, CacheMetrics.STRATEGY_PASS_THROUGH, () -> dbFallback.apply(id), () -> {
+            // 0. 查询本地缓存
+            boolean useLocal = useLocalCache(keyPrefix, key);
+            if (useLocal) {
+                T local = localCache.get(key);
+                if (local != null) {
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_PASS_THROUGH, CacheMetrics.RESULT_LOCAL_HIT);
+                    return local;
+                }
+            }
+            long stamp = localCache.stamp();
 
-        // 1. 从 Redis 中查询缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(json)) {
-            // 1.1 如果存在，直接返回
-            return JSONUtil.toBean(json, clazz);
-        }
-        if (StrUtil.equals(json, "")) {
-            // 1.2 如果为空字符串，说明是处理缓存穿透的空值，直接返回 null
-            return null;
-        }
+            // 1. 从 Redis 中查询缓存
+            CacheResult<T> cacheResult = getFromRedis(key, clazz);
+            recordResult(key, CacheMetrics.STRATEGY_PASS_THROUGH, cacheResult);
+            if (cacheResult.isExists()) {
+                // 1.1 如果存在，回填本地缓存后返回；空值说明是处理缓存穿透的空对象，直接返回 null
+                T data = cacheResult.getData();
+                if (useLocal && data != null) {
+                    localCache.put(keyPrefix, key, data, stamp);
+                }
+                return data;
+            }
 
-        // 3. 如果不存在，从数据库中查询
-        T data = dbFallback.apply(id);
-        if (data == null) {
-            // 4. 如果数据库中也不存在
-            // 4.1 缓存空对象，设置过期时间，避免缓存穿透
-            this.set(key, "", timeout, unit);
-            // 4.2 返回 null
-            return null;
-        }
+            // 3. 如果不存在，从数据库中查询
+            T data = load(key, CacheMetrics.STRATEGY_PASS_THROUGH, () -> dbFallback.apply(id));
+            if (data == null) {
+                // 4. 如果数据库中也不存在
+                // 4.1 缓存空对象，设置过期时间，避免缓存穿透
+                writeQuietly(key, () -> this.setNull(key, timeout, unit));
+                // 4.2 返回 null
+                return null;
+            }
 
-        // 5. 如果数据库中存在，将对象缓存到 Redis 中
-        this.set(key, data, timeout, unit);
+            // 5. 如果数据库中存在，将对象缓存到 Redis 中
+            writeQuietly(key, () -> this.set(key, data, timeout, unit));
 
-        // 6. 返回对象
-        return data;
+            // 6. 返回对象
+            return data;
+        });
+    }
+
+    /**
+     * 缓存穿透解决方案：布隆过滤器 + 缓存空对象
+     * 先使用布隆过滤器判断 ID 是否可能存在，一定不存在的 ID 直接返回 null，不会访问 Redis 和数据库；
+     * 可能存在的 ID（包括少量误判）再走缓存空对象的流程。
+     *
+     * @param bloomFilter 布隆过滤器
+     * @param keyPrefix   缓存键前缀
+     * @param id          缓存键后缀（通常是业务主键）
+     * @param clazz       缓存值类型
+     * @param dbFallback  数据库查询函数，用于从数据库中查询对象
+     * @param timeout     过期时间
+     * @param unit        过期时间单位
+     * @return 缓存值
+     */
+    public <T, ID> T queryWithBloomFilter(BloomFilter bloomFilter, String keyPrefix, ID id, Class<T> clazz, Function<ID, T> dbFallback, Long timeout, TimeUnit unit) {
+        // 1. 布隆过滤器判断一定不存在，直接返回
+        if (!bloomFilter.mightContain(id)) {
+            return null;
+        }
+        // 2. 可能存在，查询缓存和数据库
+        return queryWithPassThrough(keyPrefix, id, clazz, dbFallback, timeout, unit);
     }
 
     /**
@@ -124,49 +366,160 @@ public class CacheClient {
     public <T, ID> T queryWithLogicalExpiration(String keyPrefix, ID id, Class<T> clazz, Function<ID, T> dbFallback, Long timeout, TimeUnit unit, String lockKeyPrefix) {
         // 构建 Redis 缓存键名
         String key = keyPrefix + id;
-        // 1、从 Redis 中查询缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isBlank(json)) {
-            // 未命中缓存，返回 null
-            return null;
-        }
+        return guarded(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, () -> dbFallback.apply(id), () -> {
+            // 0、查询本地缓存，本地副本的过期时间不会超过逻辑过期时间，命中即未过期
+            boolean useLocal = useLocalCache(keyPrefix, key);
+            if (useLocal) {
+                T local = localCache.get(key);
+                if (local != null) {
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_LOCAL_HIT);
+                    return local;
+                }
+            }
+            long stamp = localCache.stamp();
 
-        // 2、命中缓存，判断是否过期
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        T data = JSONUtil.toBean((JSONObject) redisData.getData(), clazz);
-        if (redisData.getExpireTime().isAfter(LocalDateTime.now())) {
-            // 缓存未过期，直接返回缓存中的商户
-            return data;
-        }
-        // 3、缓存过期，需要重建缓存
-        // 3.1 获取互斥锁
-        String lockKey = lockKeyPrefix + id;
-        boolean isLocked = tryLock(lockKey);
-        if (isLocked) {
-            // 3.2 获取互斥锁成功，双重检查缓存
-            json = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(json)) {
-                redisData = JSONUtil.toBean(json, RedisData.class);
-                data = JSONUtil.toBean((JSONObject) redisData.getData(), clazz);
-                if (redisData.getExpireTime().isAfter(LocalDateTime.now())) {
+            // 1、从 Redis 中查询缓存
+            byte[] bytes = redisGet(key);
+            if (bytes != null && bytes.length == 0) {
+                // 空值，数据库中不存在，返回 null
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_NULL_HIT);
+                return null;
+            }
+            CacheValue<T> cacheValue = bytes == null ? null : cacheCodecs.decodeLogical(key, bytes, clazz);
+            if (cacheValue == null) {
+                // 1.1 未命中（没有预热，或者数据更新后缓存被删除），或者数据格式不兼容（例如实体类字段发生了变化），
+                // 没有旧值可以返回，同步重建
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_MISS);
+                return singleFlight.execute(
+                        key,
+                        () -> reload(key, () -> dbFallback.apply(id), timeout, unit, CacheMetrics.STRATEGY_LOGICAL_EXPIRE),
+                        RedisConstants.CACHE_LOAD_WAIT_MILLIS,
+                        TimeUnit.MILLISECONDS
+                );
+            }
+
+            // 2、命中缓存，判断是否过期，过期时间在帧头中，不需要解析数据
+            T data = cacheValue.data();
+            long now = System.currentTimeMillis();
+            if (cacheValue.expireAt() > now) {
+                // 缓存未过期，回填本地缓存后直接返回
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_HIT);
+                if (useLocal) {
+                    localCache.put(keyPrefix, key, data, stamp, cacheValue.expireAt() - now);
+                }
+                return data;
+            }
+            // 3、缓存过期，需要重建缓存
+            cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_STALE);
+            // 3.1 获取互斥锁
+            String lockKey = lockKeyPrefix + id;
+            boolean isLocked;
+            try {
+                isLocked = tryLock(lockKey);
+            } catch (RedisUnavailableException e) {
+                // Redis 不可用，放弃重建，返回过期的数据
+                return data;
+            }
+            if (!isLocked) {
+                cacheMetrics.lockContention(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE);
+            } else {
+                // 3.2 获取互斥锁成功，双重检查缓存
+                CacheValue<T> latest = getWithLogicalExpire(key, clazz);
+                if (latest != null && latest.expireAt() > System.currentTimeMillis()) {
                     unlock(lockKey);
-                    return data;
+                    return latest.data();
                 }
+
+                // 3.3 异步重建缓存，已经过期的数据优先重建
+                submitRebuild(key, lockKey, () -> dbFallback.apply(id), timeout, unit, CacheRefreshExecutor.PRIORITY_HIGH, CacheMetrics.STRATEGY_LOGICAL_EXPIRE);
             }
 
-            // 3.3 异步重建缓存
-            executorService.submit(() -> {
-                try {
-                    T newData = dbFallback.apply(id);
-                    this.setWithLogicalExpire(key, newData, timeout, unit);
-                } finally {
-                    unlock(lockKey);
+            // 4、 返回过期的缓存信息
+            return data;
+        });
+    }
+
+    /**
+     * 缓存击穿解决方案：逻辑过期 + 概率提前刷新（XFetch）
+     * 逻辑过期只在过期之后才重建，热点数据过期的那一刻所有请求都拿到旧值，批量预热的数据还会同时过期。
+     * 这里每条数据都记录了上次重建的耗时 delta，每次读取时按下面的条件决定是否提前在后台刷新：
+     * now - delta * beta * ln(random) >= expireAt
+     * 离过期越近、重建越慢，提前刷新的概率越大；访问越频繁的数据，越有可能在过期之前就被某个请求刷新掉，
+     * 热点数据基本不会真正过期，也不会有很多请求同时去重建。
+     * 未命中时同步从数据库加载（本节点内合并为一次）。
+     *
+     * @param keyPrefix     缓存键前缀
+     * @param id            缓存键后缀（通常是业务主键）
+     * @param clazz         缓存值类型
+     * @param dbFallback    数据库查询函数，用于从数据库中查询对象
+     * @param timeout       逻辑过期时间
+     * @param unit          过期时间单位
+     * @param lockKeyPrefix 互斥锁键名前缀，用于保证同一时间只有一个线程在刷新
+     * @return 缓存值
+     */
+    public <T, ID> T queryWithEarlyRefresh(String keyPrefix, ID id, Class<T> clazz, Function<ID, T> dbFallback, Long timeout, TimeUnit unit, String lockKeyPrefix) {
+        // 构建 Redis 缓存键名
+        String key = keyPrefix + id;
+        return guarded(key, CacheMetrics.STRATEGY_EARLY_REFRESH, () -> dbFallback.apply(id), () -> {
+            // 0. 查询本地缓存，本地副本的过期时间不会超过逻辑过期时间
+            boolean useLocal = useLocalCache(keyPrefix, key);
+            if (useLocal) {
+                T local = localCache.get(key);
+                if (local != null) {
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_EARLY_REFRESH, CacheMetrics.RESULT_LOCAL_HIT);
+                    return local;
                 }
-            });
-        }
+            }
+            long stamp = localCache.stamp();
 
-        // 4、 返回过期的缓存信息
-        return data;
+            // 1. 从 Redis 中查询缓存
+            byte[] bytes = redisGet(key);
+            if (bytes != null && bytes.length == 0) {
+                // 1.1 空值缓存，说明数据库中不存在
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_EARLY_REFRESH, CacheMetrics.RESULT_NULL_HIT);
+                return null;
+            }
+            CacheValue<T> cacheValue = bytes == null ? null : cacheCodecs.decodeLogical(key, bytes, clazz);
+            if (cacheValue == null) {
+                // 2. 未命中或者数据格式不兼容，同步从数据库加载
+                cacheMetrics.request(key, CacheMetrics.STRATEGY_EARLY_REFRESH, CacheMetrics.RESULT_MISS);
+                return singleFlight.execute(
+                        key,
+                        () -> reload(key, () -> dbFallback.apply(id), timeout, unit, CacheMetrics.STRATEGY_EARLY_REFRESH),
+                        RedisConstants.CACHE_LOAD_WAIT_MILLIS,
+                        TimeUnit.MILLISECONDS
+                );
+            }
+
+            // 3. 命中缓存，按概率决定是否提前刷新，已经过期的一定会刷新，刷新期间返回当前的值
+            T data = cacheValue.data();
+            long now = System.currentTimeMillis();
+            cacheMetrics.request(key, CacheMetrics.STRATEGY_EARLY_REFRESH, cacheValue.expireAt() > now ? CacheMetrics.RESULT_HIT : CacheMetrics.RESULT_STALE);
+            if (shouldRefreshEarly(cacheValue, now)) {
+                int priority = cacheValue.expireAt() <= now ? CacheRefreshExecutor.PRIORITY_HIGH : CacheRefreshExecutor.PRIORITY_NORMAL;
+                rebuildAsync(key, lockKeyPrefix + id, () -> dbFallback.apply(id), timeout, unit, priority, CacheMetrics.STRATEGY_EARLY_REFRESH);
+            }
+
+            // 4. 未过期的数据回填本地缓存
+            if (useLocal && cacheValue.expireAt() > now) {
+                localCache.put(keyPrefix, key, data, stamp, cacheValue.expireAt() - now);
+            }
+            return data;
+        });
+    }
+
+    /**
+     * 判断是否需要提前刷新（XFetch）
+     *
+     * @param cacheValue 缓存值
+     * @param now        当前时间，毫秒时间戳
+     * @return 是否需要刷新
+     */
+    static boolean shouldRefreshEarly(CacheValue<?> cacheValue, long now) {
+        // random 取 (0, 1]，ln(random) <= 0，所以 -ln(random) 是一个非负的随机数，大多数时候很小，偶尔很大
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        double gap = -cacheValue.delta() * RedisConstants.CACHE_EARLY_REFRESH_BETA * Math.log(random);
+        return now + gap >= cacheValue.expireAt();
     }
 
     /**
@@ -189,60 +542,427 @@ public class CacheClient {
     public <T, ID> T queryWithMutex(String keyPrefix, ID id, Class<T> clazz, Function<ID, T> dbFallback, long timeout, TimeUnit unit, String lockKeyPrefix) {
         // 构建 Redis 缓存键名
         String key = keyPrefix + id;
+        return guarded(key, CacheMetrics.STRATEGY_MUTEX, () -> dbFallback.apply(id), () -> {
+            // 0. 查询本地缓存
+            boolean useLocal = useLocalCache(keyPrefix, key);
+            if (useLocal) {
+                T local = localCache.get(key);
+                if (local != null) {
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_MUTEX, CacheMetrics.RESULT_LOCAL_HIT);
+                    return local;
+                }
+            }
+            long stamp = localCache.stamp();
 
-        // 1. 查询缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+            // 1. 查询缓存
+            CacheResult<T> cacheResult = getFromRedis(key, clazz);
+            recordResult(key, CacheMetrics.STRATEGY_MUTEX, cacheResult);
 
-        // 2. 缓存命中
-        if (StrUtil.isNotBlank(json)) {
-            return JSONUtil.toBean(json, clazz);
-        }
+            // 2. 缓存命中，回填本地缓存；空值缓存直接返回 null
+            if (cacheResult.isExists()) {
+                T data = cacheResult.getData();
+                if (useLocal && data != null) {
+                    localCache.put(keyPrefix, key, data, stamp);
+                }
+                return data;
+            }
 
-        // 3. 空值缓存
-        if (StrUtil.equals(json, "")) {
-            return null;
-        }
+            // 4. 缓存未命中，本节点内相同 key 的并发请求合并为一次加载，其他线程等待加载结果
+            T data = singleFlight.execute(
+                    key,
+                    () -> loadWithMutex(key, id, clazz, dbFallback, timeout, unit, lockKeyPrefix + id),
+                    RedisConstants.CACHE_LOAD_WAIT_MILLIS,
+                    TimeUnit.MILLISECONDS
+            );
+            if (useLocal) {
+                localCache.put(keyPrefix, key, data, stamp);
+            }
+            return data;
+        });
+    }
 
-        // 4. 缓存未命中，尝试获取锁
-        T data = null;
-        String lockKey = lockKeyPrefix + id;
-        try {
-            boolean isLocked = tryLock(lockKey);
-            if (!isLocked) {
-                // 4.1 获取锁失败，等待后重试
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, clazz, dbFallback, timeout, unit, lockKey);
+    /**
+     * 获取分布式互斥锁后重建缓存
+     * 经过单飞合并之后，每个节点只有一个线程会进入这里竞争分布式锁，
+     * 没抢到锁说明其他节点正在重建，在本地等待锁释放的通知（不再轮询），拿到锁后先检查缓存，总等待时间有上限
+     *
+     * @param key        缓存键
+     * @param id         缓存键后缀（通常是业务主键）
+     * @param clazz      缓存值类型
+     * @param dbFallback 数据库查询函数
+     * @param timeout    过期时间
+     * @param unit       过期时间单位
+     * @param lockKey    互斥锁键名
+     * @return 缓存值
+     */
+    private <T, ID> T loadWithMutex(String key, ID id, Class<T> clazz, Function<ID, T> dbFallback, long timeout, TimeUnit unit, String lockKey) {
+        ReentrantRedisLock lock = redisLockClient.getLock(lockKey);
+        if (!BooleanUtil.isTrue(redisCircuitBreaker.execute(() -> lock.tryLock(0L, -1L, TimeUnit.MILLISECONDS)))) {
+            // 4.1 获取锁失败，说明其他节点正在重建，等待锁释放通知，醒来后先检查缓存
+            cacheMetrics.lockContention(key, CacheMetrics.STRATEGY_MUTEX);
+            if (!awaitLock(lock)) {
+                throw new BaseException("系统繁忙，请稍后重试");
             }
+        }
 
+        try {
             // 5. 获取互斥锁成功，二次检查缓存
-            json = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(json)) {
-                return JSONUtil.toBean(json, clazz);
-            }
-            if (StrUtil.equals(json, "")) {
-                return null;
+            CacheResult<T> cacheResult = getFromRedis(key, clazz);
+            if (cacheResult.isExists()) {
+                return cacheResult.getData();
             }
 
             // 6. 数据库查询
-            data = dbFallback.apply(id);
+            T data = load(key, CacheMetrics.STRATEGY_MUTEX, () -> dbFallback.apply(id));
             if (data == null) {
                 // 6.1 如果数据库中也不存在，缓存空对象，设置过期时间，避免缓存穿透
-                this.set(key, "", timeout, unit);
+                writeQuietly(key, () -> this.setNull(key, timeout, unit));
                 return null;
             }
 
             // 7. 写入缓存
-            this.set(key, data, timeout, unit);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
+            writeQuietly(key, () -> this.set(key, data, timeout, unit));
+            return data;
+        } finally {
+            // 8. 只有拿到锁的线程才释放锁，释放时通知其他节点等待的线程
+            writeQuietly(lockKey, () -> redisCircuitBreaker.run(lock::unlock));
+        }
+    }
+
+    /**
+     * 等待其他节点重建缓存后释放互斥锁，总等待时间有上限
+     * 等待期间线程阻塞在本地，不经过熔断器，避免等待时间被统计为慢调用
+     *
+     * @param lock 互斥锁
+     * @return 是否获取到锁
+     */
+    private boolean awaitLock(ReentrantRedisLock lock) {
+        try {
+            return lock.tryLock(RedisConstants.CACHE_LOAD_WAIT_MILLIS, -1L, TimeUnit.MILLISECONDS);
+        } catch (DataAccessException e) {
+            throw new RedisUnavailableException("缓存服务繁忙，请稍后重试", e);
+        }
+    }
+
+    /**
+     * 从 Redis 中查询缓存
+     *
+     * @param key   缓存键
+     * @param clazz 缓存值类型
+     * @return 缓存结果：命中、空值或未命中
+     */
+    private <T> CacheResult<T> getFromRedis(String key, Class<T> clazz) {
+        return toCacheResult(key, redisGet(key), clazz);
+    }
+
+    /**
+     * 从 Redis 中查询原始数据，并记录耗时
+     *
+     * @param key 缓存键
+     * @return 缓存数据，不存在返回 null
+     */
+    private byte[] redisGet(String key) {
+        long start = System.nanoTime();
+        try {
+            return redisCircuitBreaker.execute(() -> cacheRedisTemplate.opsForValue().get(key));
         } finally {
-            unlock(lockKey);
+            cacheMetrics.recordRedisGet(key, System.nanoTime() - start);
         }
+    }
 
+    /**
+     * 回源数据库，并记录耗时
+     *
+     * @param key      缓存键
+     * @param strategy 查询策略
+     * @param loader   数据库查询函数
+     * @return 数据库中的数据
+     */
+    private <T> T load(String key, String strategy, Supplier<T> loader) {
+        long start = System.nanoTime();
+        try {
+            return loader.get();
+        } finally {
+            cacheMetrics.recordLoad(key, strategy, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 执行查询，Redis 不可用时降级，正常查询到的数据保存一份旧副本
+     *
+     * @param key        缓存键
+     * @param strategy   查询策略
+     * @param dbFallback 数据库查询函数
+     * @param query      正常的查询流程
+     * @return 缓存值
+     */
+    private <T> T guarded(String key, String strategy, Supplier<T> dbFallback, Supplier<T> query) {
+        try {
+            T data = query.get();
+            localCache.putStale(key, data);
+            return data;
+        } catch (RedisUnavailableException e) {
+            return fallback(key, strategy, dbFallback);
+        }
+    }
+
+    /**
+     * Redis 不可用时的降级：先返回本地旧副本，没有旧副本的在并发限制内回源数据库，不回写缓存
+     *
+     * @param key        缓存键
+     * @param strategy   查询策略
+     * @param dbFallback 数据库查询函数
+     * @return 旧副本或数据库中的数据
+     */
+    <T> T fallback(String key, String strategy, Supplier<T> dbFallback) {
+        T stale = localCache.getStale(key);
+        if (stale != null) {
+            cacheMetrics.request(key, strategy, CacheMetrics.RESULT_FALLBACK_STALE);
+            return stale;
+        }
+        cacheMetrics.request(key, strategy, CacheMetrics.RESULT_FALLBACK_LOAD);
+        T data = dbFallbackLimiter.execute(() -> load(key, strategy, dbFallback));
+        localCache.putStale(key, data);
         return data;
     }
 
+    /**
+     * 执行批量查询，Redis 不可用时降级
+     * 批量查询返回的对象调用方可以修改，本地缓存保存和返回的都是浅拷贝，最近保存过的旧副本不重复保存
+     *
+     * @param keyPrefix  缓存键前缀
+     * @param ids        缓存键后缀列表，已去重
+     * @param strategy   查询策略
+     * @param dbFallback 批量数据库查询函数
+     * @param query      正常的查询流程
+     * @return ID 到缓存值的映射，顺序与 ids 一致
+     */
+    private <T, ID> Map<ID, T> guardedBatch(String keyPrefix, List<ID> ids, String strategy, Function<Collection<ID>, Map<ID, T>> dbFallback, Supplier<Map<ID, T>> query) {
+        Map<ID, T> result;
+        try {
+            result = query.get();
+        } catch (RedisUnavailableException e) {
+            // 1. 有旧副本的返回旧副本（本地缓存返回的是拷贝）
+            result = new HashMap<>(ids.size());
+            List<ID> missIds = new ArrayList<>();
+            for (ID id : ids) {
+                String key = keyPrefix + id;
+                T stale = localCache.getStale(key);
+                if (stale == null) {
+                    missIds.add(id);
+                    cacheMetrics.request(key, strategy, CacheMetrics.RESULT_FALLBACK_LOAD);
+                } else {
+                    result.put(id, stale);
+                    cacheMetrics.request(key, strategy, CacheMetrics.RESULT_FALLBACK_STALE);
+                }
+            }
+            // 2. 没有旧副本的在并发限制内一次性回源数据库，不回写缓存
+            if (!missIds.isEmpty()) {
+                Map<ID, T> dbData = dbFallbackLimiter.execute(() -> load(keyPrefix, strategy, () -> dbFallback.apply(missIds)));
+                result.putAll(dbData);
+            }
+            return orderBy(ids, result);
+        }
+        for (Map.Entry<ID, T> entry : result.entrySet()) {
+            String key = keyPrefix + entry.getKey();
+            localCache.putStale(key, entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 尽力写入缓存：数据已经拿到，Redis 不可用时放弃这次写入，不影响返回结果
+     *
+     * @param key   缓存键，用于日志
+     * @param write 写入操作
+     */
+    private void writeQuietly(String key, Runnable write) {
+        try {
+            write.run();
+        } catch (RedisUnavailableException e) {
+            log.debug("Redis 不可用，放弃写入缓存，key：{}", key);
+        }
+    }
+
+    /**
+     * 记录查询结果：命中、空值命中或未命中
+     */
+    private void recordResult(String key, String strategy, CacheResult<?> cacheResult) {
+        String result = !cacheResult.isExists() ? CacheMetrics.RESULT_MISS
+                : cacheResult.getData() == null ? CacheMetrics.RESULT_NULL_HIT : CacheMetrics.RESULT_HIT;
+        cacheMetrics.request(key, strategy, result);
+    }
+
+    /**
+     * 解码缓存数据
+     *
+     * @param key   缓存键
+     * @param bytes 缓存数据
+     * @param clazz 缓存值类型
+     * @return 缓存结果：命中、空值或未命中，格式不兼容的数据当作未命中
+     */
+    private <T> CacheResult<T> toCacheResult(String key, byte[] bytes, Class<T> clazz) {
+        if (bytes == null) {
+            return CacheResult.miss();
+        }
+        if (bytes.length == 0) {
+            return CacheResult.nullValue();
+        }
+        CacheValue<T> cacheValue = cacheCodecs.decode(key, bytes, clazz);
+        return cacheValue == null ? CacheResult.miss() : CacheResult.hit(cacheValue.data());
+    }
+
+    /**
+     * 批量查询，缓存穿透解决方案：缓存空对象
+     * 1. 使用一次 MGET 查询所有键
+     * 2. 收集未命中的 ID，只调用一次批量数据库查询
+     * 3. 使用一次 pipeline 把查询结果（包括空值）写回 Redis
+     * 返回的对象每次都是新反序列化出来的，调用方可以放心修改（不走本地缓存）
+     *
+     * @param keyPrefix  缓存键前缀
+     * @param ids        缓存键后缀集合（通常是业务主键）
+     * @param clazz      缓存值类型
+     * @param dbFallback 批量数据库查询函数，返回 ID 到对象的映射，不存在的 ID 不放入映射
+     * @param timeout    过期时间
+     * @param unit       过期时间单位
+     * @return ID 到缓存值的映射，顺序与 ids 一致，不存在的 ID 不会出现在结果中
+     */
+    public <T, ID> Map<ID, T> queryBatchWithPassThrough(String keyPrefix, Collection<ID> ids, Class<T> clazz, Function<Collection<ID>, Map<ID, T>> dbFallback, Long timeout, TimeUnit unit) {
+        Map<ID, T> result = new LinkedHashMap<>(ids.size());
+        if (ids.isEmpty()) {
+            return result;
+        }
+        List<ID> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        return guardedBatch(keyPrefix, idList, CacheMetrics.STRATEGY_PASS_THROUGH, dbFallback, () -> {
+            // 1. 使用 MGET 批量查询缓存
+            List<byte[]> values = multiGet(keyPrefix, idList);
+
+            // 2. 解析命中的数据，收集未命中的 ID
+            List<ID> missIds = new ArrayList<>();
+            for (int i = 0; i < idList.size(); i++) {
+                CacheResult<T> cacheResult = toCacheResult(keyPrefix + idList.get(i), values.get(i), clazz);
+                recordResult(keyPrefix + idList.get(i), CacheMetrics.STRATEGY_PASS_THROUGH, cacheResult);
+                if (!cacheResult.isExists()) {
+                    // 2.1 未命中缓存
+                    missIds.add(idList.get(i));
+                } else if (cacheResult.getData() != null) {
+                    // 2.2 命中缓存，空值说明是缓存穿透的空对象，直接跳过
+                    result.put(idList.get(i), cacheResult.getData());
+                }
+            }
+            if (missIds.isEmpty()) {
+                return orderBy(idList, result);
+            }
+
+            // 3. 未命中的 ID 一次性查询数据库
+            Map<ID, T> dbData = load(keyPrefix, CacheMetrics.STRATEGY_PASS_THROUGH, () -> dbFallback.apply(missIds));
+            Map<String, byte[]> toCache = new HashMap<>(missIds.size());
+            for (ID id : missIds) {
+                T data = dbData.get(id);
+                // 3.1 数据库中也不存在的，缓存空对象，避免缓存穿透
+                toCache.put(keyPrefix + id, data == null ? NULL_VALUE : cacheCodecs.encode(keyPrefix + id, data));
+                if (data != null) {
+                    result.put(id, data);
+                }
+            }
+
+            // 4. 使用 pipeline 批量写回缓存
+            writeQuietly(keyPrefix, () -> multiSet(toCache, timeout, unit));
+
+            return orderBy(idList, result);
+        });
+    }
+
+    /**
+     * 批量查询，缓存击穿解决方案：逻辑过期
+     * 1. 使用一次 MGET 查询所有键
+     * 2. 已逻辑过期的数据直接返回旧值，每个过期的键仍然单独加互斥锁，拿到锁的键合并成一个异步任务、一次批量数据库查询重建
+     * 3. 完全未命中的 ID 只调用一次批量数据库查询，并使用一次 pipeline 写回逻辑过期数据
+     * 返回的对象每次都是新反序列化出来的，调用方可以放心修改（不走本地缓存）
+     *
+     * @param keyPrefix     缓存键前缀
+     * @param ids           缓存键后缀集合（通常是业务主键）
+     * @param clazz         缓存值类型
+     * @param dbFallback    批量数据库查询函数，返回 ID 到对象的映射，不存在的 ID 不放入映射
+     * @param timeout       逻辑过期时间
+     * @param unit          过期时间单位
+     * @param lockKeyPrefix 互斥锁键名前缀
+     * @return ID 到缓存值的映射，顺序与 ids 一致，不存在的 ID 不会出现在结果中
+     */
+    public <T, ID> Map<ID, T> queryBatchWithLogicalExpiration(String keyPrefix, Collection<ID> ids, Class<T> clazz, Function<Collection<ID>, Map<ID, T>> dbFallback, Long timeout, TimeUnit unit, String lockKeyPrefix) {
+        Map<ID, T> result = new LinkedHashMap<>(ids.size());
+        if (ids.isEmpty()) {
+            return result;
+        }
+        List<ID> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        return guardedBatch(keyPrefix, idList, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, dbFallback, () -> {
+            // 1. 使用 MGET 批量查询缓存
+            List<byte[]> values = multiGet(keyPrefix, idList);
+
+            // 2. 解析命中的数据，收集未命中和已逻辑过期的 ID
+            List<ID> missIds = new ArrayList<>();
+            List<ID> staleIds = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < idList.size(); i++) {
+                ID id = idList.get(i);
+                byte[] bytes = values.get(i);
+                String key = keyPrefix + id;
+                if (bytes != null && bytes.length == 0) {
+                    // 2.1 空值缓存，说明数据库中不存在
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_NULL_HIT);
+                    continue;
+                }
+                CacheValue<T> cacheValue = bytes == null ? null : cacheCodecs.decodeLogical(key, bytes, clazz);
+                if (cacheValue == null) {
+                    // 2.2 未命中缓存，或者数据格式不兼容
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_MISS);
+                    missIds.add(id);
+                    continue;
+                }
+                result.put(id, cacheValue.data());
+                if (cacheValue.expireAt() > now) {
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_HIT);
+                } else {
+                    // 2.3 已逻辑过期，返回旧值，之后统一异步重建
+                    cacheMetrics.request(key, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, CacheMetrics.RESULT_STALE);
+                    staleIds.add(id);
+                }
+            }
+            if (!staleIds.isEmpty()) {
+                rebuildBatchAsync(keyPrefix, staleIds, dbFallback, timeout, unit, lockKeyPrefix);
+            }
+            if (missIds.isEmpty()) {
+                return orderBy(idList, result);
+            }
+
+            // 3. 未命中的 ID 一次性查询数据库
+            Map<ID, T> dbData = load(keyPrefix, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, () -> dbFallback.apply(missIds));
+            for (ID id : missIds) {
+                T data = dbData.get(id);
+                if (data != null) {
+                    result.put(id, data);
+                }
+            }
+
+            // 4. 使用 pipeline 批量写回缓存
+            writeQuietly(keyPrefix, () -> multiSetLogical(keyPrefix, missIds, dbData, timeout, unit, 0));
+
+            return orderBy(idList, result);
+        });
+    }
+
+    /**
+     * 记录一次访问，并判断是否使用本地缓存：前缀启用了本地缓存，或者是复制到本地的热点键
+     *
+     * @param keyPrefix 缓存键前缀
+     * @param key       缓存键
+     * @return 是否使用本地缓存
+     */
+    private boolean useLocalCache(String keyPrefix, String key) {
+        hotKeyDetector.record(key);
+        return localCache.isEnabled(keyPrefix) || localCache.isPinned(key);
+    }
+
     /**
      * 尝试获取锁
      *
@@ -250,7 +970,8 @@ public class CacheClient {
      * @return 是否成功获取锁
      */
     private Boolean tryLock(String key) {
-        Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", RedisConstants.LOCK_SHOP_TTL, TimeUnit.MINUTES);
+        Boolean success = redisCircuitBreaker.execute(
+                () -> stringRedisTemplate.opsForValue().setIfAbsent(key, "1", RedisConstants.LOCK_SHOP_TTL, TimeUnit.MINUTES));
         return BooleanUtil.isTrue(success);
     }
 
@@ -260,6 +981,272 @@ public class CacheClient {
      * @param key 锁的键名
      */
     private void unlock(String key) {
-        stringRedisTemplate.delete(key);
+        redisCircuitBreaker.run(() -> stringRedisTemplate.delete(key));
+    }
+
+    /**
+     * 异步重建逻辑过期的缓存，拿不到互斥锁说明已有其他线程在重建
+     *
+     * @param key        缓存键
+     * @param lockKey    互斥锁键名
+     * @param dbFallback 数据库查询函数
+     * @param timeout    逻辑过期时间
+     * @param unit       过期时间单位
+     * @param priority   重建优先级
+     * @param strategy   查询策略，用于统计
+     */
+    <T> void rebuildAsync(String key, String lockKey, Supplier<T> dbFallback, Long timeout, TimeUnit unit, int priority, String strategy) {
+        boolean locked;
+        try {
+            locked = tryLock(lockKey);
+        } catch (RedisUnavailableException e) {
+            // Redis 不可用，这次不刷新，继续返回当前的数据
+            return;
+        }
+        if (!locked) {
+            cacheMetrics.lockContention(key, strategy);
+            return;
+        }
+        submitRebuild(key, lockKey, dbFallback, timeout, unit, priority, strategy);
+    }
+
+    /**
+     * 批量异步重建逻辑过期的缓存
+     * 1. 使用一次 pipeline 为每个键单独加互斥锁，和单个键的重建互斥，拿不到锁的键已有其他线程在重建
+     * 2. 拿到锁的键合并成一个重建任务，只调用一次批量数据库查询，使用一次 pipeline 写回
+     * 3. 任务结束后一次性释放所有锁；重建队列已满时立即释放锁，调用方继续返回旧数据
+     *
+     * @param keyPrefix     缓存键前缀
+     * @param staleIds      已逻辑过期的 ID
+     * @param dbFallback    批量数据库查询函数
+     * @param timeout       逻辑过期时间
+     * @param unit          过期时间单位
+     * @param lockKeyPrefix 互斥锁键名前缀
+     */
+    private <T, ID> void rebuildBatchAsync(String keyPrefix, List<ID> staleIds, Function<Collection<ID>, Map<ID, T>> dbFallback, Long timeout, TimeUnit unit, String lockKeyPrefix) {
+        // 1. 批量加锁
+        List<String> lockKeys = new ArrayList<>(staleIds.size());
+        for (ID id : staleIds) {
+            lockKeys.add(lockKeyPrefix + id);
+        }
+        List<Object> locked;
+        try {
+            locked = tryLockAll(lockKeys);
+        } catch (RedisUnavailableException e) {
+            // Redis 不可用，这次不刷新，继续返回当前的数据
+            return;
+        }
+        List<ID> lockedIds = new ArrayList<>(staleIds.size());
+        List<String> lockedKeys = new ArrayList<>(staleIds.size());
+        for (int i = 0; i < staleIds.size(); i++) {
+            if (Boolean.TRUE.equals(locked.get(i))) {
+                lockedIds.add(staleIds.get(i));
+                lockedKeys.add(lockKeys.get(i));
+            } else {
+                cacheMetrics.lockContention(keyPrefix + staleIds.get(i), CacheMetrics.STRATEGY_LOGICAL_EXPIRE);
+            }
+        }
+        if (lockedIds.isEmpty()) {
+            return;
+        }
+
+        // 2. 合并成一个重建任务，第一个键的锁由当前任务持有，用它区分不同的批量任务
+        String taskKey = keyPrefix + lockedIds.get(0) + "+" + (lockedIds.size() - 1);
+        boolean accepted = cacheRefreshExecutor.submit(taskKey, CacheRefreshExecutor.PRIORITY_HIGH, () -> {
+            try {
+                long start = System.nanoTime();
+                Map<ID, T> dbData = dbFallback.apply(lockedIds);
+                long nanos = System.nanoTime() - start;
+                cacheMetrics.recordLoad(keyPrefix, CacheMetrics.STRATEGY_LOGICAL_EXPIRE, nanos);
+                writeQuietly(keyPrefix, () -> multiSetLogical(keyPrefix, lockedIds, dbData, timeout, unit, TimeUnit.NANOSECONDS.toMillis(nanos)));
+            } finally {
+                writeQuietly(keyPrefix, () -> unlockAll(lockedKeys));
+            }
+        });
+        if (!accepted) {
+            writeQuietly(keyPrefix, () -> unlockAll(lockedKeys));
+        }
+    }
+
+    /**
+     * 使用 pipeline 批量尝试获取锁
+     *
+     * @param keys 锁的键名
+     * @return 每个锁是否获取成功，顺序与 keys 一致
+     */
+    private List<Object> tryLockAll(List<String> keys) {
+        byte[] value = "1".getBytes(StandardCharsets.UTF_8);
+        return redisCircuitBreaker.execute(() -> stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.stringCommands().set(key.getBytes(StandardCharsets.UTF_8), value,
+                        Expiration.from(RedisConstants.LOCK_SHOP_TTL, TimeUnit.MINUTES), RedisStringCommands.SetOption.ifAbsent());
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * 一次性释放多个锁
+     *
+     * @param keys 锁的键名
+     */
+    private void unlockAll(List<String> keys) {
+        redisCircuitBreaker.run(() -> stringRedisTemplate.delete(keys));
+    }
+
+    /**
+     * 已经拿到互斥锁之后，提交异步重建任务，任务结束后释放锁
+     * 重建队列已满时放弃这次重建，立即释放锁，调用方继续返回旧数据，之后的请求会再次尝试
+     *
+     * @param key        缓存键
+     * @param lockKey    互斥锁键名
+     * @param dbFallback 数据库查询函数
+     * @param timeout    逻辑过期时间
+     * @param unit       过期时间单位
+     * @param priority   重建优先级
+     * @param strategy   查询策略，用于统计
+     */
+    private <T> void submitRebuild(String key, String lockKey, Supplier<T> dbFallback, Long timeout, TimeUnit unit, int priority, String strategy) {
+        boolean accepted = cacheRefreshExecutor.submit(key, priority, () -> {
+            try {
+                reload(key, dbFallback, timeout, unit, strategy);
+            } finally {
+                writeQuietly(lockKey, () -> unlock(lockKey));
+            }
+        });
+        if (!accepted) {
+            writeQuietly(lockKey, () -> unlock(lockKey));
+        }
+    }
+
+    /**
+     * 从数据库加载数据并写入逻辑过期缓存，同时记录加载耗时
+     * 数据库中不存在时缓存空值，避免缓存穿透
+     *
+     * @param key        缓存键
+     * @param dbFallback 数据库查询函数
+     * @param timeout    逻辑过期时间
+     * @param unit       过期时间单位
+     * @param strategy   查询策略，用于统计
+     * @return 数据库中的数据
+     */
+    private <T> T reload(String key, Supplier<T> dbFallback, long timeout, TimeUnit unit, String strategy) {
+        long start = System.nanoTime();
+        T data = dbFallback.get();
+        long nanos = System.nanoTime() - start;
+        cacheMetrics.recordLoad(key, strategy, nanos);
+        if (data == null) {
+            writeQuietly(key, () -> this.setNull(key, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES));
+            return null;
+        }
+        writeQuietly(key, () -> this.setWithLogicalExpire(key, data, timeout, unit, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return data;
+    }
+
+    /**
+     * 计算逻辑过期时间，带随机抖动
+     *
+     * @return 逻辑过期时间，毫秒时间戳
+     */
+    private long expireAt(long timeout, TimeUnit unit) {
+        return System.currentTimeMillis() + jitter(timeout, unit);
+    }
+
+    /**
+     * 给过期时间加上 [0, CACHE_TTL_JITTER_RATIO) 比例的随机抖动，避免批量写入的数据在同一时刻过期
+     *
+     * @return 加上抖动之后的过期时间，单位毫秒
+     */
+    private long jitter(long timeout, TimeUnit unit) {
+        long millis = unit.toMillis(timeout);
+        long bound = (long) (millis * RedisConstants.CACHE_TTL_JITTER_RATIO);
+        return bound <= 0 ? millis : millis + ThreadLocalRandom.current().nextLong(bound);
+    }
+
+    /**
+     * 使用 MGET 批量查询缓存
+     *
+     * @param keyPrefix 缓存键前缀
+     * @param ids       缓存键后缀列表
+     * @return 缓存值列表，与 ids 一一对应，不存在的为 null
+     */
+    private <ID> List<byte[]> multiGet(String keyPrefix, List<ID> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            String key = keyPrefix + id;
+            keys.add(key);
+            hotKeyDetector.record(key);
+        }
+        List<byte[]> values = redisCircuitBreaker.execute(() -> cacheRedisTemplate.opsForValue().multiGet(keys));
+        if (values == null) {
+            // pipeline/事务中才会返回 null，这里当作全部未命中
+            return Arrays.asList(new byte[ids.size()][]);
+        }
+        return values;
+    }
+
+    /**
+     * 使用 pipeline 批量写入缓存
+     *
+     * @param data    键值对
+     * @param timeout 过期时间，小于等于 0 表示不设置过期时间
+     * @param unit    过期时间单位
+     */
+    private void multiSet(Map<String, byte[]> data, long timeout, TimeUnit unit) {
+        if (data.isEmpty()) {
+            return;
+        }
+        redisCircuitBreaker.run(() -> cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            data.forEach((key, value) -> {
+                byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+                if (timeout > 0) {
+                    // 每个键单独计算抖动，避免同一批写入的数据同时过期
+                    connection.stringCommands().set(rawKey, value, Expiration.milliseconds(jitter(timeout, unit)), RedisStringCommands.SetOption.upsert());
+                } else {
+                    connection.stringCommands().set(rawKey, value);
+                }
+            });
+            return null;
+        }));
+    }
+
+    /**
+     * 使用 pipeline 批量写回逻辑过期数据：数据库中存在的不设置 TTL，不存在的缓存空对象，避免缓存穿透
+     *
+     * @param keyPrefix 缓存键前缀
+     * @param ids       查询数据库的 ID
+     * @param dbData    数据库查询结果
+     * @param timeout   逻辑过期时间
+     * @param unit      过期时间单位
+     * @param delta     重建耗时，单位毫秒
+     */
+    private <T, ID> void multiSetLogical(String keyPrefix, Collection<ID> ids, Map<ID, T> dbData, long timeout, TimeUnit unit, long delta) {
+        Map<String, byte[]> logicalData = new HashMap<>(ids.size());
+        Map<String, byte[]> nullData = new HashMap<>();
+        for (ID id : ids) {
+            String key = keyPrefix + id;
+            T data = dbData.get(id);
+            if (data == null) {
+                nullData.put(key, NULL_VALUE);
+            } else {
+                logicalData.put(key, cacheCodecs.encode(key, data, expireAt(timeout, unit), delta));
+            }
+        }
+        multiSet(logicalData, -1, unit);
+        multiSet(nullData, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 按照 ids 的顺序整理结果
+     */
+    private <T, ID> Map<ID, T> orderBy(List<ID> ids, Map<ID, T> data) {
+        Map<ID, T> ordered = new LinkedHashMap<>(data.size());
+        for (ID id : ids) {
+            T value = data.get(id);
+            if (value != null) {
+                ordered.put(id, value);
+            }
+        }
+        return ordered;
     }
-}
\ No newline at end of file
+}
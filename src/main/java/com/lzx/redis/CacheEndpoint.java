@@ -0,0 +1,178 @@
+package com.lzx.redis;
+
+import com.lzx.redis.codec.CacheCodecs;
+import com.lzx.redis.codec.CodecStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存概览：/actuator/cache
+ * 按键名前缀汇总命中率、各查询结果的次数、锁竞争次数、Redis 查询/解码/回源数据库的耗时，以及重建线程池、单飞、本地缓存的状态，
+ * 用于调整过期时间、找出给数据库带来压力的键；同时显示 Redis 熔断器和降级回源的状态
+ */
+@Component
+@Endpoint(id = "cache")
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class CacheEndpoint {
+
+    private final MeterRegistry meterRegistry;
+    private final CacheCodecs cacheCodecs;
+    private final CacheRefreshExecutor cacheRefreshExecutor;
+    private final SingleFlight singleFlight;
+    private final LocalCache localCache;
+    private final HotKeyDetector hotKeyDetector;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final DbFallbackLimiter dbFallbackLimiter;
+
+    @ReadOperation
+    public Map<String, Object> cache() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("prefixes", prefixes());
+
+        Map<String, Object> refresh = new LinkedHashMap<>();
+        refresh.put("queueSize", cacheRefreshExecutor.getQueueSize());
+        refresh.put("activeCount", cacheRefreshExecutor.getActiveCount());
+        refresh.put("submitted", cacheRefreshExecutor.getSubmittedCount());
+        refresh.put("deduped", cacheRefreshExecutor.getDedupedCount());
+        refresh.put("rejected", cacheRefreshExecutor.getRejectedCount());
+        refresh.put("completed", cacheRefreshExecutor.getCompletedCount());
+        refresh.put("failed", cacheRefreshExecutor.getFailedCount());
+        refresh.put("avgRebuildMillis", cacheRefreshExecutor.getAvgRebuildMillis());
+        refresh.put("maxRebuildMillis", cacheRefreshExecutor.getMaxRebuildMillis());
+        refresh.put("avgWaitMillis", cacheRefreshExecutor.getAvgWaitMillis());
+        result.put("refresh", refresh);
+
+        Map<String, Object> flight = new LinkedHashMap<>();
+        flight.put("load", singleFlight.getLoadCount());
+        flight.put("coalesced", singleFlight.getCoalescedCount());
+        flight.put("timeout", singleFlight.getTimeoutCount());
+        flight.put("inFlight", singleFlight.getInFlightCount());
+        result.put("singleFlight", flight);
+
+        result.put("localCacheSize", localCache.size());
+        result.put("hotKeys", hotKeyDetector.topKeys(10));
+
+        Map<String, Object> breaker = new LinkedHashMap<>();
+        breaker.put("state", redisCircuitBreaker.getState());
+        breaker.put("calls", redisCircuitBreaker.getCalls());
+        breaker.put("failureRate", redisCircuitBreaker.getFailureRate());
+        breaker.put("slowCallRate", redisCircuitBreaker.getSlowCallRate());
+        breaker.put("rejected", redisCircuitBreaker.getRejectedCount());
+        breaker.put("opened", redisCircuitBreaker.getOpenedCount());
+        result.put("circuitBreaker", breaker);
+
+        Map<String, Object> fallback = new LinkedHashMap<>();
+        fallback.put("availablePermits", dbFallbackLimiter.getAvailablePermits());
+        fallback.put("loaded", dbFallbackLimiter.getAcquiredCount());
+        fallback.put("shed", dbFallbackLimiter.getShedCount());
+        result.put("dbFallback", fallback);
+        return result;
+    }
+
+    /**
+     * 按键名前缀汇总
+     */
+    private Map<String, Map<String, Object>> prefixes() {
+        Map<String, Map<String, Object>> prefixes = new TreeMap<>();
+
+        // 1. 查询次数和命中率
+        for (Counter counter : meterRegistry.find("cache.requests").counters()) {
+            String prefix = counter.getId().getTag("prefix");
+            String strategy = counter.getId().getTag("strategy");
+            String result = counter.getId().getTag("result");
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Long>> requests = (Map<String, Map<String, Long>>) prefix(prefixes, prefix)
+                    .computeIfAbsent("requests", k -> new TreeMap<>());
+            requests.computeIfAbsent(strategy, k -> new TreeMap<>()).put(result, (long) counter.count());
+        }
+        prefixes.values().forEach(summary -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Long>> requests = (Map<String, Map<String, Long>>) summary.get("requests");
+            if (requests == null) {
+                return;
+            }
+            long total = 0;
+            long misses = 0;
+            for (Map<String, Long> results : requests.values()) {
+                for (Map.Entry<String, Long> entry : results.entrySet()) {
+                    total += entry.getValue();
+                    if (CacheMetrics.RESULT_MISS.equals(entry.getKey()) || CacheMetrics.RESULT_FALLBACK_LOAD.equals(entry.getKey())) {
+                        misses += entry.getValue();
+                    }
+                }
+            }
+            summary.put("hitRatio", total == 0 ? 0 : (double) (total - misses) / total);
+        });
+
+        // 2. 锁竞争
+        for (Counter counter : meterRegistry.find("cache.lock.contention").counters()) {
+            prefix(prefixes, counter.getId().getTag("prefix"))
+                    .merge("lockContention", (long) counter.count(), (a, b) -> (Long) a + (Long) b);
+        }
+
+        // 3. 耗时
+        timers(prefixes, "cache.redis.get", "redisGet");
+        timers(prefixes, "cache.decode", "decode");
+        timers(prefixes, "cache.load", "load");
+
+        // 4. 编解码
+        cacheCodecs.getStats().forEach((prefix, stats) -> prefix(prefixes, prefix).put("codec", codec(stats)));
+        return prefixes;
+    }
+
+    /**
+     * 汇总某一类耗时，回源数据库的耗时再按查询策略区分
+     */
+    private void timers(Map<String, Map<String, Object>> prefixes, String name, String field) {
+        for (Timer timer : meterRegistry.find(name).timers()) {
+            String prefix = timer.getId().getTag("prefix");
+            String strategy = timer.getId().getTag("strategy");
+            Map<String, Object> summary = prefix(prefixes, prefix);
+            if (strategy == null) {
+                summary.put(field, timer(timer));
+            } else {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> byStrategy = (Map<String, Object>) summary.computeIfAbsent(field, k -> new TreeMap<>());
+                byStrategy.put(strategy, timer(timer));
+            }
+        }
+    }
+
+    private static Map<String, Object> timer(Timer timer) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", timer.count());
+        summary.put("meanMillis", timer.mean(TimeUnit.MILLISECONDS));
+        summary.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            summary.put("p" + Math.round(percentile.percentile() * 100) + "Millis", percentile.value(TimeUnit.MILLISECONDS));
+        }
+        return summary;
+    }
+
+    private static Map<String, Object> codec(CodecStats stats) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("encodeCount", stats.getEncodeCount());
+        summary.put("decodeCount", stats.getDecodeCount());
+        summary.put("compressedCount", stats.getCompressedCount());
+        summary.put("compressionRatio", stats.getCompressionRatio());
+        summary.put("avgEncodeMicros", stats.getAvgEncodeMicros());
+        summary.put("avgDecodeMicros", stats.getAvgDecodeMicros());
+        return summary;
+    }
+
+    private static Map<String, Object> prefix(Map<String, Map<String, Object>> prefixes, String prefix) {
+        return prefixes.computeIfAbsent(prefix, k -> new LinkedHashMap<>());
+    }
+}
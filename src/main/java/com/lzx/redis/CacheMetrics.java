@@ -0,0 +1,183 @@
+package com.lzx.redis;
+
+import com.lzx.redis.codec.CodecStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存指标，按键名前缀和查询策略打标签，通过 actuator 的 /actuator/metrics 和 /actuator/cache 查看
+ * 1. cache.requests：查询次数，result 标签区分本地命中、命中、空值命中、返回过期数据、未命中，以及 Redis 不可用时的降级结果
+ * 2. cache.lock.contention：重建缓存时没有抢到互斥锁的次数
+ * 3. cache.redis.get、cache.decode、cache.load：Redis 查询、解码、回源数据库的耗时分布
+ * 4. 重建线程池、单飞、本地缓存、编解码统计的现有计数也注册为指标
+ * 5. redis.circuit.breaker.*、cache.fallback.*：Redis 熔断器的状态和拒绝次数，降级回源数据库的并发限制
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class CacheMetrics {
+
+    // 查询策略
+    public static final String STRATEGY_DIRECT = "direct";
+    public static final String STRATEGY_PASS_THROUGH = "pass-through";
+    public static final String STRATEGY_MUTEX = "mutex";
+    public static final String STRATEGY_LOGICAL_EXPIRE = "logical-expire";
+    public static final String STRATEGY_EARLY_REFRESH = "early-refresh";
+
+    // 查询结果
+    public static final String RESULT_LOCAL_HIT = "local_hit";
+    public static final String RESULT_HIT = "hit";
+    public static final String RESULT_NULL_HIT = "null_hit";
+    public static final String RESULT_STALE = "stale";
+    public static final String RESULT_MISS = "miss";
+    // Redis 不可用时的降级结果：返回本地旧副本、限流回源数据库
+    public static final String RESULT_FALLBACK_STALE = "fallback_stale";
+    public static final String RESULT_FALLBACK_LOAD = "fallback_load";
+
+    private final MeterRegistry meterRegistry;
+    private final CacheRefreshExecutor cacheRefreshExecutor;
+    private final SingleFlight singleFlight;
+    private final LocalCache localCache;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final DbFallbackLimiter dbFallbackLimiter;
+
+    // 已创建的计数器和计时器，避免每次记录都重新构建标签
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("cache.refresh.queue", cacheRefreshExecutor, CacheRefreshExecutor::getQueueSize)
+                .description("排队中的缓存重建任务数").register(meterRegistry);
+        Gauge.builder("cache.refresh.active", cacheRefreshExecutor, CacheRefreshExecutor::getActiveCount)
+                .description("正在执行的缓存重建任务数").register(meterRegistry);
+        FunctionCounter.builder("cache.refresh.tasks", cacheRefreshExecutor, CacheRefreshExecutor::getCompletedCount)
+                .tag("result", "completed").register(meterRegistry);
+        FunctionCounter.builder("cache.refresh.tasks", cacheRefreshExecutor, CacheRefreshExecutor::getFailedCount)
+                .tag("result", "failed").register(meterRegistry);
+        FunctionCounter.builder("cache.refresh.tasks", cacheRefreshExecutor, CacheRefreshExecutor::getDedupedCount)
+                .tag("result", "deduped").register(meterRegistry);
+        FunctionCounter.builder("cache.refresh.tasks", cacheRefreshExecutor, CacheRefreshExecutor::getRejectedCount)
+                .tag("result", "rejected").register(meterRegistry);
+
+        FunctionCounter.builder("cache.singleflight", singleFlight, SingleFlight::getLoadCount)
+                .tag("result", "load").register(meterRegistry);
+        FunctionCounter.builder("cache.singleflight", singleFlight, SingleFlight::getCoalescedCount)
+                .tag("result", "coalesced").register(meterRegistry);
+        FunctionCounter.builder("cache.singleflight", singleFlight, SingleFlight::getTimeoutCount)
+                .tag("result", "timeout").register(meterRegistry);
+        Gauge.builder("cache.singleflight.inflight", singleFlight, SingleFlight::getInFlightCount)
+                .description("正在加载中的缓存键数").register(meterRegistry);
+
+        Gauge.builder("cache.local.size", localCache, LocalCache::size)
+                .description("本地缓存条目数").register(meterRegistry);
+
+        Gauge.builder("redis.circuit.breaker.state", redisCircuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Redis 熔断器状态：0 关闭，1 打开，2 半开").register(meterRegistry);
+        FunctionCounter.builder("redis.circuit.breaker.rejected", redisCircuitBreaker, RedisCircuitBreaker::getRejectedCount)
+                .description("熔断器拒绝的 Redis 调用次数").register(meterRegistry);
+        FunctionCounter.builder("redis.circuit.breaker.opened", redisCircuitBreaker, RedisCircuitBreaker::getOpenedCount)
+                .description("熔断器打开的次数").register(meterRegistry);
+        Gauge.builder("cache.fallback.permits", dbFallbackLimiter, DbFallbackLimiter::getAvailablePermits)
+                .description("降级回源数据库的剩余并发数").register(meterRegistry);
+        FunctionCounter.builder("cache.fallback.shed", dbFallbackLimiter, DbFallbackLimiter::getShedCount)
+                .description("降级回源数据库时因并发限制被拒绝的请求数").register(meterRegistry);
+    }
+
+    /**
+     * 记录一次查询结果
+     *
+     * @param key      缓存键
+     * @param strategy 查询策略
+     * @param result   查询结果
+     */
+    public void request(String key, String strategy, String result) {
+        String prefix = prefixOf(key);
+        counters.computeIfAbsent(prefix + '|' + strategy + '|' + result, k -> Counter.builder("cache.requests")
+                .tag("prefix", prefix)
+                .tag("strategy", strategy)
+                .tag("result", result)
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * 记录一次锁竞争：需要重建缓存，但互斥锁被其他线程（节点）持有
+     *
+     * @param key      缓存键
+     * @param strategy 查询策略
+     */
+    public void lockContention(String key, String strategy) {
+        String prefix = prefixOf(key);
+        counters.computeIfAbsent(prefix + '|' + strategy + "|lock", k -> Counter.builder("cache.lock.contention")
+                .tag("prefix", prefix)
+                .tag("strategy", strategy)
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * 记录 Redis 查询耗时
+     */
+    public void recordRedisGet(String key, long nanos) {
+        timer("cache.redis.get", prefixOf(key), null).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录解码耗时
+     */
+    public void recordDecode(String key, long nanos) {
+        timer("cache.decode", prefixOf(key), null).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录回源数据库的耗时
+     */
+    public void recordLoad(String key, String strategy, long nanos) {
+        timer("cache.load", prefixOf(key), strategy).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 注册某个键名前缀的编解码统计
+     *
+     * @param prefix 键名前缀
+     * @param stats  编解码统计
+     */
+    public void bindCodecStats(String prefix, CodecStats stats) {
+        FunctionCounter.builder("cache.codec.bytes", stats, CodecStats::getRawBytes)
+                .tag("prefix", prefix).tag("type", "raw").register(meterRegistry);
+        FunctionCounter.builder("cache.codec.bytes", stats, CodecStats::getStoredBytes)
+                .tag("prefix", prefix).tag("type", "stored").register(meterRegistry);
+        Gauge.builder("cache.codec.compression.ratio", stats, CodecStats::getCompressionRatio)
+                .tag("prefix", prefix).register(meterRegistry);
+    }
+
+    /**
+     * 键名前缀：缓存键最后一个冒号之前的部分，例如 cache:shop:1 的前缀是 cache:shop:，与编解码统计一致
+     */
+    public static String prefixOf(String key) {
+        int index = key.lastIndexOf(':');
+        return index < 0 ? key : key.substring(0, index + 1);
+    }
+
+    private Timer timer(String name, String prefix, String strategy) {
+        return timers.computeIfAbsent(name + '|' + prefix + '|' + strategy, k -> {
+            Timer.Builder builder = Timer.builder(name)
+                    .tag("prefix", prefix)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram();
+            if (strategy != null) {
+                builder.tag("strategy", strategy);
+            }
+            return builder.register(meterRegistry);
+        });
+    }
+}
@@ -0,0 +1,239 @@
+package com.lzx.redis;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存重建线程池，所有异步重建缓存的任务共用
+ * 1. 队列有上限：数据库变慢时不会无限堆积重建任务，队列满了直接拒绝，调用方继续返回旧数据
+ * 2. 按缓存键去重：同一个键已经在排队时，不会再排一个
+ * 3. 按优先级执行：已经过期的热点数据优先重建
+ * 4. 统计队列长度、等待时间、重建耗时
+ * 5. 可选使用虚拟线程执行重建任务（线程数仍然受限，用于限制数据库并发）
+ */
+@Slf4j
+@Component
+public class CacheRefreshExecutor {
+
+    // 优先级：已经过期，正在返回旧数据
+    public static final int PRIORITY_HIGH = 10;
+    // 优先级：还没有过期，提前刷新
+    public static final int PRIORITY_NORMAL = 5;
+
+    // 执行重建任务的线程数
+    @Value("${zxdp.cache.refresh.threads:10}")
+    private int threads;
+
+    // 排队任务的上限
+    @Value("${zxdp.cache.refresh.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // 是否使用虚拟线程
+    @Value("${zxdp.cache.refresh.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor executor;
+
+    // 正在排队的缓存键
+    private final Map<String, RefreshTask> pending = new ConcurrentHashMap<>();
+    // 任务序号，优先级相同时先提交的先执行
+    private final AtomicLong sequence = new AtomicLong();
+    // 正在排队的任务数
+    private final AtomicInteger queued = new AtomicInteger();
+
+    // 统计
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder dedupedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder rebuildNanos = new LongAdder();
+    private final LongAccumulator maxRebuildNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * 重建任务
+     */
+    private final class RefreshTask implements Runnable, Comparable<RefreshTask> {
+
+        private final String key;
+        private final int priority;
+        private final long seq;
+        private final long enqueueNanos = System.nanoTime();
+        private final Runnable task;
+
+        private RefreshTask(String key, int priority, Runnable task) {
+            this.key = key;
+            this.priority = priority;
+            this.seq = sequence.incrementAndGet();
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            // 开始执行后就不算排队了，之后再提交同一个键的任务可以重新排队
+            pending.remove(key, this);
+            queued.decrementAndGet();
+            long start = System.nanoTime();
+            waitNanos.add(start - enqueueNanos);
+            try {
+                task.run();
+                completedCount.increment();
+            } catch (Exception e) {
+                failedCount.increment();
+                log.error("缓存重建失败，key：{}", key, e);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                rebuildNanos.add(elapsed);
+                maxRebuildNanos.accumulate(elapsed);
+            }
+        }
+
+        @Override
+        public int compareTo(RefreshTask other) {
+            // 优先级高的在前，优先级相同的按提交顺序
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("cache-refresh-", 0).factory()
+                : r -> {
+                    Thread thread = new Thread(r, "cache-refresh-" + index.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                };
+        // 核心线程数等于最大线程数，队列是无界的优先级队列，排队数量由 queued 控制
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        log.info("缓存重建线程池：线程数 {}，队列上限 {}，虚拟线程：{}", threads, queueCapacity, virtualThreads);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交重建任务
+     *
+     * @param key      缓存键，同一个键同时只会排队一个任务
+     * @param priority 优先级，越大越先执行
+     * @param task     重建任务
+     * @return 任务是否会被执行；返回 false 表示同一个键已经在排队或队列已满，调用方需要自己释放占用的资源（例如互斥锁）
+     */
+    public boolean submit(String key, int priority, Runnable task) {
+        RefreshTask refreshTask = new RefreshTask(key, priority, task);
+        // 1. 同一个键已经在排队
+        if (pending.putIfAbsent(key, refreshTask) != null) {
+            dedupedCount.increment();
+            return false;
+        }
+        // 2. 队列已满，拒绝，调用方继续返回旧数据
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            pending.remove(key, refreshTask);
+            rejectedCount.increment();
+            log.warn("缓存重建队列已满，放弃重建，key：{}", key);
+            return false;
+        }
+        try {
+            executor.execute(refreshTask);
+        } catch (RejectedExecutionException e) {
+            // 线程池已经关闭
+            queued.decrementAndGet();
+            pending.remove(key, refreshTask);
+            rejectedCount.increment();
+            return false;
+        }
+        submittedCount.increment();
+        return true;
+    }
+
+    /**
+     * 当前排队的任务数
+     */
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    /**
+     * 正在执行的任务数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    /**
+     * 因为同一个键已经在排队而被合并的任务数
+     */
+    public long getDedupedCount() {
+        return dedupedCount.sum();
+    }
+
+    /**
+     * 因为队列已满而被拒绝的任务数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 平均重建耗时，毫秒
+     */
+    public double getAvgRebuildMillis() {
+        long count = completedCount.sum() + failedCount.sum();
+        return count == 0 ? 0 : rebuildNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * 最大重建耗时，毫秒
+     */
+    public double getMaxRebuildMillis() {
+        return maxRebuildNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * 平均排队时间，毫秒
+     */
+    public double getAvgWaitMillis() {
+        long count = completedCount.sum() + failedCount.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count;
+    }
+}
@@ -0,0 +1,79 @@
+package com.lzx.redis;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Count-Min Sketch：用固定大小的计数器数组估计每个键的访问次数
+ * 估计值只会偏大不会偏小，偏大的程度取决于宽度和总访问量
+ */
+class CountMinSketch {
+
+    // 行数，每行使用不同的哈希函数
+    private static final int DEPTH = 4;
+
+    private final int mask;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param width 每行计数器个数，会向上取整为 2 的幂
+     */
+    CountMinSketch(int width) {
+        int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.counters = new AtomicIntegerArray(DEPTH * size);
+    }
+
+    /**
+     * 访问次数加一
+     *
+     * @param key 缓存键
+     */
+    void add(String key) {
+        int h1 = spread(key.hashCode());
+        int h2 = spread(h1) | 1;
+        for (int i = 0; i < DEPTH; i++) {
+            counters.incrementAndGet(index(i, h1 + i * h2));
+        }
+    }
+
+    /**
+     * 估计访问次数：取所有行中最小的计数
+     *
+     * @param key 缓存键
+     * @return 访问次数的估计值
+     */
+    int estimate(String key) {
+        int h1 = spread(key.hashCode());
+        int h2 = spread(h1) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, counters.get(index(i, h1 + i * h2)));
+        }
+        return min;
+    }
+
+    /**
+     * 清空所有计数
+     */
+    void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int row, int hash) {
+        return row * (mask + 1) + (hash & mask);
+    }
+
+    /**
+     * 打散哈希值，避免 hashCode 低位分布不均匀
+     */
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,78 @@
+package com.lzx.redis;
+
+import com.lzx.exception.BaseException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Redis 不可用时回源数据库的并发限制
+ * 缓存失效之后所有读请求都会落到数据库上，这里限制同时回源的请求数，
+ * 拿不到许可的请求等待一小段时间后直接失败，宁可让一部分请求失败，也不能把数据库压垮
+ */
+@Component
+public class DbFallbackLimiter {
+
+    // 同时回源数据库的请求数上限
+    @Value("${zxdp.cache.fallback.db-permits:20}")
+    private int permits;
+
+    // 等待许可的最长时间，单位毫秒
+    @Value("${zxdp.cache.fallback.wait-millis:100}")
+    private long waitMillis;
+
+    private Semaphore semaphore;
+
+    // 统计
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder shedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        semaphore = new Semaphore(permits);
+    }
+
+    /**
+     * 在并发限制内回源数据库
+     *
+     * @param loader 数据库查询函数
+     * @return 数据库中的数据
+     * @throws BaseException 等待许可超时
+     */
+    public <T> T execute(Supplier<T> loader) {
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        if (!acquired) {
+            shedCount.increment();
+            throw new BaseException("系统繁忙，请稍后重试");
+        }
+        acquiredCount.increment();
+        try {
+            return loader.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    public int getAvailablePermits() {
+        return semaphore.availablePermits();
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount.sum();
+    }
+
+    public long getShedCount() {
+        return shedCount.sum();
+    }
+}
@@ -0,0 +1,294 @@
+package com.lzx.redis;
+
+import com.lzx.dto.HotKeyDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点键探测
+ * 1. 每个节点用滑动窗口的 Count-Min Sketch 统计缓存键的访问次数：窗口分成若干个时间片，每个时间片一个 Sketch，
+ * 时间片到期后清空最旧的一个，窗口内的访问次数是所有时间片的估计值之和
+ * 2. 访问次数超过阈值的键自动复制到本地缓存（短过期时间），访问次数降到阈值一半以下时取消复制
+ * 3. 可选的集群汇总：每个节点把上一个时间片中访问较多的键上报到 Redis Stream，再读取所有节点的上报，
+ * 单个节点不热、但所有节点加起来很热的键也会被复制到本地
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class HotKeyDetector {
+
+    // 滑动窗口的时间片个数
+    private static final int SLOTS = 5;
+    // 每个 Sketch 的宽度
+    private static final int SKETCH_WIDTH = 4096;
+    // 参与集群汇总的候选键数量上限
+    private static final int MAX_CANDIDATES = 1000;
+
+    private final LocalCache localCache;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 是否启用热点键探测
+    @Value("${zxdp.hot-key.enabled:true}")
+    private boolean enabled;
+
+    // 统计窗口，单位秒
+    @Value("${zxdp.hot-key.window-seconds:10}")
+    private long windowSeconds;
+
+    // 本节点在统计窗口内的访问次数超过这个值，就是热点键
+    @Value("${zxdp.hot-key.threshold:500}")
+    private long threshold;
+
+    // 最多复制到本地的热点键数量
+    @Value("${zxdp.hot-key.top-k:20}")
+    private int topK;
+
+    // 热点键在本地缓存中的过期时间，单位秒
+    @Value("${zxdp.hot-key.local-ttl:5}")
+    private long localTtl;
+
+    // 是否启用集群汇总
+    @Value("${zxdp.hot-key.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    // 所有节点在统计窗口内的访问次数超过这个值，就是热点键
+    @Value("${zxdp.hot-key.cluster.threshold:2000}")
+    private long clusterThreshold;
+
+    // 每个时间片一个 Sketch
+    private final CountMinSketch[] sketches = new CountMinSketch[SLOTS];
+    // 每个时间片所有节点上报的访问次数
+    private final List<Map<String, Long>> clusterSlots = new ArrayList<>(SLOTS);
+    // 当前时间片
+    private volatile int current;
+
+    // 已经复制到本地的热点键
+    private final Set<String> hotKeys = ConcurrentHashMap.newKeySet();
+    // 参与集群汇总的候选键：本节点访问次数达到上报阈值，但还不是热点键
+    private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+    // 上次读取到的集群汇总消息 ID
+    private String lastRecordId;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hot-key-detector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < SLOTS; i++) {
+            sketches[i] = new CountMinSketch(SKETCH_WIDTH);
+            clusterSlots.add(new ConcurrentHashMap<>());
+        }
+        if (!enabled) {
+            return;
+        }
+        // 只读取启动之后的上报
+        lastRecordId = System.currentTimeMillis() + "-0";
+        long slotMillis = TimeUnit.SECONDS.toMillis(windowSeconds) / SLOTS;
+        scheduler.scheduleAtFixedRate(this::rotate, slotMillis, slotMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 记录一次访问，访问次数超过阈值时复制到本地缓存
+     *
+     * @param key 缓存键
+     */
+    public void record(String key) {
+        if (!enabled) {
+            return;
+        }
+        sketches[current].add(key);
+        if (hotKeys.contains(key)) {
+            return;
+        }
+        long count = localCount(key);
+        if (count >= threshold) {
+            promote(key, count);
+        } else if (clusterEnabled && count >= reportThreshold() && candidates.size() < MAX_CANDIDATES) {
+            candidates.add(key);
+        }
+    }
+
+    /**
+     * 查询访问次数最多的键，包括已经复制到本地的热点键和参与集群汇总的候选键
+     *
+     * @param limit 返回数量
+     * @return 按访问次数从高到低排列
+     */
+    public List<HotKeyDTO> topKeys(int limit) {
+        Set<String> keys = new LinkedHashSet<>(hotKeys);
+        keys.addAll(candidates);
+        List<HotKeyDTO> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            result.add(new HotKeyDTO(key, localCount(key), clusterCount(key), localCache.isPinned(key)));
+        }
+        result.sort(Comparator.comparingLong((HotKeyDTO hotKey) -> Math.max(hotKey.getLocalCount(), hotKey.getClusterCount())).reversed());
+        return result.subList(0, Math.min(limit, result.size()));
+    }
+
+    /**
+     * 本节点在统计窗口内的访问次数
+     */
+    private long localCount(String key) {
+        long count = 0;
+        for (CountMinSketch sketch : sketches) {
+            count += sketch.estimate(key);
+        }
+        return count;
+    }
+
+    /**
+     * 所有节点在统计窗口内的访问次数
+     */
+    private long clusterCount(String key) {
+        long count = 0;
+        for (Map<String, Long> slot : clusterSlots) {
+            count += slot.getOrDefault(key, 0L);
+        }
+        return count;
+    }
+
+    /**
+     * 上报阈值：访问次数达到这个值的键参与集群汇总
+     */
+    private long reportThreshold() {
+        return Math.max(threshold / 10, 1);
+    }
+
+    /**
+     * 复制到本地缓存，热点键数量达到上限时，替换掉访问次数最少的一个
+     */
+    private synchronized void promote(String key, long count) {
+        if (hotKeys.contains(key)) {
+            return;
+        }
+        if (hotKeys.size() >= topK) {
+            String coldest = null;
+            long coldestCount = Long.MAX_VALUE;
+            for (String hotKey : hotKeys) {
+                long hotCount = Math.max(localCount(hotKey), clusterCount(hotKey));
+                if (hotCount < coldestCount) {
+                    coldest = hotKey;
+                    coldestCount = hotCount;
+                }
+            }
+            if (coldest == null || coldestCount >= count) {
+                return;
+            }
+            demote(coldest);
+        }
+        hotKeys.add(key);
+        candidates.remove(key);
+        localCache.pin(key, localTtl, TimeUnit.SECONDS);
+        log.info("发现热点键，复制到本地缓存：{}，访问次数：{}", key, count);
+    }
+
+    /**
+     * 取消复制到本地缓存
+     */
+    private synchronized void demote(String key) {
+        if (hotKeys.remove(key)) {
+            localCache.unpin(key);
+            log.info("热点键已降温，取消本地复制：{}", key);
+        }
+    }
+
+    /**
+     * 切换到下一个时间片：清空最旧的时间片，汇总集群访问次数，取消已经降温的热点键
+     */
+    private void rotate() {
+        try {
+            int finished = current;
+            int next = (finished + 1) % SLOTS;
+            sketches[next].clear();
+            current = next;
+
+            if (clusterEnabled) {
+                report(finished);
+                aggregate(next);
+            }
+
+            // 访问次数降到阈值一半以下才取消复制，避免在阈值附近反复切换
+            for (String key : hotKeys) {
+                if (localCount(key) < threshold / 2 && (!clusterEnabled || clusterCount(key) < clusterThreshold / 2)) {
+                    demote(key);
+                }
+            }
+            candidates.removeIf(key -> localCount(key) < reportThreshold());
+        } catch (Exception e) {
+            log.warn("热点键统计失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 上报上一个时间片中本节点访问较多的键
+     */
+    private void report(int slot) {
+        Map<String, String> counts = new HashMap<>();
+        for (String key : hotKeys) {
+            counts.put(key, String.valueOf(sketches[slot].estimate(key)));
+        }
+        for (String key : candidates) {
+            counts.put(key, String.valueOf(sketches[slot].estimate(key)));
+        }
+        counts.values().removeIf("0"::equals);
+        if (counts.isEmpty()) {
+            return;
+        }
+        MapRecord<String, String, String> record = StreamRecords.string(counts).withStreamKey(RedisConstants.HOT_KEY_STREAM_KEY);
+        stringRedisTemplate.opsForStream().add(record);
+        stringRedisTemplate.opsForStream().trim(RedisConstants.HOT_KEY_STREAM_KEY, RedisConstants.HOT_KEY_STREAM_MAX_LEN, true);
+    }
+
+    /**
+     * 读取所有节点的上报，累加到当前时间片，访问次数超过集群阈值的键复制到本地
+     */
+    private void aggregate(int slot) {
+        Map<String, Long> slotCounts = clusterSlots.get(slot);
+        slotCounts.clear();
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(RedisConstants.HOT_KEY_STREAM_KEY, Range.rightUnbounded(Range.Bound.exclusive(lastRecordId)));
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        for (MapRecord<String, Object, Object> record : records) {
+            record.getValue().forEach((key, count) -> slotCounts.merge(key.toString(), Long.parseLong(count.toString()), Long::sum));
+        }
+        lastRecordId = records.get(records.size() - 1).getId().getValue();
+
+        for (String key : slotCounts.keySet()) {
+            long count = clusterCount(key);
+            if (count >= clusterThreshold) {
+                promote(key, count);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.lzx.redis;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * 互斥锁接口
  */
@@ -7,11 +9,22 @@ public interface ILock {
     /**
      * 尝试获取锁
      *
-     * @param timeoutSec 超时时间，单位秒
+     * @param timeoutSec 超时时间，单位秒：{@link SimpleRedisLock} 中是锁的自动释放时间，
+     *                   {@link ReentrantRedisLock} 中是等待获取锁的最长时间（锁由看门狗续期）
      * @return 是否成功获取锁
      */
     boolean tryLock(long timeoutSec);
 
+    /**
+     * 尝试获取锁，获取不到时在等待时间内等待锁释放
+     *
+     * @param waitTime  等待获取锁的最长时间，0 表示只尝试一次
+     * @param leaseTime 锁的自动释放时间，不大于 0 时使用默认值（{@link ReentrantRedisLock} 中由看门狗续期）
+     * @param unit      时间单位
+     * @return 是否成功获取锁
+     */
+    boolean tryLock(long waitTime, long leaseTime, TimeUnit unit);
+
     /**
      * 释放锁
      */
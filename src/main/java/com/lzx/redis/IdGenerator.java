@@ -0,0 +1,15 @@
+package com.lzx.redis;
+
+/**
+ * 分布式 ID 生成器
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成全局唯一的 ID
+     *
+     * @param keyPrefix 键前缀，用于区分不同的 ID 类型，例如："order:"、"user:" 等
+     * @return 分布式 ID
+     */
+    long nextId(String keyPrefix);
+}
@@ -0,0 +1,38 @@
+package com.lzx.redis;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 按键前缀选择 ID 生成器：配置的前缀使用雪花算法，生成 ID 时不访问 Redis；其他前缀使用 Redis 自增
+ * 业务代码注入 {@link IdGenerator} 时得到的是这个类
+ */
+@Primary
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class IdGeneratorRouter implements IdGenerator {
+
+    private final RedisIdWorker redisIdWorker;
+    private final SnowflakeIdWorker snowflakeIdWorker;
+
+    // 使用雪花算法的键前缀
+    @Value("${zxdp.id-worker.snowflake-prefixes:order:}")
+    private List<String> snowflakePrefixes;
+
+    /**
+     * 按键前缀选择 ID 生成器并生成 ID
+     *
+     * @param keyPrefix 键前缀，用于区分不同的 ID 类型，例如："order:"、"user:" 等
+     * @return 分布式 ID
+     */
+    @Override
+    public long nextId(String keyPrefix) {
+        IdGenerator generator = snowflakePrefixes.contains(keyPrefix) ? snowflakeIdWorker : redisIdWorker;
+        return generator.nextId(keyPrefix);
+    }
+}
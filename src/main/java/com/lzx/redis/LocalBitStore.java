@@ -0,0 +1,89 @@
+package com.lzx.redis;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * JVM 内的位数组存储，每个节点各一份，查询不需要网络往返
+ */
+public class LocalBitStore implements BitStore {
+
+    private final long numBits;
+    private volatile AtomicLongArray bits;
+    // 已经写入的元素个数
+    private final AtomicLong count = new AtomicLong();
+    // 重建中的存储，重建期间新增的数据需要同时写入，避免替换之后丢失
+    private volatile LocalBitStore rebuilding;
+
+    public LocalBitStore(long numBits) {
+        this.numBits = numBits;
+        this.bits = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+    }
+
+    @Override
+    public void set(long[] offsets) {
+        AtomicLongArray current = bits;
+        boolean changed = false;
+        for (long offset : offsets) {
+            int index = (int) (offset >>> 6);
+            long mask = 1L << offset;
+            long old;
+            do {
+                old = current.get(index);
+                if ((old & mask) != 0) {
+                    break;
+                }
+            } while (!current.compareAndSet(index, old, old | mask));
+            changed |= (old & mask) == 0;
+        }
+        if (changed) {
+            count.incrementAndGet();
+        }
+        LocalBitStore target = rebuilding;
+        if (target != null) {
+            target.set(offsets);
+        }
+    }
+
+    @Override
+    public boolean allSet(long[] offsets) {
+        AtomicLongArray current = bits;
+        for (long offset : offsets) {
+            if ((current.get((int) (offset >>> 6)) & (1L << offset)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public BitStore createEmpty() {
+        LocalBitStore rebuilt = new LocalBitStore(numBits);
+        rebuilding = rebuilt;
+        return rebuilt;
+    }
+
+    @Override
+    public void replaceWith(BitStore rebuilt) {
+        LocalBitStore source = (LocalBitStore) rebuilt;
+        this.bits = source.bits;
+        this.count.set(source.count.get());
+        rebuilding = null;
+    }
+
+    @Override
+    public void discard(BitStore rebuilt) {
+        rebuilding = null;
+    }
+
+    @Override
+    public boolean exists() {
+        // 本地存储每次启动都是空的，需要重新构建
+        return false;
+    }
+
+    @Override
+    public long count() {
+        return count.get();
+    }
+}
@@ -0,0 +1,411 @@
+package com.lzx.redis;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地缓存（一级缓存），位于 Redis 之前
+ * 1. 容量有上限，淘汰策略使用 Caffeine 的 W-TinyLFU，热点数据不会被偶发的扫描流量挤出去
+ * 2. 按键名前缀设置过期时间，只有注册过的前缀才会使用本地缓存
+ * 3. 数据更新时通过 Redis pub/sub 广播失效消息，所有节点删除自己的本地副本
+ * 4. 启用 Redis 客户端缓存追踪（{@link RedisTracking}）后，被追踪的前缀由 Redis 服务端推送失效消息，
+ * 本地副本可以保存更久，也不需要再广播失效消息；追踪连接断开期间，这些前缀退回到原来的行为
+ * 5. 热点键（{@link HotKeyDetector}）即使前缀没有启用本地缓存，也会以较短的过期时间复制到本地
+ * 6. 另外保存一份最近读到的旧副本，与上面的本地缓存分开存放、过期时间更长，只在 Redis 不可用时降级使用
+ * 7. 写入和读取时都做浅拷贝，调用方修改拿到的对象（例如博客的点赞状态、作者信息）不会影响其他请求
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class LocalCache implements MessageListener {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 已启用本地缓存的键名前缀，以及对应的过期时间（纳秒）
+    private final Map<String, Long> prefixTtlNanos = new ConcurrentHashMap<>();
+    // 由 Redis 服务端追踪的键名前缀，以及对应的过期时间（纳秒）
+    private final Map<String, Long> trackedPrefixTtlNanos = new ConcurrentHashMap<>();
+    // 自动复制到本地的热点键，以及对应的过期时间（纳秒）
+    private final Map<String, Long> pinnedKeyTtlNanos = new ConcurrentHashMap<>();
+    // 追踪连接是否可用，不可用时被追踪的前缀收不到失效消息
+    private volatile boolean trackingActive;
+    // 失效版本号：每次失效都会加一，用于避免"读 Redis 期间数据被更新，随后又把旧值写回本地缓存"的问题
+    private final AtomicLong stamp = new AtomicLong();
+
+    // 本地缓存，每个条目自带过期时间
+    private final Cache<String, Entry> cache = Caffeine.newBuilder()
+            .maximumSize(RedisConstants.LOCAL_CACHE_MAX_SIZE)
+            .expireAfter(new Expiry<String, Entry>() {
+                @Override
+                public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                    return entry.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                    return entry.ttlNanos();
+                }
+
+                @Override
+                public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    // 旧副本，Redis 不可用时降级使用
+    private final Cache<String, Object> stale = Caffeine.newBuilder()
+            .maximumSize(RedisConstants.LOCAL_STALE_MAX_SIZE)
+            .expireAfterWrite(RedisConstants.LOCAL_STALE_TTL, TimeUnit.MINUTES)
+            .build();
+    // 旧副本的过期策略，用于查询旧副本已经保存了多久
+    private final Policy.FixedExpiration<String, Object> staleExpiration = stale.policy().expireAfterWrite().orElseThrow();
+
+    /**
+     * 本地缓存条目
+     *
+     * @param value    缓存值
+     * @param ttlNanos 过期时间，单位纳秒
+     */
+    private record Entry(Object value, long ttlNanos) {
+    }
+
+    @PostConstruct
+    public void init() {
+        // 订阅缓存失效频道
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RedisConstants.CACHE_INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 为指定的键名前缀启用本地缓存
+     *
+     * @param keyPrefix 缓存键前缀
+     * @param timeout   本地缓存过期时间
+     * @param unit      过期时间单位
+     */
+    public void enable(String keyPrefix, long timeout, TimeUnit unit) {
+        prefixTtlNanos.put(keyPrefix, unit.toNanos(timeout));
+    }
+
+    /**
+     * 判断指定的键名前缀是否启用了本地缓存
+     *
+     * @param keyPrefix 缓存键前缀
+     * @return 是否启用
+     */
+    public boolean isEnabled(String keyPrefix) {
+        return prefixTtlNanos.containsKey(keyPrefix) || (trackingActive && trackedPrefixTtlNanos.containsKey(keyPrefix));
+    }
+
+    /**
+     * 查找缓存键所属的、已启用本地缓存的前缀，用于调用方没有传入前缀的场景（例如列表缓存）
+     *
+     * @param key 缓存键
+     * @return 键名前缀，没有启用本地缓存时返回 null
+     */
+    public String prefixOf(String key) {
+        for (String keyPrefix : prefixTtlNanos.keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                return keyPrefix;
+            }
+        }
+        if (trackingActive) {
+            for (String keyPrefix : trackedPrefixTtlNanos.keySet()) {
+                if (key.startsWith(keyPrefix)) {
+                    return keyPrefix;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把热点键复制到本地缓存，不论它的前缀是否启用了本地缓存
+     *
+     * @param key     缓存键
+     * @param timeout 本地缓存过期时间
+     * @param unit    过期时间单位
+     */
+    public void pin(String key, long timeout, TimeUnit unit) {
+        pinnedKeyTtlNanos.put(key, unit.toNanos(timeout));
+    }
+
+    /**
+     * 取消热点键的本地复制
+     *
+     * @param key 缓存键
+     */
+    public void unpin(String key) {
+        if (pinnedKeyTtlNanos.remove(key) != null) {
+            invalidateLocal(key);
+        }
+    }
+
+    /**
+     * 判断缓存键是否是复制到本地的热点键
+     *
+     * @param key 缓存键
+     * @return 是否已复制到本地
+     */
+    public boolean isPinned(String key) {
+        return pinnedKeyTtlNanos.containsKey(key);
+    }
+
+    /**
+     * 为 Redis 服务端追踪的键名前缀启用本地缓存
+     * 追踪连接可用时，这些前缀使用这里的过期时间，并且不再广播失效消息
+     *
+     * @param keyPrefixes 被追踪的键名前缀
+     * @param timeout     本地缓存过期时间
+     * @param unit        过期时间单位
+     */
+    public void enableTracking(Collection<String> keyPrefixes, long timeout, TimeUnit unit) {
+        for (String keyPrefix : keyPrefixes) {
+            trackedPrefixTtlNanos.put(keyPrefix, unit.toNanos(timeout));
+        }
+    }
+
+    /**
+     * 切换追踪连接的状态，状态变化时清空本地缓存：
+     * 断开时可能已经漏掉失效消息；重新连接之前的副本也无法确认是否过时
+     *
+     * @param active 追踪连接是否可用
+     */
+    public void setTrackingActive(boolean active) {
+        if (trackingActive != active) {
+            trackingActive = active;
+            invalidateAllLocal();
+        }
+    }
+
+    /**
+     * 获取当前的失效版本号，在读取 Redis 之前调用
+     *
+     * @return 失效版本号
+     */
+    public long stamp() {
+        return stamp.get();
+    }
+
+    /**
+     * 本地缓存中的条目数（估计值）
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 从本地缓存中获取数据
+     *
+     * @param key 缓存键
+     * @return 缓存值的拷贝，不存在返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry == null ? null : (T) copy(entry.value());
+    }
+
+    /**
+     * 写入本地缓存
+     * 如果从读取 Redis 到现在有失效消息到达，说明读到的数据可能已经过时，放弃写入
+     *
+     * @param keyPrefix 缓存键前缀，热点键可以为 null
+     * @param key       缓存键
+     * @param value     缓存值
+     * @param stamp     读取 Redis 之前获取的失效版本号
+     */
+    public void put(String keyPrefix, String key, Object value, long stamp) {
+        put(keyPrefix, key, value, stamp, Long.MAX_VALUE);
+    }
+
+    /**
+     * 写入本地缓存，过期时间取前缀配置和 maxTtlMillis 中较小的一个
+     * 用于逻辑过期的数据：本地副本不能比 Redis 中的逻辑过期时间活得更久
+     *
+     * @param keyPrefix    缓存键前缀
+     * @param key          缓存键
+     * @param value        缓存值
+     * @param stamp        读取 Redis 之前获取的失效版本号
+     * @param maxTtlMillis 最长过期时间，单位毫秒
+     */
+    public void put(String keyPrefix, String key, Object value, long stamp, long maxTtlMillis) {
+        Long ttlNanos = ttlNanos(keyPrefix, key);
+        if (ttlNanos == null || value == null || maxTtlMillis <= 0) {
+            return;
+        }
+        long ttl = Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(maxTtlMillis));
+        cache.put(key, new Entry(copy(value), ttl));
+        if (this.stamp.get() != stamp) {
+            // 写入期间有失效消息，删除刚写入的数据，宁可多查一次 Redis
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 保存旧副本，最近已经保存过的不重复拷贝；数据更新时旧副本会被删除，所以晚一点刷新不会读到过时很久的数据
+     *
+     * @param key   缓存键
+     * @param value 缓存值
+     */
+    public void putStale(String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        OptionalLong age = staleExpiration.ageOf(key, TimeUnit.SECONDS);
+        if (age.isEmpty() || age.getAsLong() >= RedisConstants.LOCAL_STALE_REFRESH_SECONDS) {
+            stale.put(key, copy(value));
+        }
+    }
+
+    /**
+     * 获取旧副本，Redis 不可用时降级使用
+     *
+     * @param key 缓存键
+     * @return 旧副本的拷贝，不存在返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getStale(String key) {
+        return (T) copy(stale.getIfPresent(key));
+    }
+
+    /**
+     * 获取保存时间不超过指定时长的旧副本，用于不能长时间使用旧数据的场景，例如登录状态
+     *
+     * @param key    缓存键
+     * @param maxAge 最长保存时间
+     * @param unit   时间单位
+     * @return 旧副本的拷贝，不存在或者保存太久返回 null
+     */
+    public <T> T getStale(String key, long maxAge, TimeUnit unit) {
+        OptionalLong age = staleExpiration.ageOf(key, unit);
+        if (age.isEmpty() || age.getAsLong() > maxAge) {
+            return null;
+        }
+        return getStale(key);
+    }
+
+    /**
+     * 删除本节点的本地缓存，数据已经更新，旧副本也一起删除
+     *
+     * @param key 缓存键
+     */
+    public void invalidateLocal(String key) {
+        stamp.incrementAndGet();
+        cache.invalidate(key);
+        stale.invalidate(key);
+    }
+
+    /**
+     * 清空本节点的本地缓存
+     * 旧副本不清空：追踪连接断开（通常是 Redis 不可用）时正是需要旧副本的时候
+     */
+    public void invalidateAllLocal() {
+        stamp.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * 删除本节点的本地缓存，并广播失效消息，通知其他节点删除
+     *
+     * @param key 缓存键
+     */
+    public void invalidate(String key) {
+        invalidateLocal(key);
+        if (isTracked(key)) {
+            // 被追踪的键写入 Redis 时，服务端会向所有节点推送失效消息
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(RedisConstants.CACHE_INVALIDATE_CHANNEL, key);
+        } catch (Exception e) {
+            // 广播失败时其他节点的副本会在本地过期时间后自动失效
+            log.error("广播缓存失效消息失败，key：{}", key, e);
+        }
+    }
+
+    /**
+     * 浅拷贝缓存值：不可变的类型直接返回，列表逐个拷贝元素后返回不可修改的列表，其他对象按属性拷贝
+     * 缓存的实体的属性都是不可变的类型（字符串、数字、时间），浅拷贝就足够隔离调用方的修改
+     */
+    private static Object copy(Object value) {
+        if (value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                || value instanceof Enum<?> || value instanceof Record) {
+            return value;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copied = new ArrayList<>(list.size());
+            for (Object element : list) {
+                copied.add(copy(element));
+            }
+            return Collections.unmodifiableList(copied);
+        }
+        return BeanUtil.copyProperties(value, value.getClass());
+    }
+
+    /**
+     * 本地缓存过期时间：追踪模式的前缀 > 普通前缀 > 热点键
+     */
+    private Long ttlNanos(String keyPrefix, String key) {
+        if (keyPrefix != null) {
+            if (trackingActive && trackedPrefixTtlNanos.containsKey(keyPrefix)) {
+                return trackedPrefixTtlNanos.get(keyPrefix);
+            }
+            Long ttlNanos = prefixTtlNanos.get(keyPrefix);
+            if (ttlNanos != null) {
+                return ttlNanos;
+            }
+        }
+        return pinnedKeyTtlNanos.get(key);
+    }
+
+    /**
+     * 判断缓存键是否由 Redis 服务端追踪，并且追踪连接可用
+     */
+    private boolean isTracked(String key) {
+        if (!trackingActive) {
+            return false;
+        }
+        for (String keyPrefix : trackedPrefixTtlNanos.keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 收到其他节点广播的失效消息
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("收到缓存失效消息，key：{}", key);
+        invalidateLocal(key);
+    }
+}
@@ -0,0 +1,130 @@
+package com.lzx.redis;
+
+import com.lzx.exception.RedisUnavailableException;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.List;
+
+/**
+ * Redis 位图存储，所有节点共享一份，新增数据时任意节点写入即可被其他节点看到
+ * 1. 一次查询使用一条 BITFIELD 命令，一次写入使用一个 Lua 脚本（同时处理重建中的位图和元素个数），都只有一次网络往返
+ * 2. 元素个数存放在位图旁边的 :count 键中，只有构建完成后才存在，没有参与重建的节点据此判断是否可用、估算误判率
+ * 3. 查询和写入都经过熔断器：查询在 Redis 不可用时全部放行，由缓存空对象兜底；写入抛出 {@link RedisUnavailableException} 由调用方重试
+ */
+public class RedisBitStore implements BitStore {
+
+    // 位宽：1 位无符号整数
+    private static final BitFieldSubCommands.BitFieldType BIT = BitFieldSubCommands.BitFieldType.unsigned(1);
+
+    // 重建时使用的临时键名后缀
+    private static final String REBUILD_SUFFIX = ":rebuild";
+    // 元素个数的键名后缀
+    private static final String COUNT_SUFFIX = ":count";
+
+    // 新增元素的 Lua 脚本
+    private static final DefaultRedisScript<Long> ADD_SCRIPT;
+    // 重建完成后替换的 Lua 脚本
+    private static final DefaultRedisScript<Long> REPLACE_SCRIPT;
+
+    static {
+        ADD_SCRIPT = new DefaultRedisScript<>();
+        ADD_SCRIPT.setLocation(new ClassPathResource("scripts/bloom-add.lua"));
+        ADD_SCRIPT.setResultType(Long.class);
+        REPLACE_SCRIPT = new DefaultRedisScript<>();
+        REPLACE_SCRIPT.setLocation(new ClassPathResource("scripts/bloom-replace.lua"));
+        REPLACE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final String key;
+    private final String countKey;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    public RedisBitStore(String key, StringRedisTemplate stringRedisTemplate, RedisCircuitBreaker redisCircuitBreaker) {
+        this.key = key;
+        this.countKey = key + COUNT_SUFFIX;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisCircuitBreaker = redisCircuitBreaker;
+    }
+
+    @Override
+    public void set(long[] offsets) {
+        // 重建中的位图自己不会再被重建，只传自己的两个键
+        List<String> keys = key.endsWith(REBUILD_SUFFIX)
+                ? List.of(key, countKey)
+                : List.of(key, countKey, key + REBUILD_SUFFIX, key + REBUILD_SUFFIX + COUNT_SUFFIX);
+        Object[] args = new Object[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            args[i] = Long.toString(offsets[i]);
+        }
+        redisCircuitBreaker.run(() -> stringRedisTemplate.execute(ADD_SCRIPT, keys, args));
+    }
+
+    @Override
+    public boolean allSet(long[] offsets) {
+        // BITFIELD key GET u1 offset1 GET u1 offset2 ...
+        BitFieldSubCommands commands = BitFieldSubCommands.create();
+        for (long offset : offsets) {
+            commands = commands.get(BIT).valueAt(offset);
+        }
+        BitFieldSubCommands getCommands = commands;
+        List<Long> values;
+        try {
+            values = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForValue().bitField(key, getCommands));
+        } catch (RedisUnavailableException e) {
+            // Redis 不可用，当作可能存在
+            return true;
+        }
+        if (values == null) {
+            return true;
+        }
+        for (Long value : values) {
+            if (value == null || value == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public BitStore createEmpty() {
+        RedisBitStore rebuilt = new RedisBitStore(key + REBUILD_SUFFIX, stringRedisTemplate, redisCircuitBreaker);
+        // 先清空上次残留的位图，再写入元素个数作为重建标记，之后所有节点新增的元素都会同时写入重建中的位图
+        stringRedisTemplate.delete(rebuilt.key);
+        stringRedisTemplate.opsForValue().set(rebuilt.countKey, "0");
+        return rebuilt;
+    }
+
+    @Override
+    public void replaceWith(BitStore rebuilt) {
+        RedisBitStore source = (RedisBitStore) rebuilt;
+        // 位图和元素个数在一个脚本中替换，RENAME 是原子操作，查询方不会看到半成品
+        stringRedisTemplate.execute(REPLACE_SCRIPT, List.of(key, countKey, source.key, source.countKey));
+    }
+
+    @Override
+    public void discard(BitStore rebuilt) {
+        RedisBitStore source = (RedisBitStore) rebuilt;
+        stringRedisTemplate.delete(List.of(source.countKey, source.key));
+    }
+
+    @Override
+    public boolean exists() {
+        // 元素个数只在构建完成时写入，位图本身可能是构建之前新增元素时留下的半成品
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(countKey));
+    }
+
+    @Override
+    public long count() {
+        String value;
+        try {
+            value = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForValue().get(countKey));
+        } catch (RedisUnavailableException e) {
+            return -1L;
+        }
+        return value == null ? -1L : Long.parseLong(value);
+    }
+}
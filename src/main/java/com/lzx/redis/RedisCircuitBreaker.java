@@ -0,0 +1,366 @@
+package com.lzx.redis;
+
+import com.lzx.exception.RedisUnavailableException;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Redis 熔断器
+ * 1. 关闭：正常调用 Redis，按秒分桶统计滑动窗口内的调用次数、失败次数、慢调用次数，
+ * 调用次数达到下限，并且失败率或慢调用率超过阈值时打开
+ * 2. 打开：直接拒绝调用，抛出 {@link RedisUnavailableException}，调用方降级（本地旧副本、限流回源数据库），
+ * 不用每个请求都等到超时
+ * 3. 半开：打开一段时间后，放行少量探测调用，全部成功就关闭，有一次失败或慢调用就重新打开
+ * Redis 服务端返回的错误（例如类型不匹配）说明 Redis 是可用的，不计入失败
+ * 同步调用（RedisTemplate）和异步调用（Lettuce 异步命令）共用同一个熔断器
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // 是否启用熔断器
+    @Value("${zxdp.redis.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    // 统计窗口，单位秒
+    @Value("${zxdp.redis.circuit-breaker.window-seconds:10}")
+    private int windowSeconds;
+
+    // 窗口内的调用次数达到这个值才计算失败率，避免少量调用就打开
+    @Value("${zxdp.redis.circuit-breaker.minimum-calls:20}")
+    private long minimumCalls;
+
+    // 失败率阈值，百分比
+    @Value("${zxdp.redis.circuit-breaker.failure-rate:50}")
+    private int failureRate;
+
+    // 超过这个耗时算慢调用，单位毫秒
+    @Value("${zxdp.redis.circuit-breaker.slow-call-millis:200}")
+    private long slowCallMillis;
+
+    // 慢调用率阈值，百分比
+    @Value("${zxdp.redis.circuit-breaker.slow-call-rate:80}")
+    private int slowCallRate;
+
+    // 打开之后多久进入半开，单位秒
+    @Value("${zxdp.redis.circuit-breaker.open-seconds:5}")
+    private long openSeconds;
+
+    // 半开状态放行的探测调用次数
+    @Value("${zxdp.redis.circuit-breaker.half-open-calls:5}")
+    private int halfOpenCalls;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    // 打开的时间，毫秒时间戳
+    private volatile long openedAt;
+    // 半开状态剩余的探测次数、已经成功的探测次数
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    // 每秒一个桶，环形使用
+    private Bucket[] buckets;
+
+    // 统计
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder openedCount = new LongAdder();
+
+    /**
+     * 统计桶：某一秒内的调用次数、失败次数、慢调用次数
+     */
+    private static final class Bucket {
+        private volatile long second = -1;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+
+        private void reset(long second) {
+            calls.reset();
+            failures.reset();
+            slowCalls.reset();
+            this.second = second;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        buckets = new Bucket[windowSeconds];
+        for (int i = 0; i < windowSeconds; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 通过熔断器调用 Redis
+     *
+     * @param call Redis 调用
+     * @return 调用结果
+     * @throws RedisUnavailableException 熔断器打开，或者调用超时、连接失败
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        if (!tryAcquire()) {
+            rejectedCount.increment();
+            throw new RedisUnavailableException("缓存服务繁忙，请稍后重试");
+        }
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RedisSystemException e) {
+            if (e.getCause() instanceof RedisCommandExecutionException) {
+                // Redis 服务端返回的错误，Redis 本身是可用的
+                onSuccess(System.nanoTime() - start);
+                throw e;
+            }
+            onFailure();
+            throw new RedisUnavailableException("缓存服务繁忙，请稍后重试", e);
+        } catch (DataAccessException e) {
+            onFailure();
+            throw new RedisUnavailableException("缓存服务繁忙，请稍后重试", e);
+        } catch (RuntimeException e) {
+            // 与 Redis 无关的异常（例如序列化失败），也要归还半开状态的探测次数
+            onSuccess(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * 通过熔断器异步调用 Redis，结果在 Lettuce 的事件线程中完成，后续不能执行阻塞操作
+     *
+     * @param call 异步 Redis 调用，调用方负责设置超时
+     * @return 调用结果，熔断器打开、调用超时或连接失败时以 {@link RedisUnavailableException} 结束
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<? extends CompletionStage<T>> call) {
+        if (!enabled) {
+            return call.get().toCompletableFuture();
+        }
+        if (!tryAcquire()) {
+            rejectedCount.increment();
+            return CompletableFuture.failedFuture(new RedisUnavailableException("缓存服务繁忙，请稍后重试"));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletionStage<T> stage;
+        try {
+            stage = call.get();
+        } catch (RuntimeException e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        stage.whenComplete((value, ex) -> {
+            long nanos = System.nanoTime() - start;
+            if (ex == null) {
+                onSuccess(nanos);
+                result.complete(value);
+                return;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof RedisCommandExecutionException) {
+                // Redis 服务端返回的错误，Redis 本身是可用的
+                onSuccess(nanos);
+                result.completeExceptionally(cause);
+            } else if (cause instanceof RedisException || cause instanceof TimeoutException || cause instanceof DataAccessException) {
+                onFailure();
+                result.completeExceptionally(new RedisUnavailableException("缓存服务繁忙，请稍后重试", cause));
+            } else {
+                onSuccess(nanos);
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 通过熔断器调用 Redis，没有返回值
+     *
+     * @param call Redis 调用
+     * @throws RedisUnavailableException 熔断器打开，或者调用超时、连接失败
+     */
+    public void run(Runnable call) {
+        execute(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * 获取当前状态，打开时间已到的会显示为半开
+     */
+    public State getState() {
+        State current = state.get();
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt >= TimeUnit.SECONDS.toMillis(openSeconds)) {
+            return State.HALF_OPEN;
+        }
+        return current;
+    }
+
+    /**
+     * 窗口内的调用次数
+     */
+    public long getCalls() {
+        return sum(bucket -> bucket.calls);
+    }
+
+    /**
+     * 窗口内的失败率，百分比
+     */
+    public double getFailureRate() {
+        long calls = getCalls();
+        return calls == 0 ? 0 : sum(bucket -> bucket.failures) * 100.0 / calls;
+    }
+
+    /**
+     * 窗口内的慢调用率，百分比
+     */
+    public double getSlowCallRate() {
+        long calls = getCalls();
+        return calls == 0 ? 0 : sum(bucket -> bucket.slowCalls) * 100.0 / calls;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getOpenedCount() {
+        return openedCount.sum();
+    }
+
+    /**
+     * 判断是否放行这次调用，打开时间已到时切换到半开
+     */
+    private boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < TimeUnit.SECONDS.toMillis(openSeconds)) {
+                return false;
+            }
+            // 只有一个线程负责切换到半开，并重置探测次数
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                halfOpenSuccesses.set(0);
+                halfOpenPermits.set(halfOpenCalls);
+                log.info("Redis 熔断器进入半开状态，开始探测");
+            }
+        }
+        return halfOpenPermits.getAndDecrement() > 0;
+    }
+
+    private void onSuccess(long nanos) {
+        boolean slow = nanos > TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        if (state.get() == State.HALF_OPEN) {
+            // 半开状态下的慢调用说明 Redis 还没有恢复
+            if (slow) {
+                open(State.HALF_OPEN);
+            } else if (halfOpenSuccesses.incrementAndGet() >= halfOpenCalls && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                for (Bucket bucket : buckets) {
+                    bucket.reset(-1);
+                }
+                log.info("Redis 熔断器已关闭，恢复正常调用");
+            }
+            return;
+        }
+        Bucket bucket = currentBucket();
+        bucket.calls.increment();
+        if (slow) {
+            bucket.slowCalls.increment();
+            checkThreshold();
+        }
+    }
+
+    private void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+            return;
+        }
+        Bucket bucket = currentBucket();
+        bucket.calls.increment();
+        bucket.failures.increment();
+        checkThreshold();
+    }
+
+    /**
+     * 失败率或慢调用率超过阈值时打开
+     */
+    private void checkThreshold() {
+        long calls = getCalls();
+        if (calls < minimumCalls) {
+            return;
+        }
+        long failures = sum(bucket -> bucket.failures);
+        long slowCalls = sum(bucket -> bucket.slowCalls);
+        if (failures * 100 >= failureRate * calls || slowCalls * 100 >= slowCallRate * calls) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAt = System.currentTimeMillis();
+            openedCount.increment();
+            if (from == State.HALF_OPEN) {
+                log.warn("Redis 熔断器探测失败，重新打开，{} 秒后再次探测", openSeconds);
+            } else {
+                log.warn("Redis 熔断器已打开，{} 秒后开始探测，失败率：{}%，慢调用率：{}%", openSeconds,
+                        String.format("%.1f", getFailureRate()), String.format("%.1f", getSlowCallRate()));
+            }
+        }
+    }
+
+    /**
+     * 当前这一秒的桶，桶里是旧数据时先清空
+     */
+    private Bucket currentBucket() {
+        long second = System.currentTimeMillis() / 1000;
+        Bucket bucket = buckets[(int) (second % buckets.length)];
+        if (bucket.second != second) {
+            synchronized (bucket) {
+                if (bucket.second != second) {
+                    bucket.reset(second);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * 汇总窗口内的某一项计数
+     */
+    private long sum(Function<Bucket, LongAdder> counter) {
+        long oldest = System.currentTimeMillis() / 1000 - buckets.length;
+        long total = 0;
+        for (Bucket bucket : buckets) {
+            if (bucket.second > oldest) {
+                total += counter.apply(bucket).sum();
+            }
+        }
+        return total;
+    }
+}
@@ -3,6 +3,10 @@ package com.lzx.redis;
 public class RedisConstants {
     // 分布式 ID 生成器，键名前缀
     public static final String ID_WORKER_KEY = "icr:";
+    // 雪花算法工作节点 ID 的租约，键名前缀，值是持有者标识
+    public static final String ID_WORKER_LEASE_KEY = "id:worker:";
+    // 雪花算法工作节点 ID 上一个持有者已经分配到的最大时间戳（毫秒），键名前缀，释放租约时写入，不过期
+    public static final String ID_WORKER_MARK_KEY = "id:worker:mark:";
     // 登录验证码，键名前缀
     public static final String LOGIN_CODE_KEY = "login:code:";
     // 登录验证码，过期时间
@@ -17,24 +21,115 @@ public class RedisConstants {
     public static final String CACHE_SHOP_TYPE_KEY = "cache:shopType:list";
     // 店铺类型缓存，过期时间，这个不是经常变化的，时间可以设置长一点，比如 1 天
     public static final Long CACHE_SHOP_TYPE_TTL = 1L;
+    // 店铺类型版本号，店铺类型变化时加一，各节点发现版本号变化后重新加载本地快照
+    public static final String CACHE_SHOP_TYPE_VERSION_KEY = "cache:shopType:version";
+    // 店铺类型变化广播频道，消息内容是新的版本号
+    public static final String SHOP_TYPE_CHANGED_CHANNEL = "cache:shopType:changed";
     // 商户缓存，键名前缀
     public static final String CACHE_SHOP_KEY = "cache:shop:";
     // 商户缓存，过期时间
     public static final Long CACHE_SHOP_TTL = 30L;
+    // 缓存过期时间的随机抖动比例，避免批量写入的数据同时过期
+    public static final Double CACHE_TTL_JITTER_RATIO = 0.1;
+    // 概率提前刷新（XFetch）的系数，越大越倾向于提前刷新
+    public static final Double CACHE_EARLY_REFRESH_BETA = 1.0;
+    // 商户本地缓存，过期时间，单位秒，需要比逻辑过期时间短得多
+    public static final Long LOCAL_CACHE_SHOP_TTL = 30L;
+    // 本地缓存，最大条目数
+    public static final Long LOCAL_CACHE_MAX_SIZE = 10000L;
+    // 本地旧副本，最大条目数，Redis 不可用时用于降级
+    public static final Long LOCAL_STALE_MAX_SIZE = 10000L;
+    // 本地旧副本，过期时间，单位分钟，Redis 不可用超过这个时间后旧副本不再可用
+    public static final Long LOCAL_STALE_TTL = 30L;
+    // 本地旧副本，同一个键在这段时间内不重复保存，单位秒
+    public static final Long LOCAL_STALE_REFRESH_SECONDS = 10L;
+    // 本地保存的登录状态，Redis 不可用时只使用这段时间内保存的，单位秒，与本地缓存的过期时间相同
+    // 已经登出或者在 Redis 中过期的 token 最多在这段时间内仍然可用
+    public static final Long LOCAL_STALE_LOGIN_TTL = 30L;
+    // 缓存失效广播频道，用于通知所有节点删除本地缓存
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    // 缓存压缩字典，键名前缀，后面是字典 ID
+    public static final String CACHE_DICT_KEY = "cache:dict:";
+    // 当前使用的缓存压缩字典 ID
+    public static final String CACHE_DICT_CURRENT_KEY = "cache:dict:current";
+    // 缓存压缩字典，最大字节数（Deflate 的窗口是 32KB，字典再大也用不上）
+    public static final Integer CACHE_DICT_MAX_SIZE = 16 * 1024;
+    // 缓存压缩字典，训练样本数量
+    public static final Integer CACHE_DICT_SAMPLE_COUNT = 500;
+    // 缓存压缩字典，从 Redis 重新加载的间隔，单位分钟
+    public static final Long CACHE_DICT_REFRESH_MINUTES = 10L;
+    // 缓存编解码统计，输出日志的间隔，单位分钟
+    public static final Long CACHE_STATS_REPORT_MINUTES = 10L;
+    // 热点键访问次数汇总 Stream，各节点定期上报本地的访问次数
+    public static final String HOT_KEY_STREAM_KEY = "hotkey:reports";
+    // 热点键访问次数汇总 Stream，保留的最大消息数
+    public static final Long HOT_KEY_STREAM_MAX_LEN = 10000L;
+    // 用户信息缓存，键名前缀
+    public static final String CACHE_USER_KEY = "cache:user:";
+    // 用户信息缓存，过期时间
+    public static final Long CACHE_USER_TTL = 30L;
+    // 布隆过滤器，键名前缀
+    public static final String BLOOM_FILTER_KEY = "bloom:";
+    // 布隆过滤器名称：商户 ID
+    public static final String BLOOM_SHOP = "shop";
+    // 布隆过滤器名称：博客 ID
+    public static final String BLOOM_BLOG = "blog";
+    // 布隆过滤器，预计元素个数
+    public static final Long BLOOM_EXPECTED_INSERTIONS = 1000000L;
+    // 布隆过滤器，期望误判率
+    public static final Double BLOOM_FPP = 0.01;
+    // 布隆过滤器，定期重建间隔，单位小时
+    public static final Long BLOOM_REBUILD_HOURS = 24L;
+    // 布隆过滤器，重建时每批从数据库读取的 ID 数量
+    public static final Integer BLOOM_PAGE_SIZE = 1000;
+    // 布隆过滤器新增元素广播频道，本地位数组模式下用于同步其他节点
+    public static final String BLOOM_ADD_CHANNEL = "bloom:add";
+    // 布隆过滤器，Redis 不可用时新增元素的重试间隔，单位秒
+    public static final Long BLOOM_ADD_RETRY_SECONDS = 5L;
+    // 布隆过滤器，新增元素的最大重试次数，超过后等待定期重建补上
+    public static final Integer BLOOM_ADD_MAX_RETRIES = 12;
+    // 布隆过滤器，其他节点正在构建时，检查构建是否完成的间隔，单位秒
+    public static final Long BLOOM_READY_CHECK_SECONDS = 30L;
     // 互斥锁，键名前缀
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     // 互斥锁，过期时间
     public static final Long LOCK_SHOP_TTL = 10L;
+    // 缓存未命中时，等待缓存重建的最长时间，单位毫秒
+    public static final Long CACHE_LOAD_WAIT_MILLIS = 3000L;
     // 互斥锁，前缀
     public static final String LOCK_KEY_PREFIX = "lock:";
     // 互斥锁，过期时间
     public static final Long LOCK_KEY_TTL = 10L;
     // redisson 分布式锁，键名前缀
     public static final String REDISSON_LOCK_KEY = "redisson:lock:";
+    // 可重入锁，键名前缀，值是 Hash：线程标识 -> 重入次数
+    public static final String REENTRANT_LOCK_KEY_PREFIX = "lock:reentrant:";
+    // 锁释放通知，频道前缀，后面拼接锁的键
+    public static final String LOCK_RELEASED_CHANNEL_PREFIX = "lock:released:";
+    // 等待锁释放通知时，一次最长的等待时间，单位毫秒，防止通知丢失
+    public static final Long LOCK_WAIT_MAX_PARK_MILLIS = 1000L;
     // 秒杀商品库存缓存，键名前缀
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    // 秒杀券已购买用户集合，键名前缀
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    // 秒杀券库存分片数，键名前缀，没有这个键的秒杀券只有一个库存键
+    public static final String SECKILL_SHARDS_KEY = "seckill:shards:";
+    // 秒杀券元数据（开始时间、结束时间、键的过期时间），键名前缀
+    public static final String SECKILL_META_KEY = "seckill:meta:";
+    // 秒杀券的键在结束时间之后保留的时间，单位天
+    public static final Long SECKILL_KEY_EXPIRE_GRACE = 1L;
+    // 秒杀券库存分片数在本地缓存的时间，单位秒
+    public static final Long SECKILL_SHARDS_LOCAL_TTL = 60L;
+    // 分片售罄标记在本地保留的时间，单位毫秒，过期后重新检查（补偿会把库存加回去）
+    public static final Long SECKILL_SHARD_EMPTY_TTL = 1000L;
+    // 秒杀券售罄广播频道，消息内容是 sold:秒杀券 ID:库存代数 或 reset:秒杀券 ID:库存代数
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:soldout";
+    // 秒杀券库存代数，键名前缀，每次补充库存加一，用于丢弃补充库存之前的售罄标记
+    public static final String SECKILL_STOCK_GEN_KEY = "seckill:stock:gen:";
     // 秒杀订单 Stream 队列，键名前缀
     public static final String SECKILL_STREAMS_ORDER_KEY = "streams.order";
+    // 秒杀订单死信队列，多次投递仍然处理失败的订单消息移到这里，人工处理后重新放回订单队列
+    public static final String SECKILL_STREAMS_ORDER_DLQ_KEY = "streams.order.dlq";
     // 博客点赞缓存，键名前缀
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     // 用户关注缓存，键名前缀
@@ -43,6 +138,12 @@ public class RedisConstants {
     public static final String FEED_KEY = "feed:";
     // 店铺位置缓存，键名前缀
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    // 缓存预热时先写入临时的店铺位置键，全部写完后再改名替换，键名后缀
+    public static final String SHOP_GEO_WARM_UP_SUFFIX = ":warm-up";
+    // 缓存预热锁，多个节点同时启动时只有一个节点读取数据库预热
+    public static final String LOCK_WARM_UP_KEY = "lock:warm-up";
+    // 缓存预热锁，过期时间，单位分钟
+    public static final Long LOCK_WARM_UP_TTL = 10L;
     // 用户签到缓存，键名前缀
     public static final String USER_SIGN_KEY = "sign:";
 }
@@ -1,29 +1,76 @@
 package com.lzx.redis;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 基于 Redis 的分布式 ID 生成器
+ * ID 由两部分组成：高 32 位是秒级时间戳，低 32 位是当天的序列号，序列号由 Redis 按天自增
+ * 号段模式（segment-size 大于 1）：
+ * 1. 每个节点一次 INCRBY 从 Redis 领取一段序列号，在本地用原子计数器分配，不再每个 ID 访问一次 Redis
+ * 2. 当前号段用掉一定比例时，在后台提前领取下一段，号段用完时直接切换
+ * 3. 号段属于领取时的日期，日期变化后丢弃剩余的序列号，领取新一天的号段
+ * 节点重启时没用完的序列号会被丢弃，Redis 中的计数是当天领取的序列号数量，不再是生成的 ID 数量
  */
+@Slf4j
 @Component
 @RequiredArgsConstructor(onConstructor_ = {@Autowired})
-public class RedisIdWorker {
+public class RedisIdWorker implements IdGenerator {
 
     private final StringRedisTemplate stringRedisTemplate;
 
-    // 初始时间戳：2000-01-01 00:00:00 的秒数
+    // 初始时间戳：2022-01-01 00:00:00 的秒数
     private static final long BEGIN_TIMESTAMP = 1640995200L;
     // 序列号位数
     private static final int COUNT_BITS = 32;
     // 步长
     private static final long STEP = 1L;
+    // 日期格式，拼接到键名中
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    // 每次领取的序列号数量，1 表示每个 ID 执行一次 INCR
+    @Value("${zxdp.id-worker.segment-size:1000}")
+    private long segmentSize;
+
+    // 当前号段用掉这个比例时，提前领取下一段
+    @Value("${zxdp.id-worker.prefetch-ratio:0.8}")
+    private double prefetchRatio;
+
+    // 键前缀到号段的映射
+    private final Map<String, SegmentBuffer> buffers = new ConcurrentHashMap<>();
+
+    // 当前日期，跨天时更新
+    private volatile Day day = Day.of(System.currentTimeMillis() / 1000);
+
+    // 提前领取号段的线程
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "id-worker-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void destroy() {
+        prefetchExecutor.shutdownNow();
+    }
 
     /**
      * 基于 Redis 的分布式 ID 生成器
@@ -31,18 +78,162 @@ public class RedisIdWorker {
      * @param keyPrefix 键前缀，用于区分不同的 ID 类型，例如："order:"、"user:" 等
      * @return 分布式 ID
      */
+    @Override
     public long nextId(String keyPrefix) {
-        // 1、生成时间戳
-        LocalDateTime now = LocalDateTime.now();
-        long timestamp = now.toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP;
-        // 2、拼接键
-        // 2.1、获取当前日期，格式：yyyy:MM:dd，精确到天，方便统计每天的 ID 数量
-        String date = now.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
-        // 2.2、拼接键，格式："icr:order:2025:01:01"
-        String key = RedisConstants.ID_WORKER_KEY + keyPrefix + date;
-        // 2.3、自增长
-        long count = stringRedisTemplate.opsForValue().increment(key, STEP);
-        // 生成 ID
+        // 1、生成时间戳，使用本地时区的时间，与日期一致
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        Day today = currentDay(nowSeconds);
+        long timestamp = nowSeconds + today.offsetSeconds() - BEGIN_TIMESTAMP;
+        // 2、获取当天的序列号
+        long count;
+        if (segmentSize <= 1) {
+            // 键格式："icr:order:2025:01:01"
+            count = stringRedisTemplate.opsForValue().increment(RedisConstants.ID_WORKER_KEY + keyPrefix + today.date(), STEP);
+        } else {
+            SegmentBuffer buffer = buffers.get(keyPrefix);
+            if (buffer == null) {
+                buffer = buffers.computeIfAbsent(keyPrefix, SegmentBuffer::new);
+            }
+            count = buffer.next(today);
+        }
+        // 3、生成 ID
         return timestamp << COUNT_BITS | count;
     }
+
+    /**
+     * 当前日期，只在跨天时重新计算，不需要每次格式化日期
+     */
+    private Day currentDay(long nowSeconds) {
+        Day current = day;
+        if (nowSeconds >= current.startSeconds() && nowSeconds < current.endSeconds()) {
+            return current;
+        }
+        current = Day.of(nowSeconds);
+        day = current;
+        return current;
+    }
+
+    /**
+     * 日期
+     *
+     * @param date          日期，格式：yyyy:MM:dd
+     * @param startSeconds  当天开始的秒数
+     * @param endSeconds    第二天开始的秒数
+     * @param offsetSeconds 本地时区与 UTC 的差值，单位秒
+     */
+    private record Day(String date, long startSeconds, long endSeconds, long offsetSeconds) {
+
+        static Day of(long nowSeconds) {
+            ZoneId zone = ZoneId.systemDefault();
+            ZonedDateTime now = Instant.ofEpochSecond(nowSeconds).atZone(zone);
+            LocalDate date = now.toLocalDate();
+            return new Day(
+                    date.format(DATE_FORMATTER),
+                    date.atStartOfDay(zone).toEpochSecond(),
+                    date.plusDays(1).atStartOfDay(zone).toEpochSecond(),
+                    now.getOffset().getTotalSeconds()
+            );
+        }
+    }
+
+    /**
+     * 号段：从 Redis 领取的一段连续的序列号
+     */
+    private static final class Segment {
+        // 号段所属的日期
+        private final String date;
+        // 号段中最大的序列号
+        private final long max;
+        // 分配到这个序列号时，提前领取下一段
+        private final long prefetchAt;
+        // 下一个分配的序列号
+        private final AtomicLong cursor;
+
+        private Segment(String date, long min, long max, long prefetchAt) {
+            this.date = date;
+            this.max = max;
+            this.prefetchAt = prefetchAt;
+            this.cursor = new AtomicLong(min);
+        }
+    }
+
+    /**
+     * 一个键前缀的号段：当前号段和提前领取的下一段
+     */
+    private final class SegmentBuffer {
+
+        private final String keyPrefix;
+        // 当前号段，只在切换时整体替换
+        private volatile Segment current;
+        // 提前领取的下一段
+        private volatile CompletableFuture<Segment> next;
+
+        private SegmentBuffer(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+
+        /**
+         * 分配一个序列号：当前号段还有序列号时无锁分配，用完或者跨天时切换号段
+         */
+        long next(Day today) {
+            while (true) {
+                Segment segment = current;
+                if (segment != null && segment.date.equals(today.date())) {
+                    long count = segment.cursor.getAndIncrement();
+                    if (count <= segment.max) {
+                        if (count == segment.prefetchAt) {
+                            // 只有分配到这个序列号的线程会触发
+                            prefetch(segment.date);
+                        }
+                        return count;
+                    }
+                }
+                switchSegment(segment, today);
+            }
+        }
+
+        /**
+         * 在后台领取下一段，失败时号段用完后在当前线程领取
+         */
+        private void prefetch(String date) {
+            next = CompletableFuture.supplyAsync(() -> allocate(date), prefetchExecutor);
+        }
+
+        /**
+         * 切换号段：优先使用提前领取的下一段，没有（或者已经跨天）时在当前线程领取
+         *
+         * @param exhausted 用完的号段，已经被其他线程切换时直接返回
+         * @param today     当前日期
+         */
+        private synchronized void switchSegment(Segment exhausted, Day today) {
+            if (current != exhausted) {
+                return;
+            }
+            Segment candidate = null;
+            CompletableFuture<Segment> pending = next;
+            next = null;
+            if (pending != null) {
+                try {
+                    candidate = pending.join();
+                } catch (CompletionException e) {
+                    log.warn("提前领取 ID 号段失败，重新领取，键前缀：{}，原因：{}", keyPrefix, e.getCause().getMessage());
+                }
+            }
+            if (candidate == null || !candidate.date.equals(today.date())) {
+                candidate = allocate(today.date());
+            }
+            current = candidate;
+        }
+
+        /**
+         * 从 Redis 领取一段序列号
+         * INCRBY icr:order:2025:01:01 segmentSize
+         */
+        private Segment allocate(String date) {
+            long max = stringRedisTemplate.opsForValue().increment(RedisConstants.ID_WORKER_KEY + keyPrefix + date, segmentSize);
+            long min = max - segmentSize + 1;
+            long prefetchAt = min + Math.min(segmentSize - 1, (long) (segmentSize * prefetchRatio));
+            return new Segment(date, min, max, prefetchAt);
+        }
+    }
 }
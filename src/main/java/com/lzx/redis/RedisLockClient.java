@@ -0,0 +1,39 @@
+package com.lzx.redis;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * 创建可重入锁，所有锁共用看门狗和释放通知
+ * 用法与 redissonClient.getLock(...) 相同：每次使用时创建锁对象，获取和释放锁必须在同一个线程
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class RedisLockClient {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisLockWatchdog redisLockWatchdog;
+    private final RedisLockNotifier redisLockNotifier;
+
+    /**
+     * 非公平锁：锁释放时等待的线程和新来的线程一起竞争
+     *
+     * @param name 锁的名称
+     * @return 可重入锁
+     */
+    public ReentrantRedisLock getLock(String name) {
+        return new ReentrantRedisLock(name, stringRedisTemplate, redisLockWatchdog, redisLockNotifier, false);
+    }
+
+    /**
+     * 公平锁：本节点的等待线程按先来后到获取锁
+     *
+     * @param name 锁的名称
+     * @return 可重入锁
+     */
+    public ReentrantRedisLock getFairLock(String name) {
+        return new ReentrantRedisLock(name, stringRedisTemplate, redisLockWatchdog, redisLockNotifier, true);
+    }
+}
@@ -0,0 +1,144 @@
+package com.lzx.redis;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 分布式锁的释放通知
+ * 获取锁失败的线程不再轮询，而是在本地的信号量上等待，锁释放时由解锁脚本 PUBLISH 通知唤醒：
+ * 1. 启动时用共享的监听容器订阅一次 lock:released:*，所有锁的频道共用这一个订阅连接，等待时不需要订阅、退订
+ * 2. 每个锁在本节点有等待线程时才有一个信号量，收到释放通知时唤醒一个等待线程重新尝试，最后一个线程离开时删除
+ * 3. 锁过期时不会有通知、Pub/Sub 消息也可能丢失，等待时间不超过锁的剩余时间和 {@link RedisConstants#LOCK_WAIT_MAX_PARK_MILLIS}
+ * 4. 公平模式下信号量按先来后到唤醒，本节点已有线程在等待时新来的线程直接排队，不插队抢锁；不同节点之间不保证公平
+ */
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class RedisLockNotifier implements MessageListener {
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 锁的键 -> 本节点的等待线程
+    private final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 一个锁在本节点的等待线程
+     */
+    private static final class Waiters {
+        // 收到释放通知时释放一个许可，唤醒一个等待线程
+        private final Semaphore semaphore;
+        // 等待线程数量，只在 ConcurrentHashMap 的 compute 中修改
+        private int count;
+
+        private Waiters(boolean fair) {
+            this.semaphore = new Semaphore(0, fair);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new PatternTopic(RedisConstants.LOCK_RELEASED_CHANNEL_PREFIX + "*"));
+    }
+
+    /**
+     * 锁释放通知的频道
+     *
+     * @param key 锁的键
+     * @return 频道名称
+     */
+    public static String channel(String key) {
+        return RedisConstants.LOCK_RELEASED_CHANNEL_PREFIX + key;
+    }
+
+    /**
+     * 收到锁释放通知，唤醒一个等待这个锁的线程
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        Waiters entry = waiters.get(channel.substring(RedisConstants.LOCK_RELEASED_CHANNEL_PREFIX.length()));
+        if (entry != null) {
+            entry.semaphore.release();
+        }
+    }
+
+    /**
+     * 在等待时间内获取锁，获取失败时等待释放通知
+     *
+     * @param key        锁的键
+     * @param waitMillis 等待获取锁的最长时间，单位毫秒，0 表示只尝试一次
+     * @param fair       是否公平：本节点已有线程在等待时不插队，重入时应传入 false
+     * @param attempt    尝试获取一次锁，成功返回 null，失败返回锁的剩余时间（毫秒，-1 表示没有过期时间，-2 表示锁已经不存在）
+     * @return 是否成功获取锁
+     */
+    public boolean acquire(String key, long waitMillis, boolean fair, Supplier<Long> attempt) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        // 1. 先尝试一次，没有竞争时不需要登记；公平模式下本节点已有线程在等待时直接排队
+        if (!(fair && waiters.containsKey(key)) && attempt.get() == null) {
+            return true;
+        }
+        if (waitMillis <= 0) {
+            return false;
+        }
+        // 2. 登记为等待线程，之后的释放通知都不会错过
+        Waiters entry = join(key, fair);
+        boolean queued = fair && entry.count > 1;
+        try {
+            // 3. 登记之后再尝试一次，避免锁恰好在登记之前释放；公平模式下前面有线程在等待时先排队
+            Long ttl = queued ? Long.valueOf(-1L) : attempt.get();
+            while (ttl != null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 4. 等待释放通知，最多等到锁过期
+                long parkMillis = Math.min(remaining, RedisConstants.LOCK_WAIT_MAX_PARK_MILLIS);
+                if (ttl >= 0) {
+                    parkMillis = Math.min(parkMillis, ttl);
+                }
+                if (ttl != -2L && parkMillis > 0) {
+                    entry.semaphore.tryAcquire(parkMillis, TimeUnit.MILLISECONDS);
+                }
+                ttl = attempt.get();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            leave(key);
+        }
+    }
+
+    /**
+     * 登记为等待线程
+     *
+     * @return 这个锁的等待线程
+     */
+    private Waiters join(String key, boolean fair) {
+        return waiters.compute(key, (k, current) -> {
+            Waiters next = current == null ? new Waiters(fair) : current;
+            next.count++;
+            return next;
+        });
+    }
+
+    /**
+     * 取消登记，最后一个等待线程离开时删除信号量
+     */
+    private void leave(String key) {
+        waiters.computeIfPresent(key, (k, current) -> --current.count == 0 ? null : current);
+    }
+}
@@ -0,0 +1,182 @@
+package com.lzx.redis;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.util.StrUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可重入锁的看门狗
+ * 所有 {@link ReentrantRedisLock} 共用一个后台线程：持有锁期间每隔三分之一租约时间，把本节点持有的全部锁分批放到 pipeline 中续期，
+ * 一批锁只需要一次网络往返；节点宕机后不再续期，锁在租约时间后自动释放
+ * 续期脚本通过 EVALSHA 执行，Redis 重启后脚本缓存丢失（NOSCRIPT）时重新加载
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class RedisLockWatchdog {
+
+    // 续期的 Lua 脚本
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+
+    static {
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("scripts/reen-renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 锁的租约时间，单位秒
+    @Value("${zxdp.lock.lease-seconds:30}")
+    private long leaseSeconds;
+
+    // 每个 pipeline 中续期的锁数量
+    @Value("${zxdp.lock.renew-batch-size:100}")
+    private int renewBatchSize;
+
+    // 本节点持有的锁 -> 本地记录的重入次数
+    private final Map<Lease, Integer> leases = new ConcurrentHashMap<>();
+
+    // 续期线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-lock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 持有的锁
+     *
+     * @param key      锁的键
+     * @param threadId 线程标识
+     */
+    private record Lease(String key, String threadId) {
+    }
+
+    @PostConstruct
+    public void init() {
+        long period = Math.max(1000L, TimeUnit.SECONDS.toMillis(leaseSeconds) / 3);
+        scheduler.scheduleWithFixedDelay(this::renewAll, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 锁的租约时间，单位秒
+     */
+    public long getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    /**
+     * 获取锁成功后登记，之后由看门狗续期
+     *
+     * @param key      锁的键
+     * @param threadId 线程标识
+     */
+    public void register(String key, String threadId) {
+        leases.merge(new Lease(key, threadId), 1, Integer::sum);
+    }
+
+    /**
+     * 释放锁之后更新登记，只更新已经登记的锁，指定了租约时间、没有登记的锁不会因为部分释放而开始续期
+     *
+     * @param key       锁的键
+     * @param threadId  线程标识
+     * @param remaining 释放后 Redis 中剩余的重入次数，0 或者负数表示锁已经不再持有
+     */
+    public void release(String key, String threadId, long remaining) {
+        Lease lease = new Lease(key, threadId);
+        if (remaining <= 0) {
+            leases.remove(lease);
+        } else {
+            leases.computeIfPresent(lease, (k, v) -> (int) remaining);
+        }
+    }
+
+    /**
+     * 分批续期本节点持有的全部锁
+     */
+    private void renewAll() {
+        if (leases.isEmpty()) {
+            return;
+        }
+        List<Lease> snapshot = new ArrayList<>(leases.keySet());
+        for (int from = 0; from < snapshot.size(); from += renewBatchSize) {
+            List<Lease> batch = snapshot.subList(from, Math.min(from + renewBatchSize, snapshot.size()));
+            try {
+                renew(batch);
+            } catch (Exception e) {
+                log.warn("锁续期失败，数量：{}，原因：{}", batch.size(), ExceptionUtil.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    /**
+     * 在一个 pipeline 中续期一批锁，已经丢失的锁不再续期
+     */
+    private void renew(List<Lease> batch) {
+        List<Object> results;
+        try {
+            results = executeRenew(batch);
+        } catch (Exception e) {
+            if (!StrUtil.contains(ExceptionUtil.getRootCauseMessage(e), "NOSCRIPT")) {
+                throw e;
+            }
+            // Redis 重启后脚本缓存丢失，重新加载后再试一次
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands()
+                    .scriptLoad(RENEW_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+            results = executeRenew(batch);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (Long.valueOf(0L).equals(results.get(i))) {
+                Lease lease = batch.get(i);
+                leases.remove(lease);
+                log.warn("锁已经过期或者被删除，停止续期：{}", lease.key());
+            }
+        }
+    }
+
+    /**
+     * EVALSHA sha 1 key threadId leaseSeconds，一批命令一次发送
+     */
+    private List<Object> executeRenew(List<Lease> batch) {
+        byte[] ttl = Long.toString(leaseSeconds).getBytes(StandardCharsets.UTF_8);
+        return stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Lease lease : batch) {
+                connection.scriptingCommands().evalSha(
+                        RENEW_SCRIPT.getSha1(),
+                        ReturnType.INTEGER,
+                        1,
+                        lease.key().getBytes(StandardCharsets.UTF_8),
+                        lease.threadId().getBytes(StandardCharsets.UTF_8),
+                        ttl
+                );
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,160 @@
+package com.lzx.redis;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 客户端缓存追踪（CLIENT TRACKING，广播模式）
+ * 1. 单独建立一条 RESP3 连接，按键名前缀开启广播模式的追踪，任何节点修改、删除这些前缀下的键，
+ * Redis 服务端都会在这条连接上推送失效消息，收到后删除本地缓存
+ * 2. 追踪连接断开时，本地缓存退回到原来的行为并清空；重新连接后重新开启追踪，再切换回来
+ * 3. 默认关闭，需要 Redis 6 及以上版本
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class RedisTracking implements RedisConnectionStateListener {
+
+    // 追踪连接建立失败后，重新连接的间隔，单位秒
+    private static final long RECONNECT_DELAY_SECONDS = 30L;
+
+    private final LettuceConnectionFactory lettuceConnectionFactory;
+    private final LocalCache localCache;
+
+    // 是否启用客户端缓存追踪
+    @Value("${zxdp.cache.tracking.enabled:false}")
+    private boolean enabled;
+
+    // 被追踪的键名前缀
+    @Value("${zxdp.cache.tracking.prefixes:cache:shop:,cache:shopType:,cache:user:}")
+    private List<String> prefixes;
+
+    // 被追踪的前缀在本地缓存中的过期时间，单位秒
+    @Value("${zxdp.cache.tracking.local-ttl:600}")
+    private long localTtl;
+
+    private volatile StatefulRedisConnection<String, String> connection;
+
+    // 建立连接、开启追踪的线程，Lettuce 的事件线程中不能执行阻塞命令
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-tracking");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        localCache.enableTracking(prefixes, localTtl, TimeUnit.SECONDS);
+        // 在后台建立连接，Redis 不可用时不影响应用启动
+        scheduler.execute(this::connect);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        localCache.setTrackingActive(false);
+        StatefulRedisConnection<String, String> current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * 建立追踪连接，失败时稍后重试；建立之后由 Lettuce 负责自动重连
+     */
+    private void connect() {
+        AbstractRedisClient nativeClient = lettuceConnectionFactory.getNativeClient();
+        if (!(nativeClient instanceof RedisClient redisClient)) {
+            log.warn("当前 Redis 部署方式不支持客户端缓存追踪，已关闭");
+            return;
+        }
+        try {
+            StatefulRedisConnection<String, String> newConnection = redisClient.connect(StringCodec.UTF8);
+            newConnection.addListener(this::onPushMessage);
+            redisClient.addListener(this);
+            connection = newConnection;
+            enableTracking();
+        } catch (Exception e) {
+            log.warn("建立 Redis 追踪连接失败，{} 秒后重试：{}", RECONNECT_DELAY_SECONDS, e.getMessage());
+            scheduler.schedule(this::connect, RECONNECT_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 在追踪连接上开启广播模式的追踪，成功后本地缓存切换为追踪模式
+     * 重新连接后服务端已经没有之前的追踪状态，需要重新开启
+     */
+    private void enableTracking() {
+        StatefulRedisConnection<String, String> current = connection;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        try {
+            current.sync().clientTracking(TrackingArgs.Builder.enabled().bcast().prefixes(prefixes.toArray(String[]::new)));
+            localCache.setTrackingActive(true);
+            log.info("已开启 Redis 客户端缓存追踪，前缀：{}", prefixes);
+        } catch (Exception e) {
+            localCache.setTrackingActive(false);
+            log.warn("开启 Redis 客户端缓存追踪失败，{} 秒后重试：{}", RECONNECT_DELAY_SECONDS, e.getMessage());
+            scheduler.schedule(this::enableTracking, RECONNECT_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 收到服务端推送的消息：["invalidate", [key, ...]]，键列表为空表示清空所有数据（例如 FLUSHALL）
+     */
+    private void onPushMessage(PushMessage message) {
+        if (!"invalidate".equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        Object keys = content.size() > 1 ? content.get(1) : null;
+        if (keys instanceof List<?> keyList) {
+            for (Object key : keyList) {
+                localCache.invalidateLocal(String.valueOf(key));
+            }
+        } else {
+            localCache.invalidateAllLocal();
+        }
+    }
+
+    @Override
+    public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress socketAddress) {
+        if (handler == connection) {
+            // 自动重连成功，重新开启追踪
+            scheduler.execute(this::enableTracking);
+        }
+    }
+
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+        if (handler == connection) {
+            // 断开期间收不到失效消息，停止使用追踪模式的本地缓存
+            localCache.setTrackingActive(false);
+            log.warn("Redis 追踪连接已断开，本地缓存退回到普通模式");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.lzx.redis;
+
+import cn.hutool.core.lang.UUID;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可重入的 Redis 互斥锁
+ * 1. 锁是一个 Hash：线程标识 -> 重入次数，同一个线程可以多次获取，释放相同次数后才真正释放
+ * 2. 获取锁失败时不轮询，在 {@link RedisLockNotifier} 上等待，锁释放时解锁脚本发布通知唤醒等待的线程
+ * 3. 不指定租约时间时由 {@link RedisLockWatchdog} 自动续期，业务执行多久锁就持有多久，节点宕机后锁在租约时间后释放；
+ * 指定租约时间时锁在租约时间后自动释放，不续期；部分释放（重入次数没有减到 0）时按第一次获取锁时的租约时间重置有效期
+ * 4. 公平锁只保证本节点的等待线程按先来后到获取锁
+ * 通过 {@link RedisLockClient} 创建；脚本由 {@link DefaultRedisScript} 预先计算 SHA1，执行时使用 EVALSHA，Redis 中没有缓存时自动退回 EVAL
+ */
+public class ReentrantRedisLock implements ILock {
+
+    // 线程标识前缀，区分不同的节点
+    private static final String THREAD_ID_PREFIX = UUID.randomUUID().toString(true) + "-";
+    // 当前线程持有的锁 -> 重入次数和第一次获取锁时的租约时间，公平锁重入时不需要排队
+    private static final ThreadLocal<Map<String, Hold>> HOLDS = ThreadLocal.withInitial(HashMap::new);
+
+    // 获取锁的 Lua 脚本
+    private static final DefaultRedisScript<Long> TRY_LOCK_SCRIPT;
+    // 释放锁的 Lua 脚本
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+
+    static {
+        TRY_LOCK_SCRIPT = new DefaultRedisScript<>();
+        TRY_LOCK_SCRIPT.setLocation(new ClassPathResource("scripts/reen-trylock.lua"));
+        TRY_LOCK_SCRIPT.setResultType(Long.class);
+        UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("scripts/reen-unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 当前线程持有的锁
+     *
+     * @param count       重入次数
+     * @param leaseMillis 第一次获取锁时的租约时间，单位毫秒，部分释放时按它重置有效期
+     */
+    private record Hold(long count, long leaseMillis) {
+    }
+
+    private final String key;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisLockWatchdog watchdog;
+    private final RedisLockNotifier notifier;
+    private final boolean fair;
+
+    public ReentrantRedisLock(String name, StringRedisTemplate stringRedisTemplate, RedisLockWatchdog watchdog,
+                              RedisLockNotifier notifier, boolean fair) {
+        this.key = RedisConstants.REENTRANT_LOCK_KEY_PREFIX + name;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.watchdog = watchdog;
+        this.notifier = notifier;
+        this.fair = fair;
+    }
+
+    /**
+     * 尝试获取锁，获取不到时在等待时间内等待锁释放，锁由看门狗续期
+     *
+     * @param timeoutSec 等待获取锁的最长时间，单位秒，0 表示只尝试一次
+     * @return 是否成功获取锁
+     */
+    @Override
+    public boolean tryLock(long timeoutSec) {
+        return tryLock(timeoutSec, -1L, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 尝试获取锁，获取不到时在等待时间内等待锁释放
+     *
+     * @param waitTime  等待获取锁的最长时间，0 表示只尝试一次
+     * @param leaseTime 租约时间，不大于 0 时由看门狗续期
+     * @param unit      时间单位
+     * @return 是否成功获取锁
+     */
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) {
+        String threadId = threadId();
+        boolean renew = leaseTime <= 0;
+        String leaseMillis = Long.toString(renew ? leaseMillis() : unit.toMillis(leaseTime));
+        boolean reentrant = HOLDS.get().containsKey(key);
+        boolean acquired = notifier.acquire(key, unit.toMillis(Math.max(0L, waitTime)), fair && !reentrant, () -> stringRedisTemplate.execute(
+                TRY_LOCK_SCRIPT,
+                Collections.singletonList(key),
+                threadId,
+                leaseMillis
+        ));
+        if (acquired) {
+            HOLDS.get().merge(key, new Hold(1L, Long.parseLong(leaseMillis)), (old, hold) -> new Hold(old.count() + 1, old.leaseMillis()));
+            if (renew) {
+                watchdog.register(key, threadId);
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * 释放锁，重入次数减一，减到 0 时删除锁、通知等待的线程并停止续期
+     * 没有减到 0 时按第一次获取锁时的租约时间重置有效期，指定租约时间的锁不会变成看门狗的租约时间
+     */
+    @Override
+    public void unlock() {
+        String threadId = threadId();
+        Hold hold = HOLDS.get().get(key);
+        long leaseMillis = hold == null ? leaseMillis() : hold.leaseMillis();
+        long remaining = 0L;
+        try {
+            Long result = stringRedisTemplate.execute(
+                    UNLOCK_SCRIPT,
+                    Collections.singletonList(key),
+                    threadId,
+                    Long.toString(leaseMillis),
+                    RedisLockNotifier.channel(key)
+            );
+            remaining = result == null ? 0L : result;
+        } finally {
+            // 释放失败时也停止续期，锁在租约时间后自动释放
+            watchdog.release(key, threadId, remaining);
+            if (remaining > 0) {
+                HOLDS.get().put(key, new Hold(remaining, leaseMillis));
+            } else {
+                HOLDS.get().remove(key);
+            }
+        }
+    }
+
+    private long leaseMillis() {
+        return TimeUnit.SECONDS.toMillis(watchdog.getLeaseSeconds());
+    }
+
+    private static String threadId() {
+        return THREAD_ID_PREFIX + Thread.currentThread().threadId();
+    }
+}
@@ -0,0 +1,322 @@
+package com.lzx.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 秒杀券分片库存
+ * 抢购时单个库存键会成为整个系统的热点，分片模式把库存拆到多个子键上：
+ * 1. 每个分片的库存键和订单键使用相同的 hash tag（例如 seckill:stock:{1001:3}、seckill:order:{1001:3}），
+ * 在集群中同一个分片的键位于同一个槽，不同分片分散到不同的槽和节点上
+ * 2. 用户按 ID 固定分配一个主分片，在主分片上原子地判断一人一单、占住购买资格并扣减库存
+ * 3. 主分片售罄时，从随机位置开始依次到其他分片扣减，全部售罄时撤销购买资格
+ * 4. 本地记录最近发现售罄的分片，短时间内不再访问
+ * 每个分片的扣减都在 Lua 脚本中先判断后扣减，各分片库存之和等于总库存，不会超卖
+ * 分片数为 1 的秒杀券（包括分片模式之前创建的）仍然使用原来的单个库存键
+ * 初始化时同时写入秒杀券元数据（开始时间、结束时间），由 Lua 脚本在扣减库存的同时判断抢购时间，
+ * 秒杀券的所有键在抢购结束一段时间后自动过期
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class SeckillStockShards {
+
+    /**
+     * 分片扣减成功
+     */
+    public static final int SUCCESS = 0;
+    /**
+     * 库存不足
+     */
+    public static final int SOLD_OUT = 1;
+    /**
+     * 用户已经购买过
+     */
+    public static final int DUPLICATE = 2;
+    /**
+     * 秒杀券未开始
+     */
+    public static final int NOT_STARTED = 3;
+    /**
+     * 秒杀券已结束
+     */
+    public static final int ENDED = 4;
+    // 主分片已售罄，需要到其他分片扣减
+    private static final int HOME_SOLD_OUT = 5;
+
+    // 没有元数据的秒杀券（元数据之前创建的），不判断抢购时间
+    private static final SaleWindow NO_WINDOW = new SaleWindow(0L, 0L, 0L);
+
+    // 主分片扣减的 Lua 脚本
+    private static final DefaultRedisScript<Long> SHARD_SCRIPT;
+    // 其他分片扣减的 Lua 脚本
+    private static final DefaultRedisScript<Long> SHARD_TAKE_SCRIPT;
+
+    static {
+        SHARD_SCRIPT = new DefaultRedisScript<>();
+        SHARD_SCRIPT.setLocation(new ClassPathResource("scripts/seckill-shard.lua"));
+        SHARD_SCRIPT.setResultType(Long.class);
+        SHARD_TAKE_SCRIPT = new DefaultRedisScript<>();
+        SHARD_TAKE_SCRIPT.setLocation(new ClassPathResource("scripts/seckill-shard-take.lua"));
+        SHARD_TAKE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 新增秒杀券时的库存分片数，1 表示不分片
+    @Value("${zxdp.seckill.stock-shards:1}")
+    private int stockShards;
+
+    // 秒杀券 ID 到分片数的本地缓存，分片数在创建秒杀券之后不再变化
+    private final Cache<Long, Integer> shardCounts = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(RedisConstants.SECKILL_SHARDS_LOCAL_TTL, TimeUnit.SECONDS)
+            .build();
+
+    // 秒杀券 ID 到抢购时间的本地缓存，分片的 Lua 脚本不能访问元数据键（不在同一个槽），由这里传入
+    private final Cache<Long, SaleWindow> saleWindows = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(RedisConstants.SECKILL_SHARDS_LOCAL_TTL, TimeUnit.SECONDS)
+            .build();
+
+    // 秒杀券 ID 到各分片最近一次发现售罄的时间（毫秒时间戳，0 表示没有发现售罄）
+    private final Cache<Long, AtomicLongArray> emptyShards = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 扣减结果
+     *
+     * @param status 结果：{@link #SUCCESS}、{@link #SOLD_OUT}、{@link #DUPLICATE}、{@link #NOT_STARTED}、{@link #ENDED}
+     * @param shard  扣减库存的分片，扣减失败为 -1
+     */
+    public record Deduction(int status, int shard) {
+    }
+
+    /**
+     * 抢购时间（毫秒时间戳）
+     *
+     * @param begin    开始时间
+     * @param end      结束时间
+     * @param expireAt 秒杀券的键过期的时间
+     */
+    private record SaleWindow(long begin, long end, long expireAt) {
+    }
+
+    /**
+     * 初始化秒杀券：
+     * 1. 写入元数据：开始时间、结束时间和键的过期时间
+     * 2. 写入库存：分片数大于 1 时按分片数平均拆分，余数分给前面的分片
+     * 所有键在抢购结束一段时间后过期，已购买用户集合在第一次写入时由 Lua 脚本设置过期时间
+     *
+     * @param voucherId 秒杀券 ID
+     * @param stock     总库存
+     * @param beginTime 开始时间
+     * @param endTime   结束时间
+     */
+    public void init(Long voucherId, int stock, LocalDateTime beginTime, LocalDateTime endTime) {
+        // 1. 元数据
+        long begin = beginTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long end = endTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Instant expireAt = Instant.ofEpochMilli(end).plus(RedisConstants.SECKILL_KEY_EXPIRE_GRACE, ChronoUnit.DAYS);
+        String metaKey = RedisConstants.SECKILL_META_KEY + voucherId;
+        stringRedisTemplate.opsForHash().putAll(metaKey, Map.of(
+                "begin", Long.toString(begin),
+                "end", Long.toString(end),
+                "expireAt", Long.toString(expireAt.toEpochMilli())
+        ));
+        stringRedisTemplate.expireAt(metaKey, expireAt);
+
+        // 2. 库存
+        int shards = Math.max(1, Math.min(stockShards, stock));
+        if (shards == 1) {
+            String stockKey = RedisConstants.SECKILL_STOCK_KEY + voucherId;
+            stringRedisTemplate.opsForValue().set(stockKey, Integer.toString(stock));
+            stringRedisTemplate.expireAt(stockKey, expireAt);
+            return;
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            int shardStock = stock / shards + (shard < stock % shards ? 1 : 0);
+            stringRedisTemplate.opsForValue().set(stockKey(voucherId, shard), Integer.toString(shardStock));
+            stringRedisTemplate.expireAt(stockKey(voucherId, shard), expireAt);
+        }
+        // 分片数最后写入，写入之前的请求会被当成不分片的秒杀券，读不到库存直接返回库存不足
+        String shardsKey = RedisConstants.SECKILL_SHARDS_KEY + voucherId;
+        stringRedisTemplate.opsForValue().set(shardsKey, Integer.toString(shards));
+        stringRedisTemplate.expireAt(shardsKey, expireAt);
+        log.info("秒杀券 {} 的库存已拆分为 {} 个分片，总库存：{}", voucherId, shards, stock);
+    }
+
+    /**
+     * 补充秒杀券的库存：分片的秒杀券按分片数平均加到各个分片上
+     *
+     * @param voucherId 秒杀券 ID
+     * @param amount    补充的数量
+     */
+    public void add(Long voucherId, int amount) {
+        int shards = shardCount(voucherId);
+        if (shards == 1) {
+            stringRedisTemplate.opsForValue().increment(RedisConstants.SECKILL_STOCK_KEY + voucherId, amount);
+            return;
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            int shardAmount = amount / shards + (shard < amount % shards ? 1 : 0);
+            if (shardAmount > 0) {
+                stringRedisTemplate.opsForValue().increment(stockKey(voucherId, shard), shardAmount);
+            }
+        }
+        // 本节点的分片售罄记录作废，其他节点收到清除售罄标记的广播时作废
+        emptyShards.invalidate(voucherId);
+    }
+
+    /**
+     * 作废本节点记录的分片售罄时间，补充库存之后调用
+     *
+     * @param voucherId 秒杀券 ID
+     */
+    public void clearEmptyShards(Long voucherId) {
+        emptyShards.invalidate(voucherId);
+    }
+
+    /**
+     * 查询秒杀券的库存分片数
+     *
+     * @param voucherId 秒杀券 ID
+     * @return 分片数，不分片的秒杀券为 1
+     */
+    public int shardCount(Long voucherId) {
+        return shardCounts.get(voucherId, id -> {
+            String shards = stringRedisTemplate.opsForValue().get(RedisConstants.SECKILL_SHARDS_KEY + id);
+            return shards == null ? 1 : Integer.parseInt(shards);
+        });
+    }
+
+    /**
+     * 分片模式下扣减库存
+     * 1. 在主分片上判断抢购时间、一人一单，占住购买资格并扣减库存
+     * 2. 主分片售罄时，到其他分片扣减，跳过最近发现售罄的分片
+     * 3. 全部售罄时撤销购买资格
+     *
+     * @param voucherId 秒杀券 ID
+     * @param userId    用户 ID
+     * @param shards    分片数
+     * @return 扣减结果
+     */
+    public Deduction deduct(Long voucherId, Long userId, int shards) {
+        int home = homeShard(userId, shards);
+        SaleWindow window = saleWindow(voucherId);
+
+        // 1. 主分片
+        Long result = stringRedisTemplate.execute(
+                SHARD_SCRIPT,
+                List.of(stockKey(voucherId, home), orderKey(voucherId, home)),
+                userId.toString(),
+                Long.toString(window.begin()),
+                Long.toString(window.end()),
+                Long.toString(window.expireAt())
+        );
+        int status = result.intValue();
+        if (status == SUCCESS) {
+            return new Deduction(SUCCESS, home);
+        }
+        if (status != HOME_SOLD_OUT) {
+            return new Deduction(status, -1);
+        }
+        AtomicLongArray empty = emptyShards.get(voucherId, id -> new AtomicLongArray(shards));
+        empty.set(home, System.currentTimeMillis());
+
+        // 2. 其他分片，从随机位置开始，避免主分片售罄的用户都挤到同一个分片上
+        int offset = ThreadLocalRandom.current().nextInt(1, shards);
+        for (int i = 0; i < shards; i++) {
+            int shard = (home + offset + i) % shards;
+            if (shard == home) {
+                continue;
+            }
+            if (System.currentTimeMillis() - empty.get(shard) < RedisConstants.SECKILL_SHARD_EMPTY_TTL) {
+                continue;
+            }
+            Long taken = stringRedisTemplate.execute(SHARD_TAKE_SCRIPT, Collections.singletonList(stockKey(voucherId, shard)));
+            if (taken.intValue() == SUCCESS) {
+                return new Deduction(SUCCESS, shard);
+            }
+            empty.set(shard, System.currentTimeMillis());
+        }
+
+        // 3. 全部售罄，撤销购买资格
+        stringRedisTemplate.opsForSet().remove(orderKey(voucherId, home), userId.toString());
+        return new Deduction(SOLD_OUT, -1);
+    }
+
+    /**
+     * 补偿：扣减成功之后的步骤（例如发送订单消息）失败时，把库存加回扣减的分片，并撤销购买资格
+     *
+     * @param voucherId 秒杀券 ID
+     * @param userId    用户 ID
+     * @param shards    分片数
+     * @param shard     扣减库存的分片
+     */
+    public void release(Long voucherId, Long userId, int shards, int shard) {
+        stringRedisTemplate.opsForValue().increment(stockKey(voucherId, shard));
+        stringRedisTemplate.opsForSet().remove(orderKey(voucherId, homeShard(userId, shards)), userId.toString());
+    }
+
+    /**
+     * 查询秒杀券的抢购时间，开始时间和结束时间在创建秒杀券之后不再变化
+     * 分片模式的秒杀券在元数据写入之后才写入分片数，能走到这里说明元数据已经写入，没有元数据的是之前创建的秒杀券
+     */
+    private SaleWindow saleWindow(Long voucherId) {
+        return saleWindows.get(voucherId, id -> {
+            List<Object> meta = stringRedisTemplate.opsForHash().multiGet(
+                    RedisConstants.SECKILL_META_KEY + id, List.of("begin", "end", "expireAt"));
+            if (meta.get(0) == null || meta.get(1) == null || meta.get(2) == null) {
+                return NO_WINDOW;
+            }
+            return new SaleWindow(
+                    Long.parseLong(meta.get(0).toString()),
+                    Long.parseLong(meta.get(1).toString()),
+                    Long.parseLong(meta.get(2).toString())
+            );
+        });
+    }
+
+    /**
+     * 分片的库存键，例如 seckill:stock:{1001:3}
+     */
+    public static String stockKey(Long voucherId, int shard) {
+        return RedisConstants.SECKILL_STOCK_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    /**
+     * 分片的已购买用户集合键，例如 seckill:order:{1001:3}，与库存键位于同一个槽
+     */
+    public static String orderKey(Long voucherId, int shard) {
+        return RedisConstants.SECKILL_ORDER_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    /**
+     * 用户的主分片，同一个用户总是落在同一个分片上，一人一单只需要在主分片上判断
+     */
+    private static int homeShard(Long userId, int shards) {
+        return (int) Math.floorMod(userId, (long) shards);
+    }
+}
@@ -12,6 +12,7 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * 简单的 Redis 互斥锁实现
+ * 只尝试一次，获取失败时不等待；需要等待锁释放的使用 {@link ReentrantRedisLock}
  */
 public class SimpleRedisLock implements ILock {
 
@@ -35,12 +36,32 @@ public class SimpleRedisLock implements ILock {
         this.stringRedisTemplate = stringRedisTemplate;
     }
 
+    /**
+     * 尝试获取锁，只尝试一次
+     *
+     * @param timeoutSec 锁的自动释放时间，单位秒，不大于 0 时使用默认的 {@link RedisConstants#LOCK_KEY_TTL}
+     * @return 是否成功获取锁
+     */
     @Override
     public boolean tryLock(long timeoutSec) {
+        return tryLock(0L, timeoutSec, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 尝试获取锁，只尝试一次，不等待
+     *
+     * @param waitTime  不支持等待，忽略
+     * @param leaseTime 锁的自动释放时间，不大于 0 时使用默认的 {@link RedisConstants#LOCK_KEY_TTL} 秒
+     * @param unit      时间单位
+     * @return 是否成功获取锁
+     */
+    @Override
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) {
         // 生成线程标识
         String threadId = THREAD_ID_PREFIX + Thread.currentThread().threadId();
         // 尝试获取锁
-        Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(RedisConstants.LOCK_KEY_PREFIX + name, threadId, RedisConstants.LOCK_KEY_TTL, TimeUnit.SECONDS);
+        long ttlMillis = leaseTime > 0 ? unit.toMillis(leaseTime) : TimeUnit.SECONDS.toMillis(RedisConstants.LOCK_KEY_TTL);
+        Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(RedisConstants.LOCK_KEY_PREFIX + name, threadId, ttlMillis, TimeUnit.MILLISECONDS);
         return BooleanUtil.isTrue(success);
     }
 
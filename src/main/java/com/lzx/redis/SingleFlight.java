@@ -0,0 +1,110 @@
+package com.lzx.redis;
+
+import com.lzx.exception.BaseException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 单飞加载器（single-flight）
+ * 同一个节点内，相同 key 的并发加载请求只会真正执行一次：
+ * 第一个到达的线程负责加载，后到的线程挂在同一个 CompletableFuture 上等待结果（被通知，而不是轮询），
+ * 这样缓存未命中时，每个节点最多只有一个线程去竞争分布式锁、查询数据库。
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    // 正在加载中的 key
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    // 统计：实际执行的加载次数
+    private final LongAdder loadCount = new LongAdder();
+    // 统计：被合并的请求数（没有自己加载，而是等待别人的结果）
+    private final LongAdder coalescedCount = new LongAdder();
+    // 统计：等待超时的请求数
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * 执行加载，相同 key 的并发请求共享一次加载结果
+     *
+     * @param key     加载的 key
+     * @param loader  加载函数，只会被第一个到达的线程执行
+     * @param timeout 等待其他线程加载结果的最长时间
+     * @param unit    时间单位
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader, long timeout, TimeUnit unit) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing == null) {
+            // 1. 当前线程是第一个，负责加载
+            loadCount.increment();
+            try {
+                T data = loader.get();
+                future.complete(data);
+                return data;
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, future);
+            }
+        }
+
+        // 2. 已有其他线程在加载，等待其结果
+        coalescedCount.increment();
+        try {
+            return (T) existing.get(timeout, unit);
+        } catch (TimeoutException e) {
+            timeoutCount.increment();
+            log.warn("等待缓存加载超时，key：{}", key);
+            throw new BaseException("系统繁忙，请稍后重试");
+        } catch (ExecutionException e) {
+            // 加载线程抛出的异常原样抛给等待者
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 实际执行的加载次数
+     */
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /**
+     * 被合并的请求数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * 等待超时的请求数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * 当前正在加载中的 key 数量
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,255 @@
+package com.lzx.redis;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.IdUtil;
+import com.lzx.exception.BaseException;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 雪花算法 ID 生成器，生成 ID 时不访问 Redis
+ * ID 结构（从高位到低位）：1 位符号位 + 1 位标记位（固定为 1，与 {@link RedisIdWorker} 生成的 ID 不会重复）
+ * + 40 位毫秒时间戳 + 10 位工作节点 ID + 12 位序列号
+ * 1. 工作节点 ID 启动时从 Redis 租用（SET NX EX），后台定期续约；续约失败超过租约时间时停止生成 ID，避免与其他节点重复
+ *    停止时释放租约，同时记录已经分配到的最大时间戳；接手的节点在时钟超过它（加上允许的时钟偏差）之前不生成 ID，
+ *    避免上一个持有者借用的未来时间戳、或者两个节点之间的时钟偏差导致 ID 重复
+ * 2. 时间戳和序列号保存在一个原子变量中，CAS 无锁分配；序列号用完时进位到下一毫秒，相当于借用未来的时间
+ * 3. 时钟回拨时沿用上一次的时间戳继续分配；超前太多时等待时钟追上，超前超过最大等待时间时拒绝生成
+ * 4. 每一毫秒的序列号从随机位置开始，低并发时 ID 不会都落在序列号 0 附近，按 ID 取模分片也比较均匀
+ * 时间戳在高位，ID 整体递增，写入数据库时追加在 B+ 树的右侧，不会产生页分裂
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class SnowflakeIdWorker implements IdGenerator {
+
+    // 初始时间戳：2022-01-01 00:00:00 UTC 的毫秒数
+    private static final long BEGIN_MILLIS = 1640995200000L;
+    // 工作节点 ID 位数
+    private static final int WORKER_BITS = 10;
+    // 序列号位数
+    private static final int SEQUENCE_BITS = 12;
+    // 工作节点 ID 的数量
+    private static final int MAX_WORKERS = 1 << WORKER_BITS;
+    // 标记位，RedisIdWorker 的 ID 在这一位上为 0
+    private static final long MARKER = 1L << 62;
+    // 每一毫秒序列号随机起点的范围，留出大部分序列号给同一毫秒内的后续请求
+    private static final long SEQUENCE_SPREAD = 1L << 8;
+
+    // 续约的 Lua 脚本
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+    // 释放租约并记录最大时间戳的 Lua 脚本
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT;
+
+    static {
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("scripts/worker-lease-renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+        RELEASE_SCRIPT = new DefaultRedisScript<>();
+        RELEASE_SCRIPT.setLocation(new ClassPathResource("scripts/worker-lease-release.lua"));
+        RELEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // 工作节点 ID 的租约时间，单位秒，每三分之一租约时间续约一次
+    @Value("${zxdp.id-worker.snowflake.lease-seconds:60}")
+    private long leaseSeconds;
+
+    // 时间戳超前时钟超过这个值时等待时钟追上，单位毫秒
+    @Value("${zxdp.id-worker.snowflake.max-borrow-millis:100}")
+    private long maxBorrowMillis;
+
+    // 时间戳超前时钟超过这个值时（时钟回拨太多）拒绝生成 ID，单位毫秒
+    @Value("${zxdp.id-worker.snowflake.max-wait-millis:5000}")
+    private long maxWaitMillis;
+
+    // 接手其他节点释放的工作节点 ID 时，允许的节点间时钟偏差，单位毫秒
+    @Value("${zxdp.id-worker.snowflake.skew-millis:1000}")
+    private long skewMillis;
+
+    // 租约持有者标识
+    private final String owner = NetUtil.getLocalHostName() + ":" + IdUtil.fastSimpleUUID();
+
+    // 上一次分配的时间戳（相对初始时间戳）和序列号：时间戳 << 12 | 序列号
+    private final AtomicLong state = new AtomicLong();
+
+    // 工作节点 ID，还没有租到时为 -1
+    private volatile int workerId = -1;
+
+    // 租约在本地的有效期（毫秒时间戳），按发起续约的时间计算，早于 Redis 中的过期时间
+    private volatile long leaseDeadline;
+
+    // 时钟超过这个时间（毫秒时间戳）之后才能生成 ID：上一个持有者分配到的最大时间戳加上允许的时钟偏差
+    private volatile long notBefore;
+
+    // 租用、续约工作节点 ID 的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "snowflake-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 停止续约和生成 ID，释放租约，其他节点可以立即使用这个工作节点 ID
+     * 释放时记录已经分配到的最大时间戳（借用的未来时间戳和当前时间中较大的一个），接手的节点等时钟超过它之后再生成 ID
+     * 停止时正在生成的 ID 可能比记录的时间戳晚几毫秒，由接手节点允许的时钟偏差覆盖
+     */
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+        int current = workerId;
+        workerId = -1;
+        if (current < 0) {
+            return;
+        }
+        long mark = Math.max(BEGIN_MILLIS + (state.get() >>> SEQUENCE_BITS), System.currentTimeMillis());
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey(current), markKey(current)), owner, Long.toString(mark));
+        } catch (Exception e) {
+            log.warn("释放工作节点 ID {} 的租约失败，等待过期：{}", current, e.getMessage());
+        }
+    }
+
+    /**
+     * 应用启动完成后，在后台租用工作节点 ID，并定期续约
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduler.scheduleWithFixedDelay(this::heartbeat, 0, Math.max(1L, leaseSeconds / 3), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 生成 ID，所有键前缀共用一个序列
+     *
+     * @param keyPrefix 键前缀，雪花算法不区分
+     * @return 分布式 ID
+     */
+    @Override
+    public long nextId(String keyPrefix) {
+        int worker = workerId;
+        long now = System.currentTimeMillis();
+        if (worker < 0 || now >= leaseDeadline || now < notBefore) {
+            throw new BaseException("ID 生成器暂时不可用，请稍后重试");
+        }
+        long next = nextState();
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return MARKER | timestamp << (WORKER_BITS + SEQUENCE_BITS) | (long) worker << SEQUENCE_BITS | sequence;
+    }
+
+    /**
+     * 分配下一个时间戳和序列号
+     * 时钟前进时使用新的时间戳，序列号从随机位置开始；否则沿用上一次的时间戳，序列号加一，用完时进位到下一毫秒
+     */
+    private long nextState() {
+        while (true) {
+            long last = state.get();
+            long now = System.currentTimeMillis() - BEGIN_MILLIS;
+            long lead = (last >>> SEQUENCE_BITS) - now;
+            long next;
+            if (lead < 0) {
+                next = now << SEQUENCE_BITS | ThreadLocalRandom.current().nextLong(SEQUENCE_SPREAD);
+            } else if (lead > maxWaitMillis) {
+                log.error("服务器时钟回拨 {} ms，暂停生成 ID", lead);
+                throw new BaseException("ID 生成器暂时不可用，请稍后重试");
+            } else if (lead >= maxBorrowMillis) {
+                // 借用的时间太多，等待时钟追上
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            } else {
+                next = last + 1;
+            }
+            if (state.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 续约；没有租约或者租约已经丢失时，重新租用
+     */
+    private void heartbeat() {
+        long start = System.currentTimeMillis();
+        try {
+            int current = workerId;
+            if (current >= 0) {
+                Long renewed = stringRedisTemplate.execute(
+                        RENEW_SCRIPT,
+                        Collections.singletonList(leaseKey(current)),
+                        owner,
+                        Long.toString(leaseSeconds)
+                );
+                if (renewed != null && renewed == 1L) {
+                    leaseDeadline = start + TimeUnit.SECONDS.toMillis(leaseSeconds);
+                    return;
+                }
+                // 租约已经过期，可能被其他节点租走，不能再使用
+                log.warn("工作节点 ID {} 的租约已丢失，重新租用", current);
+                workerId = -1;
+            }
+            acquire(start);
+        } catch (Exception e) {
+            log.warn("租用工作节点 ID 失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从随机位置开始依次尝试租用工作节点 ID，租到之后读取上一个持有者记录的最大时间戳
+     * SET id:worker:{n} <owner> NX EX <leaseSeconds>
+     * GET id:worker:mark:{n}
+     * 上一个持有者宕机、没有记录时，租约至少过期 leaseSeconds 之后才能被租走，远大于借用的时间
+     *
+     * @param start 发起租用的时间
+     */
+    private void acquire(long start) {
+        int offset = ThreadLocalRandom.current().nextInt(MAX_WORKERS);
+        for (int i = 0; i < MAX_WORKERS; i++) {
+            int candidate = (offset + i) % MAX_WORKERS;
+            Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(
+                    leaseKey(candidate), owner, Duration.ofSeconds(leaseSeconds));
+            if (Boolean.TRUE.equals(success)) {
+                String mark = stringRedisTemplate.opsForValue().get(markKey(candidate));
+                notBefore = mark == null ? 0L : Long.parseLong(mark) + skewMillis;
+                leaseDeadline = start + TimeUnit.SECONDS.toMillis(leaseSeconds);
+                workerId = candidate;
+                log.info("已租用工作节点 ID：{}，可以生成 ID 的时间：{}", candidate, notBefore);
+                return;
+            }
+        }
+        log.error("没有空闲的工作节点 ID，雪花算法 ID 生成器不可用");
+    }
+
+    /**
+     * 工作节点 ID 的租约键，例如 id:worker:{7}，与最大时间戳键位于同一个槽
+     */
+    private static String leaseKey(int worker) {
+        return RedisConstants.ID_WORKER_LEASE_KEY + "{" + worker + "}";
+    }
+
+    /**
+     * 工作节点 ID 上一个持有者分配到的最大时间戳的键，例如 id:worker:mark:{7}
+     */
+    private static String markKey(int worker) {
+        return RedisConstants.ID_WORKER_MARK_KEY + "{" + worker + "}";
+    }
+}
@@ -0,0 +1,199 @@
+package com.lzx.redis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 秒杀券售罄标记
+ * 秒杀券售罄之后，后续的请求仍然要生成订单 ID、执行一次 Lua 脚本才能知道库存不足，
+ * 这里在本地记录已售罄的秒杀券，直接在进程内拒绝，不访问 Redis：
+ * 1. Lua 脚本返回库存不足时标记售罄，并广播给所有节点
+ * 2. 补充库存时清除标记，同样广播给所有节点
+ * 3. 标记有过期时间，广播丢失时过期后重新以 Redis 中的库存为准
+ * 标记带有库存代数（Redis 中每次补充库存加一）：扣减前先取本地已知的代数，库存不足时用这个代数标记；
+ * 补充库存之前发出、清除之后才到达的售罄结果或广播代数较小，直接丢弃，不会在有库存时把秒杀券重新标记为售罄
+ * 4. 指标：seckill.soldout.vouchers（已售罄的秒杀券数量）、seckill.soldout.short.circuit（被直接拒绝的请求数）、
+ * seckill.soldout.changes（本节点标记、清除的次数）
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class SoldOutRegistry implements MessageListener {
+
+    // 广播消息前缀
+    private static final String SOLD_PREFIX = "sold:";
+    private static final String RESET_PREFIX = "reset:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final SeckillStockShards seckillStockShards;
+    private final MeterRegistry meterRegistry;
+
+    // 售罄标记的过期时间，单位秒
+    @Value("${zxdp.seckill.sold-out-ttl-seconds:600}")
+    private long soldOutTtlSeconds;
+
+    // 秒杀券 ID -> 本地已知的库存代数和是否售罄
+    private Cache<Long, Marker> soldOut;
+
+    // 统计
+    private final LongAdder shortCircuitCount = new LongAdder();
+    private final LongAdder markedCount = new LongAdder();
+    private final LongAdder resetCount = new LongAdder();
+
+    /**
+     * 售罄标记
+     *
+     * @param generation 库存代数
+     * @param soldOut    在这一代库存中是否已售罄
+     */
+    private record Marker(long generation, boolean soldOut) {
+    }
+
+    @PostConstruct
+    public void init() {
+        soldOut = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(soldOutTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RedisConstants.SECKILL_SOLD_OUT_CHANNEL));
+        Gauge.builder("seckill.soldout.vouchers", soldOut, cache -> cache.estimatedSize())
+                .description("本地标记为已售罄的秒杀券数量")
+                .register(meterRegistry);
+        FunctionCounter.builder("seckill.soldout.short.circuit", shortCircuitCount, LongAdder::sum)
+                .description("秒杀券已售罄，在本地直接拒绝的请求数")
+                .register(meterRegistry);
+        FunctionCounter.builder("seckill.soldout.changes", markedCount, LongAdder::sum)
+                .tag("type", "marked")
+                .register(meterRegistry);
+        FunctionCounter.builder("seckill.soldout.changes", resetCount, LongAdder::sum)
+                .tag("type", "reset")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 判断秒杀券是否已售罄，已售罄时记一次直接拒绝
+     *
+     * @param voucherId 秒杀券 ID
+     * @return 是否已售罄
+     */
+    public boolean isSoldOut(Long voucherId) {
+        Marker marker = soldOut.getIfPresent(voucherId);
+        if (marker == null || !marker.soldOut()) {
+            return false;
+        }
+        shortCircuitCount.increment();
+        return true;
+    }
+
+    /**
+     * 本地已知的库存代数，扣减库存之前调用，库存不足时传给 {@link #markSoldOut(Long, long)}
+     *
+     * @param voucherId 秒杀券 ID
+     * @return 库存代数，没有补充过库存为 0
+     */
+    public long generation(Long voucherId) {
+        Marker marker = soldOut.getIfPresent(voucherId);
+        return marker == null ? 0L : marker.generation();
+    }
+
+    /**
+     * 标记秒杀券已售罄，并通知所有节点；扣减之后库存已经补充过（代数变大）时丢弃
+     *
+     * @param voucherId  秒杀券 ID
+     * @param generation 扣减库存之前取到的库存代数
+     */
+    public void markSoldOut(Long voucherId, long generation) {
+        if (!apply(voucherId, generation, true)) {
+            // 本节点已经标记过（其他节点也已经收到过广播），或者标记已经过时
+            return;
+        }
+        markedCount.increment();
+        log.info("秒杀券 {} 已售罄，库存代数：{}", voucherId, generation);
+        publish(SOLD_PREFIX + voucherId + ":" + generation);
+    }
+
+    /**
+     * 清除售罄标记（补充库存之后调用）：库存代数加一，并通知所有节点
+     *
+     * @param voucherId 秒杀券 ID
+     */
+    public void reset(Long voucherId) {
+        long generation = stringRedisTemplate.opsForValue().increment(RedisConstants.SECKILL_STOCK_GEN_KEY + voucherId);
+        seckillStockShards.clearEmptyShards(voucherId);
+        apply(voucherId, generation, false);
+        resetCount.increment();
+        log.info("秒杀券 {} 的售罄标记已清除，库存代数：{}", voucherId, generation);
+        publish(RESET_PREFIX + voucherId + ":" + generation);
+    }
+
+    /**
+     * 收到其他节点的广播，更新本地标记（自己发出的消息重复处理一次也没有影响）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            if (body.startsWith(SOLD_PREFIX)) {
+                String[] parts = body.substring(SOLD_PREFIX.length()).split(":");
+                apply(Long.parseLong(parts[0]), Long.parseLong(parts[1]), true);
+            } else if (body.startsWith(RESET_PREFIX)) {
+                String[] parts = body.substring(RESET_PREFIX.length()).split(":");
+                Long voucherId = Long.parseLong(parts[0]);
+                // 先清除分片售罄记录，再更新代数，之后取到新代数的扣减不会跳过已经补充的分片
+                seckillStockShards.clearEmptyShards(voucherId);
+                apply(voucherId, Long.parseLong(parts[1]), false);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            log.warn("无法识别的售罄广播消息：{}", body);
+        }
+    }
+
+    /**
+     * 原子地更新本地标记：代数比本地小的消息已经过时，丢弃
+     *
+     * @param voucherId  秒杀券 ID
+     * @param generation 库存代数
+     * @param sold       是否售罄
+     * @return 本地标记是否发生变化
+     */
+    private boolean apply(Long voucherId, long generation, boolean sold) {
+        boolean[] changed = new boolean[1];
+        soldOut.asMap().compute(voucherId, (id, current) -> {
+            if (current != null && (current.generation() > generation
+                    || current.generation() == generation && (current.soldOut() || !sold))) {
+                return current;
+            }
+            changed[0] = true;
+            return new Marker(generation, sold);
+        });
+        return changed[0];
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(RedisConstants.SECKILL_SOLD_OUT_CHANNEL, message);
+        } catch (Exception e) {
+            // 广播失败时，其他节点仍然以 Redis 中的库存为准
+            log.warn("广播秒杀券售罄消息失败：{}，原因：{}", message, e.getMessage());
+        }
+    }
+}
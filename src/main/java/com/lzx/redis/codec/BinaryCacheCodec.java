@@ -0,0 +1,56 @@
+package com.lzx.redis.codec;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * 二进制编解码器
+ * 适用于字段都是基本类型、字符串、LocalDateTime 的实体类（Shop、ShopType、UserDTO 等），
+ * 不写字段名，整数使用变长编码，比 JSON 体积更小，编解码也不需要解析文本。
+ */
+@Component
+public class BinaryCacheCodec implements CacheCodec {
+
+    public static final byte ID = 2;
+    public static final String NAME = "binary";
+
+    // 每个类型的结构只分析一次，不支持的类型缓存为空
+    private final ClassValue<Optional<BinarySchema>> schemas = new ClassValue<>() {
+        @Override
+        protected Optional<BinarySchema> computeValue(Class<?> type) {
+            return Optional.ofNullable(BinarySchema.of(type));
+        }
+    };
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return schemas.get(clazz).isPresent();
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        BinaryOutput out = new BinaryOutput(128);
+        schema(value.getClass()).write(value, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, int offset, Class<T> clazz) {
+        return clazz.cast(schema(clazz).read(new BinaryInput(bytes, offset)));
+    }
+
+    private BinarySchema schema(Class<?> clazz) {
+        return schemas.get(clazz).orElseThrow(() -> new IllegalArgumentException("二进制编解码器不支持类型：" + clazz.getName()));
+    }
+}
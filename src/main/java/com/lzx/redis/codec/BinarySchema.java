@@ -0,0 +1,249 @@
+package com.lzx.redis.codec;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * 二进制编码的类型结构
+ * 每个类型只在第一次使用时通过反射分析一次：按字段名排序，为每个字段生成 getter/setter 的 lambda（LambdaMetafactory），
+ * 之后的编解码只调用这些 lambda，热点路径上没有反射。
+ * 编码格式：[结构指纹 4 字节][空值位图][按字段顺序排列的非空字段值]，不写字段名。
+ * 结构指纹由字段名和字段类型计算，实体类字段发生变化后指纹不同，旧数据会被当作缓存未命中，而不是被错误地解析。
+ */
+final class BinarySchema {
+
+    private final Supplier<Object> constructor;
+    private final FieldAccessor[] fields;
+    private final int fingerprint;
+
+    private BinarySchema(Supplier<Object> constructor, FieldAccessor[] fields, int fingerprint) {
+        this.constructor = constructor;
+        this.fields = fields;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * 字段类型
+     */
+    private enum FieldType {
+        STRING, LONG, INTEGER, DOUBLE, BOOLEAN, LOCAL_DATE_TIME;
+
+        static FieldType of(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            }
+            if (type == Long.class || type == long.class) {
+                return LONG;
+            }
+            if (type == Integer.class || type == int.class) {
+                return INTEGER;
+            }
+            if (type == Double.class || type == double.class) {
+                return DOUBLE;
+            }
+            if (type == Boolean.class || type == boolean.class) {
+                return BOOLEAN;
+            }
+            if (type == LocalDateTime.class) {
+                return LOCAL_DATE_TIME;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 字段访问器
+     *
+     * @param name   字段名
+     * @param type   字段类型
+     * @param getter 读取字段值
+     * @param setter 写入字段值
+     */
+    private record FieldAccessor(String name, FieldType type, Function<Object, Object> getter,
+                                 BiConsumer<Object, Object> setter) {
+    }
+
+    /**
+     * 分析类型结构
+     *
+     * @param clazz 类型
+     * @return 类型结构，不支持的类型返回 null（没有公开的无参构造器、字段没有 getter/setter、字段类型不支持等）
+     */
+    static BinarySchema of(Class<?> clazz) {
+        if (clazz.isInterface() || clazz.isArray() || clazz.isEnum() || clazz.isRecord()
+                || Modifier.isAbstract(clazz.getModifiers()) || !Modifier.isPublic(clazz.getModifiers())
+                || clazz.getName().startsWith("java.")) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Supplier<Object> constructor = constructor(lookup, clazz);
+
+            List<Field> declaredFields = new ArrayList<>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                        declaredFields.add(field);
+                    }
+                }
+            }
+            declaredFields.sort(Comparator.comparing(Field::getName));
+
+            FieldAccessor[] fields = new FieldAccessor[declaredFields.size()];
+            StringBuilder signature = new StringBuilder(clazz.getName());
+            for (int i = 0; i < fields.length; i++) {
+                Field field = declaredFields.get(i);
+                FieldType type = FieldType.of(field.getType());
+                if (type == null) {
+                    return null;
+                }
+                fields[i] = new FieldAccessor(field.getName(), type, getter(lookup, clazz, field), setter(lookup, clazz, field));
+                signature.append(';').append(field.getName()).append(':').append(type);
+            }
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(signature.toString().getBytes(StandardCharsets.UTF_8));
+            return new BinarySchema(constructor, fields, (int) crc32.getValue());
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * 编码
+     */
+    void write(Object value, BinaryOutput out) {
+        out.writeInt(fingerprint);
+        // 1. 预留空值位图的位置
+        int bitmapStart = out.position();
+        int bitmapLength = (fields.length + 7) >>> 3;
+        for (int i = 0; i < bitmapLength; i++) {
+            out.writeByte(0);
+        }
+        // 2. 依次写入非空字段
+        int bitmap = 0;
+        for (int i = 0; i < fields.length; i++) {
+            FieldAccessor field = fields[i];
+            Object fieldValue = field.getter().apply(value);
+            if (fieldValue == null) {
+                bitmap |= 1 << (i & 7);
+            } else {
+                writeValue(field.type(), fieldValue, out);
+            }
+            if ((i & 7) == 7 || i == fields.length - 1) {
+                out.setByte(bitmapStart + (i >>> 3), bitmap);
+                bitmap = 0;
+            }
+        }
+    }
+
+    /**
+     * 解码
+     */
+    Object read(BinaryInput in) {
+        if (in.readInt() != fingerprint) {
+            throw new IllegalStateException("缓存数据的类型结构与当前类型不一致");
+        }
+        int bitmapLength = (fields.length + 7) >>> 3;
+        int[] bitmap = new int[bitmapLength];
+        for (int i = 0; i < bitmapLength; i++) {
+            bitmap[i] = in.readByte();
+        }
+        Object value = constructor.get();
+        for (int i = 0; i < fields.length; i++) {
+            if ((bitmap[i >>> 3] & (1 << (i & 7))) != 0) {
+                continue;
+            }
+            FieldAccessor field = fields[i];
+            field.setter().accept(value, readValue(field.type(), in));
+        }
+        return value;
+    }
+
+    private static void writeValue(FieldType type, Object value, BinaryOutput out) {
+        switch (type) {
+            case STRING -> out.writeString((String) value);
+            case LONG -> out.writeVarLong((Long) value);
+            case INTEGER -> out.writeVarLong((Integer) value);
+            case DOUBLE -> out.writeLong(Double.doubleToRawLongBits((Double) value));
+            case BOOLEAN -> out.writeByte((Boolean) value ? 1 : 0);
+            case LOCAL_DATE_TIME -> {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                out.writeVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                out.writeVarLong(dateTime.getNano());
+            }
+        }
+    }
+
+    private static Object readValue(FieldType type, BinaryInput in) {
+        return switch (type) {
+            case STRING -> in.readString();
+            case LONG -> in.readVarLong();
+            case INTEGER -> (int) in.readVarLong();
+            case DOUBLE -> Double.longBitsToDouble(in.readLong());
+            case BOOLEAN -> in.readByte() != 0;
+            case LOCAL_DATE_TIME -> LocalDateTime.ofEpochSecond(in.readVarLong(), (int) in.readVarLong(), ZoneOffset.UTC);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> constructor(MethodHandles.Lookup lookup, Class<?> clazz) throws Throwable {
+        MethodHandle handle = lookup.findConstructor(clazz, MethodType.methodType(void.class));
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup, "get", MethodType.methodType(Supplier.class),
+                MethodType.methodType(Object.class), handle, MethodType.methodType(clazz)
+        );
+        return (Supplier<Object>) site.getTarget().invokeExact();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(MethodHandles.Lookup lookup, Class<?> clazz, Field field) throws Throwable {
+        String suffix = capitalize(field.getName());
+        Method method;
+        try {
+            method = clazz.getMethod("get" + suffix);
+        } catch (NoSuchMethodException e) {
+            method = clazz.getMethod("is" + suffix);
+        }
+        MethodHandle handle = lookup.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup, "apply", MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class), handle,
+                MethodType.methodType(MethodType.methodType(field.getType()).wrap().returnType(), clazz)
+        );
+        return (Function<Object, Object>) site.getTarget().invokeExact();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(MethodHandles.Lookup lookup, Class<?> clazz, Field field) throws Throwable {
+        Method method = clazz.getMethod("set" + capitalize(field.getName()), field.getType());
+        MethodHandle handle = lookup.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup, "accept", MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class), handle,
+                MethodType.methodType(void.class, clazz, MethodType.methodType(field.getType()).wrap().returnType())
+        );
+        return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,50 @@
+package com.lzx.redis.codec;
+
+/**
+ * 缓存值编解码器
+ * 实现类注册为 Spring Bean 即可被 {@link CacheCodecs} 发现，通过 {@link #name()} 在配置中选择写入时使用的编解码器。
+ * 编码结果会放在统一的帧格式中，帧头记录编解码器 ID，因此读取时不依赖当前配置，切换编解码器不需要清空缓存。
+ */
+public interface CacheCodec {
+
+    /**
+     * 编解码器 ID，写入帧头，一旦发布不能修改
+     *
+     * @return 编解码器 ID
+     */
+    byte id();
+
+    /**
+     * 编解码器名称，用于配置
+     *
+     * @return 编解码器名称
+     */
+    String name();
+
+    /**
+     * 是否支持指定的类型，不支持的类型会退回到 JSON 编解码器
+     *
+     * @param clazz 值类型
+     * @return 是否支持
+     */
+    boolean supports(Class<?> clazz);
+
+    /**
+     * 编码
+     *
+     * @param value 缓存值，不为 null
+     * @return 编码后的字节
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码，从 offset 一直读到数组末尾
+     * 数据与当前类型不兼容时（例如实体类字段发生了变化）抛出异常，调用方当作缓存未命中处理
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位置
+     * @param clazz  值类型
+     * @return 缓存值
+     */
+    <T> T decode(byte[] bytes, int offset, Class<T> clazz);
+}
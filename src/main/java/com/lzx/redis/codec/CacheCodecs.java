@@ -0,0 +1,366 @@
+package com.lzx.redis.codec;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.lzx.redis.CacheMetrics;
+import com.lzx.redis.RedisConstants;
+import com.lzx.redis.RedisData;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值的帧格式
+ * 帧格式：
+ * [魔数 1 字节][版本 1 字节][编解码器 ID 1 字节][标志位 1 字节][逻辑过期时间 8 字节，标志位 FLAG_EXPIRE 为 1 时才有]
+ * [压缩前长度 4 字节][字典 ID 4 字节]（标志位 FLAG_COMPRESSED 为 1 时才有，第 2 版新增）
+ * [重建耗时 4 字节，毫秒]（标志位 FLAG_DELTA 为 1 时才有，第 3 版新增）[编码后的数据]
+ * 1. 第一个字节是魔数，JSON 不可能以它开头，所以新旧格式可以共存：没有魔数的数据按旧版 JSON 解析
+ * 2. 逻辑过期时间是毫秒时间戳，放在帧头中，判断是否过期不需要解析数据
+ * 3. 版本号和编解码器 ID 都在帧头中，读取时按帧头选择解码方式，滚动发布、切换编解码器都不需要清空缓存；
+ * 不认识的版本当作缓存未命中处理。写入时使用能表达这条数据的最低版本，例如没有压缩、没有重建耗时的数据仍然按第 1 版写入，
+ * 只认识第 1 版的节点也能读取
+ * 4. 按键名前缀统计压缩率和编解码耗时，定期输出到日志
+ */
+@Slf4j
+@Component
+public class CacheCodecs {
+
+    // 没有逻辑过期时间
+    public static final long NO_EXPIRE = -1L;
+
+    private static final byte MAGIC = (byte) 0xCA;
+    private static final byte VERSION = 1;
+    // 第 2 版：支持压缩
+    private static final byte VERSION_COMPRESSED = 2;
+    // 第 3 版：记录重建耗时，用于提前刷新
+    private static final byte VERSION_DELTA = 3;
+    // 标志位：帧头中带有逻辑过期时间
+    private static final int FLAG_EXPIRE = 1;
+    // 标志位：数据经过压缩
+    private static final int FLAG_COMPRESSED = 2;
+    // 标志位：帧头中带有重建耗时
+    private static final int FLAG_DELTA = 4;
+    private static final int HEADER_LENGTH = 4;
+
+    private final CacheCodec[] codecsById = new CacheCodec[128];
+    private final CacheCodec jsonCodec;
+    private final CacheCompressor compressor;
+    private final CacheMetrics cacheMetrics;
+
+    // 按键名前缀统计
+    private final Map<String, CodecStats> stats = new ConcurrentHashMap<>();
+
+    // 定期输出统计信息的线程
+    private final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-codec-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 写入时使用的编解码器，json 表示写入旧版 JSON 格式（不带帧头），用于滚动发布期间兼容旧版本节点
+    @Value("${zxdp.cache.codec:binary}")
+    private String writeCodecName;
+
+    private CacheCodec writeCodec;
+
+    @Autowired
+    public CacheCodecs(List<CacheCodec> codecs, JsonCacheCodec jsonCodec, CacheCompressor compressor, CacheMetrics cacheMetrics) {
+        for (CacheCodec codec : codecs) {
+            if (codecsById[codec.id()] != null) {
+                throw new IllegalStateException("缓存编解码器 ID 重复：" + codec.id());
+            }
+            codecsById[codec.id()] = codec;
+        }
+        this.jsonCodec = jsonCodec;
+        this.compressor = compressor;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (CacheCodec codec : codecsById) {
+            if (codec != null && codec.name().equals(writeCodecName)) {
+                writeCodec = codec;
+            }
+        }
+        if (writeCodec == null) {
+            throw new IllegalStateException("未知的缓存编解码器：" + writeCodecName);
+        }
+        log.info("缓存编解码器：{}", writeCodec.name());
+        reporter.scheduleAtFixedRate(this::report, RedisConstants.CACHE_STATS_REPORT_MINUTES, RedisConstants.CACHE_STATS_REPORT_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        reporter.shutdownNow();
+    }
+
+    /**
+     * 按键名前缀获取编解码统计
+     *
+     * @return 键名前缀到统计信息的映射
+     */
+    public Map<String, CodecStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * 编码普通缓存值
+     *
+     * @param key   缓存键，用于按前缀统计
+     * @param value 缓存值
+     * @return 编码后的字节
+     */
+    public byte[] encode(String key, Object value) {
+        return encode(key, value, NO_EXPIRE);
+    }
+
+    /**
+     * 编码带逻辑过期时间的缓存值
+     *
+     * @param key      缓存键，用于按前缀统计
+     * @param value    缓存值
+     * @param expireAt 逻辑过期时间，毫秒时间戳，NO_EXPIRE 表示没有逻辑过期时间
+     * @return 编码后的字节
+     */
+    public byte[] encode(String key, Object value, long expireAt) {
+        return encode(key, value, expireAt, 0);
+    }
+
+    /**
+     * 编码带逻辑过期时间和重建耗时的缓存值
+     *
+     * @param key      缓存键，用于按前缀统计
+     * @param value    缓存值
+     * @param expireAt 逻辑过期时间，毫秒时间戳，NO_EXPIRE 表示没有逻辑过期时间
+     * @param delta    重建这条数据的耗时，单位毫秒，0 表示不记录
+     * @return 编码后的字节
+     */
+    public byte[] encode(String key, Object value, long expireAt, long delta) {
+        long start = System.nanoTime();
+        if (writeCodec == jsonCodec) {
+            // 旧版格式不带帧头，不压缩
+            Object data = value;
+            if (expireAt != NO_EXPIRE) {
+                RedisData redisData = new RedisData();
+                redisData.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(expireAt), ZoneId.systemDefault()));
+                redisData.setData(value);
+                data = redisData;
+            }
+            byte[] bytes = jsonCodec.encode(data);
+            stats(key).recordEncode(bytes.length, bytes.length, false, System.nanoTime() - start);
+            return bytes;
+        }
+
+        CacheCodec codec = writeCodec.supports(value.getClass()) ? writeCodec : jsonCodec;
+        byte[] payload = codec.encode(value);
+        CacheCompressor.Compressed compressed = compressor.compress(payload);
+        byte[] bytes = frame(codec, payload, compressed, expireAt, delta);
+        stats(key).recordEncode(payload.length, bytes.length, compressed != null, System.nanoTime() - start);
+        return bytes;
+    }
+
+    /**
+     * 解码普通缓存值
+     *
+     * @param key   缓存键，用于按前缀统计
+     * @param bytes 缓存数据，不为空
+     * @param clazz 值类型
+     * @return 缓存值，数据格式不兼容时返回 null
+     */
+    public <T> CacheValue<T> decode(String key, byte[] bytes, Class<T> clazz) {
+        long start = System.nanoTime();
+        try {
+            if (bytes[0] != MAGIC) {
+                // 旧版 JSON 格式
+                return new CacheValue<>(jsonCodec.decode(bytes, 0, clazz), NO_EXPIRE, 0);
+            }
+            return unframe(bytes, clazz);
+        } catch (RuntimeException e) {
+            log.warn("缓存数据解码失败，当作未命中处理，key：{}，原因：{}", key, e.getMessage());
+            return null;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            stats(key).recordDecode(nanos);
+            cacheMetrics.recordDecode(key, nanos);
+        }
+    }
+
+    /**
+     * 解码带逻辑过期时间的缓存值
+     *
+     * @param key   缓存键，用于按前缀统计
+     * @param bytes 缓存数据，不为空
+     * @param clazz 值类型
+     * @return 缓存值，数据格式不兼容时返回 null
+     */
+    public <T> CacheValue<T> decodeLogical(String key, byte[] bytes, Class<T> clazz) {
+        long start = System.nanoTime();
+        try {
+            if (bytes[0] != MAGIC) {
+                // 旧版 JSON 格式：{"expireTime": ..., "data": {...}}
+                RedisData redisData = jsonCodec.decode(bytes, 0, RedisData.class);
+                T data = JSONUtil.toBean((JSONObject) redisData.getData(), clazz);
+                long expireAt = redisData.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                return new CacheValue<>(data, expireAt, 0);
+            }
+            return unframe(bytes, clazz);
+        } catch (RuntimeException e) {
+            log.warn("缓存数据解码失败，当作未命中处理，key：{}，原因：{}", key, e.getMessage());
+            return null;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            stats(key).recordDecode(nanos);
+            cacheMetrics.recordDecode(key, nanos);
+        }
+    }
+
+    /**
+     * 写入帧头和数据
+     *
+     * @param codec      编解码器
+     * @param payload    编码后的数据
+     * @param compressed 压缩结果，没有压缩时为 null
+     * @param expireAt   逻辑过期时间
+     * @param delta      重建耗时
+     */
+    private byte[] frame(CacheCodec codec, byte[] payload, CacheCompressor.Compressed compressed, long expireAt, long delta) {
+        boolean hasExpire = expireAt != NO_EXPIRE;
+        boolean hasDelta = hasExpire && delta > 0;
+        byte[] body = compressed == null ? payload : compressed.bytes();
+        int headerLength = HEADER_LENGTH + (hasExpire ? Long.BYTES : 0) + (compressed != null ? 2 * Integer.BYTES : 0)
+                + (hasDelta ? Integer.BYTES : 0);
+
+        byte[] bytes = new byte[headerLength + body.length];
+        bytes[0] = MAGIC;
+        bytes[1] = hasDelta ? VERSION_DELTA : compressed != null ? VERSION_COMPRESSED : VERSION;
+        bytes[2] = codec.id();
+        bytes[3] = (byte) ((hasExpire ? FLAG_EXPIRE : 0) | (compressed != null ? FLAG_COMPRESSED : 0) | (hasDelta ? FLAG_DELTA : 0));
+        int offset = HEADER_LENGTH;
+        if (hasExpire) {
+            offset = writeLong(bytes, offset, expireAt);
+        }
+        if (compressed != null) {
+            offset = writeInt(bytes, offset, payload.length);
+            offset = writeInt(bytes, offset, compressed.dictionaryId());
+        }
+        if (hasDelta) {
+            offset = writeInt(bytes, offset, (int) Math.min(delta, Integer.MAX_VALUE));
+        }
+        System.arraycopy(body, 0, bytes, offset, body.length);
+        return bytes;
+    }
+
+    /**
+     * 解析帧头和数据
+     */
+    private <T> CacheValue<T> unframe(byte[] bytes, Class<T> clazz) {
+        if (bytes.length < HEADER_LENGTH || bytes[1] < VERSION || bytes[1] > VERSION_DELTA) {
+            throw new IllegalStateException("不支持的缓存格式版本");
+        }
+        CacheCodec codec = bytes[2] >= 0 ? codecsById[bytes[2]] : null;
+        if (codec == null) {
+            throw new IllegalStateException("未知的缓存编解码器 ID：" + bytes[2]);
+        }
+        int flags = bytes[3];
+        int offset = HEADER_LENGTH;
+        long expireAt = NO_EXPIRE;
+        if ((flags & FLAG_EXPIRE) != 0) {
+            expireAt = readLong(bytes, offset);
+            offset += Long.BYTES;
+        }
+        int originalLength = -1;
+        int dictionaryId = 0;
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            originalLength = readInt(bytes, offset);
+            dictionaryId = readInt(bytes, offset + Integer.BYTES);
+            offset += 2 * Integer.BYTES;
+        }
+        long delta = 0;
+        if ((flags & FLAG_DELTA) != 0) {
+            delta = readInt(bytes, offset);
+            offset += Integer.BYTES;
+        }
+        if (originalLength >= 0) {
+            byte[] payload = compressor.decompress(bytes, offset, originalLength, dictionaryId);
+            return new CacheValue<>(codec.decode(payload, 0, clazz), expireAt, delta);
+        }
+        return new CacheValue<>(codec.decode(bytes, offset, clazz), expireAt, delta);
+    }
+
+    /**
+     * 输出各个键名前缀的压缩率和编解码耗时
+     */
+    private void report() {
+        stats.forEach((prefix, s) -> {
+            if (s.getEncodeCount() == 0 && s.getDecodeCount() == 0) {
+                return;
+            }
+            log.info("缓存编解码统计，前缀：{}，编码 {} 次（压缩 {} 次），压缩率：{}，平均编码耗时：{} 微秒，解码 {} 次，平均解码耗时：{} 微秒",
+                    prefix, s.getEncodeCount(), s.getCompressedCount(), String.format("%.2f", s.getCompressionRatio()),
+                    String.format("%.1f", s.getAvgEncodeMicros()), s.getDecodeCount(), String.format("%.1f", s.getAvgDecodeMicros()));
+        });
+    }
+
+    /**
+     * 获取键名前缀的统计信息，前缀取缓存键最后一个冒号之前的部分，例如 cache:shop:1 的前缀是 cache:shop:
+     */
+    private CodecStats stats(String key) {
+        return stats.computeIfAbsent(CacheMetrics.prefixOf(key), prefix -> {
+            CodecStats codecStats = new CodecStats();
+            cacheMetrics.bindCodecStats(prefix, codecStats);
+            return codecStats;
+        });
+    }
+
+    private static int writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+        return offset + Long.BYTES;
+    }
+
+    private static int writeInt(byte[] bytes, int offset, int value) {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            bytes[offset + i] = (byte) (value >>> (24 - 8 * i));
+        }
+        return offset + Integer.BYTES;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        if (bytes.length < offset + Long.BYTES) {
+            throw new IllegalStateException("缓存数据不完整");
+        }
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        if (bytes.length < offset + Integer.BYTES) {
+            throw new IllegalStateException("缓存数据不完整");
+        }
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,298 @@
+package com.lzx.redis.codec;
+
+import com.lzx.redis.RedisConstants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 缓存值压缩
+ * 1. 编码后超过阈值的数据使用 Deflate（BEST_SPEED 级别）压缩，压缩后没有变小的数据保持原样
+ * 2. 可选的共享字典：从实际写入的数据中采样，训练出常见的片段（URL 前缀、字段值等）作为 Deflate 的预置字典，
+ * 小数据也能压缩得比较好。字典保存在 Redis 中，帧头记录字典 ID，其他节点解码时按 ID 从 Redis 加载
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class CacheCompressor {
+
+    // 训练字典时使用的片段长度
+    private static final int SEGMENT_LENGTH = 16;
+
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    // 是否启用压缩
+    @Value("${zxdp.cache.compress.enabled:true}")
+    private boolean enabled;
+
+    // 压缩阈值，编码后超过这个字节数才压缩
+    @Value("${zxdp.cache.compress.threshold:512}")
+    private int threshold;
+
+    // 是否启用共享字典
+    @Value("${zxdp.cache.compress.dictionary:false}")
+    private boolean dictionaryEnabled;
+
+    // 当前用于压缩的字典
+    private volatile Dictionary current;
+    // 已加载的字典，解码时按 ID 查找
+    private final Map<Integer, Dictionary> dictionaries = new ConcurrentHashMap<>();
+
+    // 训练字典的样本（蓄水池采样）
+    private final AtomicReferenceArray<byte[]> samples = new AtomicReferenceArray<>(RedisConstants.CACHE_DICT_SAMPLE_COUNT);
+    private final AtomicInteger sampleSeen = new AtomicInteger();
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    // 每个线程复用自己的压缩器和解压器，创建它们需要分配 zlib 的内部缓冲区
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    // 加载字典、训练字典的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-dictionary");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 压缩字典
+     *
+     * @param id    字典 ID，写入帧头
+     * @param bytes 字典内容
+     */
+    private record Dictionary(int id, byte[] bytes) {
+    }
+
+    /**
+     * 压缩结果
+     *
+     * @param bytes        压缩后的数据
+     * @param dictionaryId 使用的字典 ID，没有使用字典时为 0
+     */
+    record Compressed(byte[] bytes, int dictionaryId) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled && dictionaryEnabled) {
+            // 定期从 Redis 加载当前字典，其他节点训练出新字典后，本节点也会切换过去
+            scheduler.scheduleWithFixedDelay(this::loadCurrentDictionary, 0, RedisConstants.CACHE_DICT_REFRESH_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 压缩
+     *
+     * @param payload 编码后的数据
+     * @return 压缩结果，不需要压缩或压缩后没有变小时返回 null
+     */
+    Compressed compress(byte[] payload) {
+        if (!enabled) {
+            return null;
+        }
+        if (dictionaryEnabled) {
+            sample(payload);
+        }
+        if (payload.length < threshold) {
+            return null;
+        }
+        Dictionary dictionary = current;
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary.bytes());
+        }
+        deflater.setInput(payload);
+        deflater.finish();
+        // 压缩后必须比原数据小，输出缓冲区和原数据一样大，放不下说明压缩没有意义
+        byte[] buffer = new byte[payload.length];
+        int length = deflater.deflate(buffer);
+        if (!deflater.finished() || length >= payload.length) {
+            return null;
+        }
+        return new Compressed(Arrays.copyOf(buffer, length), dictionary == null ? 0 : dictionary.id());
+    }
+
+    /**
+     * 解压
+     *
+     * @param bytes          帧数据
+     * @param offset         压缩数据的起始位置
+     * @param originalLength 压缩前的长度
+     * @param dictionaryId   字典 ID，0 表示没有使用字典
+     * @return 压缩前的数据
+     */
+    byte[] decompress(byte[] bytes, int offset, int originalLength, int dictionaryId) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(bytes, offset, bytes.length - offset);
+        byte[] payload = new byte[originalLength];
+        try {
+            int length = inflater.inflate(payload);
+            if (inflater.needsDictionary()) {
+                inflater.setDictionary(dictionary(dictionaryId).bytes());
+                length += inflater.inflate(payload, length, originalLength - length);
+            }
+            if (length != originalLength || !inflater.finished()) {
+                throw new IllegalStateException("缓存数据解压后长度不一致");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("缓存数据解压失败", e);
+        }
+        return payload;
+    }
+
+    /**
+     * 使用当前采集到的样本重新训练字典，并发布到 Redis
+     */
+    public void trainDictionary() {
+        if (!training.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<byte[]> sampleList = new ArrayList<>();
+            for (int i = 0; i < samples.length(); i++) {
+                byte[] sample = samples.get(i);
+                if (sample != null) {
+                    sampleList.add(sample);
+                }
+            }
+            byte[] bytes = train(sampleList);
+            if (bytes.length == 0) {
+                log.info("样本中没有重复出现的片段，不生成压缩字典");
+                return;
+            }
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes);
+            int id = (int) crc32.getValue();
+            Dictionary dictionary = new Dictionary(id == 0 ? 1 : id, bytes);
+
+            // 先保存字典内容，再切换当前字典，其他节点读到新 ID 时一定能加载到内容
+            cacheRedisTemplate.opsForValue().set(RedisConstants.CACHE_DICT_KEY + dictionary.id(), bytes);
+            cacheRedisTemplate.opsForValue().set(RedisConstants.CACHE_DICT_CURRENT_KEY, String.valueOf(dictionary.id()).getBytes(StandardCharsets.UTF_8));
+            dictionaries.put(dictionary.id(), dictionary);
+            current = dictionary;
+            log.info("压缩字典训练完成，ID：{}，大小：{} 字节，样本数：{}", dictionary.id(), bytes.length, sampleList.size());
+        } catch (Exception e) {
+            log.error("训练压缩字典失败", e);
+        } finally {
+            training.set(false);
+        }
+    }
+
+    /**
+     * 蓄水池采样，样本数量够了而且还没有字典时，在后台训练字典
+     */
+    private void sample(byte[] payload) {
+        int seen = sampleSeen.getAndIncrement();
+        int capacity = samples.length();
+        if (seen < capacity) {
+            samples.set(seen, payload);
+            if (seen == capacity - 1 && current == null) {
+                scheduler.execute(this::trainDictionary);
+            }
+            return;
+        }
+        int index = ThreadLocalRandom.current().nextInt(seen + 1);
+        if (index < capacity) {
+            samples.set(index, payload);
+        }
+    }
+
+    /**
+     * 训练字典：统计在多个样本中出现的片段，出现次数越多越靠近字典末尾（Deflate 引用距离越近，编码越短）
+     *
+     * @param sampleList 样本
+     * @return 字典内容
+     */
+    private static byte[] train(List<byte[]> sampleList) {
+        // 1. 统计每个片段出现在多少个样本中
+        Map<String, Integer> frequency = new HashMap<>();
+        for (byte[] sample : sampleList) {
+            Set<String> segments = new HashSet<>();
+            for (int i = 0; i + SEGMENT_LENGTH <= sample.length; i += SEGMENT_LENGTH / 4) {
+                segments.add(new String(sample, i, SEGMENT_LENGTH, StandardCharsets.ISO_8859_1));
+            }
+            for (String segment : segments) {
+                frequency.merge(segment, 1, Integer::sum);
+            }
+        }
+
+        // 2. 按出现次数从高到低选取片段，只选至少在两个样本中出现过的
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(frequency.entrySet());
+        entries.removeIf(entry -> entry.getValue() < 2);
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        int count = Math.min(entries.size(), RedisConstants.CACHE_DICT_MAX_SIZE / SEGMENT_LENGTH);
+
+        // 3. 出现次数最多的放在最后
+        byte[] dictionary = new byte[count * SEGMENT_LENGTH];
+        for (int i = 0; i < count; i++) {
+            byte[] segment = entries.get(i).getKey().getBytes(StandardCharsets.ISO_8859_1);
+            System.arraycopy(segment, 0, dictionary, (count - 1 - i) * SEGMENT_LENGTH, SEGMENT_LENGTH);
+        }
+        return dictionary;
+    }
+
+    /**
+     * 从 Redis 加载当前字典
+     */
+    private void loadCurrentDictionary() {
+        try {
+            byte[] idBytes = cacheRedisTemplate.opsForValue().get(RedisConstants.CACHE_DICT_CURRENT_KEY);
+            if (idBytes == null) {
+                return;
+            }
+            int id = Integer.parseInt(new String(idBytes, StandardCharsets.UTF_8));
+            if (current == null || current.id() != id) {
+                current = dictionary(id);
+                log.info("切换压缩字典，ID：{}", id);
+            }
+        } catch (Exception e) {
+            log.warn("加载压缩字典失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按 ID 获取字典，本地没有时从 Redis 加载
+     */
+    private Dictionary dictionary(int id) {
+        return dictionaries.computeIfAbsent(id, key -> {
+            byte[] bytes = cacheRedisTemplate.opsForValue().get(RedisConstants.CACHE_DICT_KEY + key);
+            if (bytes == null) {
+                throw new IllegalStateException("压缩字典不存在：" + key);
+            }
+            return new Dictionary(key, bytes);
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package com.lzx.redis.codec;
+
+/**
+ * 解码后的缓存值
+ *
+ * @param data     缓存值
+ * @param expireAt 逻辑过期时间，毫秒时间戳，没有逻辑过期时间时为 {@link CacheCodecs#NO_EXPIRE}
+ * @param delta    上次重建这条数据的耗时，单位毫秒，没有记录时为 0
+ */
+public record CacheValue<T>(T data, long expireAt, long delta) {
+}
@@ -0,0 +1,83 @@
+package com.lzx.redis.codec;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某个键名前缀的编解码统计
+ */
+public class CodecStats {
+
+    // 编码次数
+    private final LongAdder encodeCount = new LongAdder();
+    // 编码耗时，纳秒
+    private final LongAdder encodeNanos = new LongAdder();
+    // 编码后、压缩前的字节数
+    private final LongAdder rawBytes = new LongAdder();
+    // 实际写入 Redis 的字节数
+    private final LongAdder storedBytes = new LongAdder();
+    // 压缩的次数
+    private final LongAdder compressedCount = new LongAdder();
+    // 解码次数
+    private final LongAdder decodeCount = new LongAdder();
+    // 解码耗时，纳秒
+    private final LongAdder decodeNanos = new LongAdder();
+
+    void recordEncode(int raw, int stored, boolean compressed, long nanos) {
+        encodeCount.increment();
+        encodeNanos.add(nanos);
+        rawBytes.add(raw);
+        storedBytes.add(stored);
+        if (compressed) {
+            compressedCount.increment();
+        }
+    }
+
+    void recordDecode(long nanos) {
+        decodeCount.increment();
+        decodeNanos.add(nanos);
+    }
+
+    public long getEncodeCount() {
+        return encodeCount.sum();
+    }
+
+    public long getDecodeCount() {
+        return decodeCount.sum();
+    }
+
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long getStoredBytes() {
+        return storedBytes.sum();
+    }
+
+    /**
+     * 压缩率：写入 Redis 的字节数 / 压缩前的字节数，越小越好
+     */
+    public double getCompressionRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1.0 : (double) storedBytes.sum() / raw;
+    }
+
+    /**
+     * 平均编码耗时，微秒
+     */
+    public double getAvgEncodeMicros() {
+        long count = encodeCount.sum();
+        return count == 0 ? 0 : encodeNanos.sum() / 1000.0 / count;
+    }
+
+    /**
+     * 平均解码耗时，微秒
+     */
+    public double getAvgDecodeMicros() {
+        long count = decodeCount.sum();
+        return count == 0 ? 0 : decodeNanos.sum() / 1000.0 / count;
+    }
+}
@@ -5,6 +5,7 @@ import com.lzx.entity.Blog;
 import com.lzx.result.ScrollResult;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 博客服务类接口
@@ -27,6 +28,14 @@ public interface BlogService {
      */
     Blog getById(Long id);
 
+    /**
+     * 根据 ID 查询博客，异步版本：博客、作者信息、是否点赞并发查询，不占用 Web 线程
+     *
+     * @param id 博客 ID
+     * @return 博客实体，博客不存在时为 null
+     */
+    CompletableFuture<Blog> getByIdAsync(Long id);
+
     /**
      * 点赞博客，如果用户已经点赞过，则取消点赞
      *
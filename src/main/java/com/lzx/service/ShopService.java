@@ -4,6 +4,7 @@ import com.lzx.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 商户服务类
@@ -18,6 +19,14 @@ public interface ShopService {
      */
     Shop getById(Long id);
 
+    /**
+     * 根据 ID 查询商户详情，异步版本，缓存命中时不占用 Web 线程
+     *
+     * @param id 商户 ID
+     * @return 商户实体类，商户不存在时以 {@link com.lzx.exception.BaseException} 结束
+     */
+    CompletableFuture<Shop> getByIdAsync(Long id);
+
     /**
      * 根据 ID 更新商户信息
      *
@@ -1,5 +1,6 @@
 package com.lzx.service;
 
+import com.lzx.dto.ShopTypeSnapshot;
 import com.lzx.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -16,4 +17,16 @@ public interface ShopTypeService {
      * @return 所有店铺类型实体列表
      */
     List<ShopType> getList();
+
+    /**
+     * 获取店铺类型快照，包含预先序列化好的响应体和 ETag
+     *
+     * @return 店铺类型快照
+     */
+    ShopTypeSnapshot getSnapshot();
+
+    /**
+     * 店铺类型变化后调用，通知所有节点重新加载快照
+     */
+    void publishChange();
 }
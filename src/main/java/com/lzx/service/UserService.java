@@ -28,6 +28,13 @@ public interface UserService {
      */
     String login(LoginFormDTO loginForm);
 
+    /**
+     * 登出
+     *
+     * @param token 登录凭证
+     */
+    void logout(String token);
+
     /**
      * 根据 ID 查询用户信息
      *
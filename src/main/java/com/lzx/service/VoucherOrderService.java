@@ -3,6 +3,8 @@ package com.lzx.service;
 import com.lzx.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * 优惠券订单服务接口
  */
@@ -31,4 +33,14 @@ public interface VoucherOrderService {
      * @param voucherOrder 秒杀券订单信息
      */
     void processSeckillVoucherOrder(VoucherOrder voucherOrder);
+
+    /**
+     * 批量保存秒杀券订单（包含一人一单过滤、按秒杀券分组扣减库存和多行插入订单），在一个事务中完成
+     * 重复投递的订单会被过滤掉，可以安全地重试
+     *
+     * @param voucherOrders 秒杀券订单列表
+     * @return 实际保存的订单数量
+     * @throws com.lzx.exception.BaseException 数据库库存不足，整批回滚，订单不能确认
+     */
+    int saveSeckillOrders(List<VoucherOrder> voucherOrders);
 }
@@ -15,4 +15,12 @@ public interface VoucherService {
      * @return 秒杀券 ID
      */
     Long addSeckillVoucher(Voucher voucher);
+
+    /**
+     * 补充秒杀券库存
+     *
+     * @param voucherId 秒杀券 ID
+     * @param amount    补充的数量
+     */
+    void addSeckillStock(Long voucherId, Integer amount);
 }
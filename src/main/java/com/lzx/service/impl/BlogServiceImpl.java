@@ -11,14 +11,20 @@ import com.lzx.entity.Blog;
 import com.lzx.entity.Follow;
 import com.lzx.entity.User;
 import com.lzx.exception.BaseException;
+import com.lzx.exception.RedisUnavailableException;
 import com.lzx.mapper.BlogMapper;
 import com.lzx.mapper.FollowMapper;
 import com.lzx.mapper.UserMapper;
+import com.lzx.redis.AsyncCacheClient;
+import com.lzx.redis.BloomFilters;
+import com.lzx.redis.CacheClient;
+import com.lzx.redis.RedisCircuitBreaker;
 import com.lzx.redis.RedisConstants;
 import com.lzx.result.ScrollResult;
 import com.lzx.service.BlogService;
 import com.lzx.service.UserService;
 import com.lzx.utils.UserHolder;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -27,8 +33,13 @@ import org.springframework.stereotype.Service;
 
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 博客服务类实现
@@ -41,6 +52,16 @@ public class BlogServiceImpl implements BlogService {
     private final UserMapper userMapper;
     private final FollowMapper followMapper;
     private final StringRedisTemplate stringRedisTemplate;
+    private final CacheClient cacheClient;
+    private final AsyncCacheClient asyncCacheClient;
+    private final BloomFilters bloomFilters;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    @PostConstruct
+    public void init() {
+        // 注册博客 ID 布隆过滤器，拦截不存在的博客 ID
+        bloomFilters.register(RedisConstants.BLOOM_BLOG, this::listBlogIdsAfter);
+    }
 
     /**
      * 保存博客
@@ -58,6 +79,8 @@ public class BlogServiceImpl implements BlogService {
         if (isSuccess != 1) {
             throw new BaseException("保存博客失败");
         }
+        // 新博客加入布隆过滤器
+        bloomFilters.add(RedisConstants.BLOOM_BLOG, blog.getId());
         // 查询博主的粉丝列表
         List<Follow> follows = followMapper.selectList(
                 Wrappers.lambdaQuery(Follow.class)
@@ -87,12 +110,10 @@ public class BlogServiceImpl implements BlogService {
                         .orderByDesc(Blog::getLiked)
         ).getRecords();
 
-        blogs.forEach(blog -> {
-            // 设置用户信息
-            queryBlogUser(blog);
-            // 设置是否点赞
-            queryBlogIsLiked(blog);
-        });
+        // 批量设置用户信息
+        queryBlogUsers(blogs);
+        // 设置是否点赞
+        blogs.forEach(this::queryBlogIsLiked);
 
         return blogs;
     }
@@ -105,6 +126,10 @@ public class BlogServiceImpl implements BlogService {
      */
     @Override
     public Blog getById(Long id) {
+        // 布隆过滤器判断博客一定不存在，直接返回
+        if (!bloomFilters.get(RedisConstants.BLOOM_BLOG).mightContain(id)) {
+            return null;
+        }
         // 查询博客
         Blog blog = blogMapper.selectById(id);
         if (blog == null) {
@@ -117,6 +142,61 @@ public class BlogServiceImpl implements BlogService {
         return blog;
     }
 
+    /**
+     * 根据 ID 查询博客，异步版本
+     * 0. 布隆过滤器判断博客一定不存在时直接返回，与同步版本一致
+     * 1. 博客在回源线程池中查询
+     * 2. 是否点赞使用 Lettuce 异步命令查询，与博客查询同时进行
+     * 3. 作者信息依赖博客的 userId，博客查到之后再异步查询用户缓存
+     *
+     * @param id 博客 ID
+     * @return 博客实体
+     */
+    @Override
+    public CompletableFuture<Blog> getByIdAsync(Long id) {
+        // 0. 布隆过滤器判断博客一定不存在，直接返回
+        if (!bloomFilters.get(RedisConstants.BLOOM_BLOG).mightContain(id)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // 回调不在当前线程中执行，先取出当前登录用户
+        UserDTO userDTO = UserHolder.getUser();
+
+        // 1. 查询博客
+        CompletableFuture<Blog> blogFuture = asyncCacheClient.supply(() -> blogMapper.selectById(id));
+
+        // 2. 查询是否点赞，未登录或者 Redis 不可用时默认未点赞
+        CompletableFuture<Boolean> likedFuture = userDTO == null
+                ? CompletableFuture.completedFuture(false)
+                : asyncCacheClient.zScore(RedisConstants.BLOG_LIKED_KEY + id, userDTO.getId().toString())
+                .handle((score, e) -> e == null && score != null);
+
+        // 3. 查询作者信息
+        CompletableFuture<UserDTO> authorFuture = blogFuture.thenCompose(blog -> blog == null
+                ? CompletableFuture.completedFuture(null)
+                : asyncCacheClient.queryWithPassThrough(
+                RedisConstants.CACHE_USER_KEY,
+                blog.getUserId(),
+                UserDTO.class,
+                this::getUserDTO,
+                RedisConstants.CACHE_USER_TTL,
+                TimeUnit.MINUTES
+        ));
+
+        // 4. 组装结果
+        return authorFuture.thenCombine(likedFuture, (author, isLiked) -> {
+            Blog blog = blogFuture.join();
+            if (blog == null) {
+                return null;
+            }
+            if (author != null) {
+                blog.setName(author.getNickName());
+                blog.setIcon(author.getIcon());
+            }
+            blog.setIsLiked(isLiked);
+            return blog;
+        });
+    }
+
 
     /**
      * 点赞博客，如果用户已经点赞过，则取消点赞
@@ -131,7 +211,7 @@ public class BlogServiceImpl implements BlogService {
         // Redis 缓存点赞用户 ID 集合键名：blog:liked:id
         String likedKey = RedisConstants.BLOG_LIKED_KEY + blogId;
         // 判断是否已点赞过
-        Double score = stringRedisTemplate.opsForZSet().score(likedKey, userId.toString());
+        Double score = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForZSet().score(likedKey, userId.toString()));
         if (score != null) {
             // 已点赞过，点赞数量减少
             int rows = updateBlogLikedCount(blogId, false);
@@ -163,25 +243,21 @@ public class BlogServiceImpl implements BlogService {
     public List<UserDTO> queryBlogLikes(Long id) {
         // Redis 缓存点赞用户 ID 集合键名：blog:liked:id
         String likedKey = RedisConstants.BLOG_LIKED_KEY + id;
-        // 查询点赞用户 ID 集合
-        Set<String> userSet = stringRedisTemplate.opsForZSet().range(likedKey, 0, SystemConstants.DEFAULT_PAGE_SIZE - 1);
+        // 查询点赞用户 ID 集合，Redis 不可用时不显示点赞用户
+        Set<String> userSet;
+        try {
+            userSet = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForZSet().range(likedKey, 0, SystemConstants.DEFAULT_PAGE_SIZE - 1));
+        } catch (RedisUnavailableException e) {
+            return List.of();
+        }
         if (userSet == null || userSet.isEmpty()) {
             return List.of();
         }
         // 将 set 集合转变为有序 list
         List<String> userIds = userSet.stream().toList();
 
-        // 查询点赞用户信息，查询的时候需要按照传递的顺序返回
-        // SELECT id, nick_name, icon FROM tb_user WHERE id IN (userIds) ORDER BY FIELD(id, userIds)
-        return userMapper.selectList(
-                        Wrappers.lambdaQuery(User.class)
-                                .select(User::getId, User::getNickName, User::getIcon)
-                                .in(User::getId, userIds)
-                                .last("ORDER BY FIELD(id, " + StrUtil.join(",", userIds) + ")")
-                )
-                .stream()
-                .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
-                .toList();
+        // 批量查询点赞用户信息，结果按照传递的顺序返回
+        return new ArrayList<>(listUsersFromCache(userIds.stream().map(Long::valueOf).toList()).values());
     }
 
     /**
@@ -230,9 +306,10 @@ public class BlogServiceImpl implements BlogService {
         }
         // 从 redis 中获取当前用户的收件箱：也就是当前用户关注的博主推送的博客 ID 列表
         // ZREVRANGEBYSCORE key lastTimeStamp 0 WITHSCORES LIMIT offset 5
-        Set<ZSetOperations.TypedTuple<String>> typedTuples = stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(
-                key, 0, lastTimeStamp, offset, SystemConstants.DEFAULT_PAGE_SIZE
-        );
+        long max = lastTimeStamp;
+        Set<ZSetOperations.TypedTuple<String>> typedTuples = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(
+                key, 0, max, offset, SystemConstants.DEFAULT_PAGE_SIZE
+        ));
         if (typedTuples == null || typedTuples.isEmpty()) {
             // 没有数据，返回空结果
             return new ScrollResult<>();
@@ -266,12 +343,10 @@ public class BlogServiceImpl implements BlogService {
             return new ScrollResult<>();
         }
 
-        blogs.forEach(blog -> {
-            // 设置是否点赞
-            queryBlogIsLiked(blog);
-            // 设置博客用户信息
-            queryBlogUser(blog);
-        });
+        // 设置是否点赞
+        blogs.forEach(this::queryBlogIsLiked);
+        // 批量设置博客用户信息
+        queryBlogUsers(blogs);
 
         // 封装结果
         ScrollResult<Blog> scrollResult = new ScrollResult<>();
@@ -298,6 +373,84 @@ public class BlogServiceImpl implements BlogService {
         }
     }
 
+    /**
+     * 批量查询博客用户信息：一次 MGET，未命中的再一次 IN 查询数据库
+     *
+     * @param blogs 博客列表
+     */
+    private void queryBlogUsers(List<Blog> blogs) {
+        List<Long> userIds = blogs.stream().map(Blog::getUserId).distinct().toList();
+        Map<Long, UserDTO> userMap = listUsersFromCache(userIds);
+        for (Blog blog : blogs) {
+            UserDTO user = userMap.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        }
+    }
+
+    /**
+     * 从缓存中批量查询用户信息
+     *
+     * @param userIds 用户 ID 列表
+     * @return 用户 ID 到用户信息的映射，顺序与 userIds 一致
+     */
+    private Map<Long, UserDTO> listUsersFromCache(List<Long> userIds) {
+        return cacheClient.queryBatchWithPassThrough(
+                RedisConstants.CACHE_USER_KEY,
+                userIds,
+                UserDTO.class,
+                this::listUsersByIds,
+                RedisConstants.CACHE_USER_TTL,
+                TimeUnit.MINUTES
+        );
+    }
+
+    /**
+     * 根据用户 ID 查询用户信息
+     *
+     * @param userId 用户 ID
+     * @return 用户信息，不存在返回 null
+     */
+    private UserDTO getUserDTO(Long userId) {
+        User user = userMapper.selectById(userId);
+        return user == null ? null : BeanUtil.copyProperties(user, UserDTO.class);
+    }
+
+    /**
+     * 根据用户 ID 列表批量查询用户信息
+     * SELECT id, nick_name, icon FROM tb_user WHERE id IN (ids)
+     *
+     * @param ids 用户 ID 列表
+     * @return 用户 ID 到用户信息的映射
+     */
+    private Map<Long, UserDTO> listUsersByIds(Collection<Long> ids) {
+        return userMapper.selectList(
+                        Wrappers.lambdaQuery(User.class)
+                                .select(User::getId, User::getNickName, User::getIcon)
+                                .in(User::getId, ids)
+                )
+                .stream()
+                .collect(Collectors.toMap(User::getId, user -> BeanUtil.copyProperties(user, UserDTO.class)));
+    }
+
+    /**
+     * 按 ID 升序分页读取博客 ID，用于构建布隆过滤器
+     *
+     * @param lastId 上一页最后一个博客 ID
+     * @return 下一页博客 ID 列表
+     */
+    private List<Long> listBlogIdsAfter(Long lastId) {
+        return blogMapper.selectObjs(
+                Wrappers.lambdaQuery(Blog.class)
+                        .select(Blog::getId)
+                        .gt(Blog::getId, lastId)
+                        .orderByAsc(Blog::getId)
+                        .last("LIMIT " + RedisConstants.BLOOM_PAGE_SIZE)
+        );
+    }
+
     /**
      * 修改博客点赞数量
      *
@@ -330,6 +483,11 @@ public class BlogServiceImpl implements BlogService {
         }
         String userId = userDTO.getId().toString();
         String likedKey = RedisConstants.BLOG_LIKED_KEY + blog.getId();
-        blog.setIsLiked(stringRedisTemplate.opsForZSet().score(likedKey, userId) != null);
+        try {
+            blog.setIsLiked(redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForZSet().score(likedKey, userId)) != null);
+        } catch (RedisUnavailableException e) {
+            // Redis 不可用，默认未点赞
+            blog.setIsLiked(false);
+        }
     }
 }
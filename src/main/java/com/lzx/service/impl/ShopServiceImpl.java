@@ -1,9 +1,6 @@
 package com.lzx.service.impl;
 
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
@@ -12,11 +9,19 @@ import com.lzx.constant.SystemConstants;
 import com.lzx.redis.RedisConstants;
 import com.lzx.entity.Shop;
 import com.lzx.exception.BaseException;
+import com.lzx.exception.RedisUnavailableException;
 import com.lzx.mapper.ShopMapper;
 import com.lzx.result.CacheResult;
 import com.lzx.service.ShopService;
+import com.lzx.task.CacheOutboxRelay;
+import com.lzx.redis.AsyncCacheClient;
+import com.lzx.redis.BloomFilters;
 import com.lzx.redis.CacheClient;
-import com.lzx.redis.RedisData;
+import com.lzx.redis.CacheRefreshExecutor;
+import com.lzx.redis.DbFallbackLimiter;
+import com.lzx.redis.RedisCircuitBreaker;
+import com.lzx.redis.codec.CacheValue;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.geo.*;
@@ -26,14 +31,14 @@ import org.springframework.data.redis.domain.geo.GeoReference;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -47,9 +52,20 @@ public class ShopServiceImpl implements ShopService {
     private final ShopMapper shopMapper;
     private final StringRedisTemplate stringRedisTemplate;
     private final CacheClient cacheClient;
-
-    // 线程池：用于异步更新缓存
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
+    private final AsyncCacheClient asyncCacheClient;
+    private final BloomFilters bloomFilters;
+    private final CacheRefreshExecutor cacheRefreshExecutor;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final DbFallbackLimiter dbFallbackLimiter;
+    private final CacheOutboxRelay cacheOutboxRelay;
+
+    @PostConstruct
+    public void init() {
+        // 商户详情是热点数据，启用本地缓存，减少 Redis 往返和 JSON 解析
+        cacheClient.enableLocalCache(RedisConstants.CACHE_SHOP_KEY, RedisConstants.LOCAL_CACHE_SHOP_TTL, TimeUnit.SECONDS);
+        // 注册商户 ID 布隆过滤器，拦截不存在的商户 ID
+        bloomFilters.register(RedisConstants.BLOOM_SHOP, this::listShopIdsAfter);
+    }
 
     /**
      * 根据 ID 查询商户详情
@@ -59,6 +75,10 @@ public class ShopServiceImpl implements ShopService {
      */
     @Override
     public Shop getById(Long id) {
+        // 布隆过滤器判断商户一定不存在，直接返回，不访问 Redis 和数据库
+        if (!bloomFilters.get(RedisConstants.BLOOM_SHOP).mightContain(id)) {
+            throw new BaseException(MessageConstants.SHOP_NOT_FOUND);
+        }
         // 解决缓存穿透问题
         // Shop shop = getShopWithPassThrough(id);
         /*Shop shop = cacheClient.queryWithPassThrough(
@@ -69,8 +89,7 @@ public class ShopServiceImpl implements ShopService {
                 RedisConstants.CACHE_SHOP_TTL,
                 TimeUnit.MINUTES
         );*/
-        // 互斥锁解决缓存击穿问题
-        // Shop shop = getShopWithMutex(id);
+        // 互斥锁解决缓存击穿问题：单飞合并本节点的请求，分布式锁释放时通知其他节点等待的线程
         /*Shop shop = cacheClient.queryWithMutex(
                 RedisConstants.CACHE_SHOP_KEY,
                 id,
@@ -82,7 +101,17 @@ public class ShopServiceImpl implements ShopService {
         );*/
         // 逻辑过期解决缓存击穿问题
         // Shop shop = getShopWithLogicalExpiration(id);
-        Shop shop = cacheClient.queryWithLogicalExpiration(
+        /*Shop shop = cacheClient.queryWithLogicalExpiration(
+                RedisConstants.CACHE_SHOP_KEY,
+                id,
+                Shop.class,
+                shopMapper::selectById,
+                RedisConstants.CACHE_SHOP_TTL,
+                TimeUnit.MINUTES,
+                RedisConstants.LOCK_SHOP_KEY
+        );*/
+        // 逻辑过期 + 概率提前刷新，热点商户在过期之前就会被刷新
+        Shop shop = cacheClient.queryWithEarlyRefresh(
                 RedisConstants.CACHE_SHOP_KEY,
                 id,
                 Shop.class,
@@ -99,6 +128,35 @@ public class ShopServiceImpl implements ShopService {
         return shop;
     }
 
+    /**
+     * 根据 ID 查询商户详情，异步版本
+     * 与同步版本一样先用布隆过滤器拦截一定不存在的商户，不访问缓存、不写空值，避免缓存穿透
+     *
+     * @param id 商户 ID
+     * @return 商户实体类
+     */
+    @Override
+    public CompletableFuture<Shop> getByIdAsync(Long id) {
+        // 布隆过滤器判断商户一定不存在，直接返回失败的 future，不访问 Redis 缓存和数据库
+        if (!bloomFilters.get(RedisConstants.BLOOM_SHOP).mightContain(id)) {
+            return CompletableFuture.failedFuture(new BaseException(MessageConstants.SHOP_NOT_FOUND));
+        }
+        return asyncCacheClient.queryWithEarlyRefresh(
+                RedisConstants.CACHE_SHOP_KEY,
+                id,
+                Shop.class,
+                shopMapper::selectById,
+                RedisConstants.CACHE_SHOP_TTL,
+                TimeUnit.MINUTES,
+                RedisConstants.LOCK_SHOP_KEY
+        ).thenApply(shop -> {
+            if (shop == null) {
+                throw new BaseException(MessageConstants.SHOP_NOT_FOUND);
+            }
+            return shop;
+        });
+    }
+
     /**
      * 根据 ID 更新商户信息
      *
@@ -114,8 +172,9 @@ public class ShopServiceImpl implements ShopService {
             throw new BaseException("更新商户信息失败");
         }
 
-        // 3. 删除 Redis 中的商户缓存
-        stringRedisTemplate.delete(RedisConstants.CACHE_SHOP_KEY + shop.getId());
+        // 3. 在同一个事务中写入缓存失效记录，事务提交后由后台任务删除缓存（延迟双删），
+        // 提交之前删除的话，并发的读请求可能把旧数据重新写回缓存
+        cacheOutboxRelay.enqueue(RedisConstants.CACHE_SHOP_KEY + shop.getId());
     }
 
     /**
@@ -158,14 +217,20 @@ public class ShopServiceImpl implements ShopService {
                                 .limit(end)
                 );*/
         // GEOSEARCH 在 6.2 版本才支持，低版本使用 GEORADIUS
-        GeoResults<RedisGeoCommands.GeoLocation<String>> search = stringRedisTemplate.opsForGeo()
-                .radius(
-                        key,
-                        new Circle(new Point(x, y), new Distance(5000)),
-                        RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
-                                .includeDistance()
-                                .limit(end)
-                );
+        GeoResults<RedisGeoCommands.GeoLocation<String>> search;
+        try {
+            search = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForGeo()
+                    .radius(
+                            key,
+                            new Circle(new Point(x, y), new Distance(5000)),
+                            RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                                    .includeDistance()
+                                    .limit(end)
+                    ));
+        } catch (RedisUnavailableException e) {
+            // Redis 不可用，退化为按类型分页查询（没有距离），并限制回源数据库的并发
+            return dbFallbackLimiter.execute(() -> queryShopsByType(typeId, current, null, null));
+        }
         if (search == null || search.getContent().isEmpty()) {
             // 如果查询结果为空，返回空列表
             return List.of();
@@ -188,15 +253,24 @@ public class ShopServiceImpl implements ShopService {
             distanceMap.put(shopId, result.getDistance().getValue());
         }
 
-        // 根据商户 ID 列表查询所有商户信息
-        List<Shop> shops = shopMapper.selectList(
-                Wrappers.lambdaQuery(Shop.class)
-                        .in(Shop::getId, shopIds)
-                        .last("ORDER BY FIELD(id, " + StrUtil.join(",", shopIds) + ")")
+        // 根据商户 ID 列表批量查询商户信息：一次 MGET，未命中的再一次 IN 查询数据库
+        Map<Long, Shop> shopMap = cacheClient.queryBatchWithLogicalExpiration(
+                RedisConstants.CACHE_SHOP_KEY,
+                shopIds,
+                Shop.class,
+                this::listShopsByIds,
+                RedisConstants.CACHE_SHOP_TTL,
+                TimeUnit.MINUTES,
+                RedisConstants.LOCK_SHOP_KEY
         );
-        // 循环设置距离
-        for (Shop shop : shops) {
-            shop.setDistance(distanceMap.get(shop.getId()));
+        // 按照距离顺序组装结果，并设置距离
+        List<Shop> shops = new ArrayList<>(shopMap.size());
+        for (Long shopId : shopIds) {
+            Shop shop = shopMap.get(shopId);
+            if (shop != null) {
+                shop.setDistance(distanceMap.get(shopId));
+                shops.add(shop);
+            }
         }
 
         return shops;
@@ -205,6 +279,35 @@ public class ShopServiceImpl implements ShopService {
 
     // --------------------- 私有方法 ---------------------------
 
+    /**
+     * 按 ID 升序分页读取商户 ID，用于构建布隆过滤器
+     *
+     * @param lastId 上一页最后一个商户 ID
+     * @return 下一页商户 ID 列表
+     */
+    private List<Long> listShopIdsAfter(Long lastId) {
+        return shopMapper.selectObjs(
+                Wrappers.lambdaQuery(Shop.class)
+                        .select(Shop::getId)
+                        .gt(Shop::getId, lastId)
+                        .orderByAsc(Shop::getId)
+                        .last("LIMIT " + RedisConstants.BLOOM_PAGE_SIZE)
+        );
+    }
+
+    /**
+     * 根据商户 ID 列表批量查询商户
+     *
+     * @param ids 商户 ID 列表
+     * @return 商户 ID 到商户实体的映射
+     */
+    private Map<Long, Shop> listShopsByIds(Collection<Long> ids) {
+        return shopMapper.selectList(
+                Wrappers.lambdaQuery(Shop.class)
+                        .in(Shop::getId, ids)
+        ).stream().collect(Collectors.toMap(Shop::getId, Function.identity()));
+    }
+
     /**
      * 缓存穿透解决方案：缓存空对象
      * 缓存穿透：查询不存在的商户 ID，由于缓存中没有该商户，每次都要查询数据库，数据库中也不存在，也不会建立缓存，就会导致一直请求数据库。
@@ -231,84 +334,19 @@ public class ShopServiceImpl implements ShopService {
         if (shop == null) {
             // 4. 如果数据库中也不存在
             // 4.1 缓存空对象，设置过期时间，避免缓存穿透
-            stringRedisTemplate.opsForValue().set(key, "", RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
+            cacheClient.setNull(key, RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
             // 4.2 返回 null
             return null;
         }
 
         // 5. 如果数据库中存在，将商户缓存到 Redis 中
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        cacheClient.set(key, shop, RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
         // 6. 返回商户
         return shop;
     }
 
 
-    /**
-     * 缓存击穿解决方案：互斥锁
-     * 缓存击穿：也叫热点 Key 问题，就是一个被高并发访问并且缓存重建业务较复杂的 Key 突然失效了，无数的请求访问会在瞬间给数据库带来巨大的冲击。
-     * 解决方法：
-     * 1. 互斥锁：如果查询缓存未命中，先尝试获取一个互斥锁，只有获取到锁的线程才可以查询数据库，重建缓存数据，其他线程等待。
-     * 2. 逻辑过期：在缓存中存储商户信息时，额外存储一个过期时间，当查询到过期时间时，先判断是否过期，如果过期，则新开一个线程异步查询数据库，
-     * 更新缓存数据，并返回之前的缓存数据，等到新线程查询完成后，新一轮的请求会返回新的缓存数据。
-     *
-     * @param id 商户 ID
-     * @return 商户实体类
-     */
-    private Shop getShopWithMutex(Long id) {
-        // 构建 Redis 缓存键名
-        String key = RedisConstants.CACHE_SHOP_KEY + id;
-
-        // 1. 从 Redis 中查询商户缓存
-        CacheResult<Shop> cacheResult = getShopFromCache(key, Shop.class);
-        if (cacheResult.isExists()) {
-            // 2. 如果存在，直接返回缓存中的商户
-            return cacheResult.getData();
-        }
-
-        // 3. 缓存中不存在
-        String lockKey = RedisConstants.LOCK_SHOP_KEY + id;
-        Shop shop = null;
-        try {
-            // 3.1 尝试获取互斥锁
-            boolean isLocked = tryLock(lockKey);
-            if (!isLocked) {
-                // 3.2 如果获取锁失败，等待一段时间后重试
-                Thread.sleep(50);
-                // 递归调用，重新尝试获取锁
-                return getShopWithMutex(id); // 或用循环
-            }
-
-            // 4. 如果获取到锁，再次检查缓存是否存在
-            cacheResult = getShopFromCache(key, Shop.class);
-            if (cacheResult.isExists()) {
-                // 4.1 如果存在，直接返回缓存中的商户
-                return cacheResult.getData();
-            }
-
-            // 5. 实现缓存重建，从数据库中查询商户
-            shop = shopMapper.selectById(id);
-            if (shop == null) {
-                // 5.1 如果数据库中也不存在，缓存空对象，设置过期时间，避免缓存穿透
-                stringRedisTemplate.opsForValue().set(key, "", RedisConstants.CACHE_NULL_TTL, TimeUnit.MINUTES);
-                // 5.2 返回 null
-                return null;
-            }
-
-            // 5.3 如果数据库中存在，将商户缓存到 Redis 中
-            stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
-        } finally {
-            // 6. 释放互斥锁
-            unlock(lockKey);
-        }
-
-        // 7. 返回商户
-        return shop;
-    }
-
     /**
      * 缓存击穿解决方案：逻辑过期
      * 缓存击穿：也叫热点 Key 问题，就是一个被高并发访问并且缓存重建业务较复杂的 Key 突然失效了，无数的请求访问会在瞬间给数据库带来巨大的冲击。
@@ -343,8 +381,8 @@ public class ShopServiceImpl implements ShopService {
                 return shop;
             }
 
-            // 2.4 如果缓存已过期，开启独立线程进行缓存重建
-            executorService.submit(() -> {
+            // 2.4 如果缓存已过期，提交到缓存重建线程池进行缓存重建
+            boolean accepted = cacheRefreshExecutor.submit(key, CacheRefreshExecutor.PRIORITY_HIGH, () -> {
                 try {
                     // 缓存重建
                     this.saveShop2Redis(id, 20L);
@@ -353,6 +391,10 @@ public class ShopServiceImpl implements ShopService {
                     unlock(lockKey);
                 }
             });
+            if (!accepted) {
+                // 重建队列已满，释放锁，返回旧数据
+                unlock(lockKey);
+            }
         }
         // 3、返回过期的商户信息
         return getExpiredShopFromCache(key);
@@ -366,20 +408,8 @@ public class ShopServiceImpl implements ShopService {
      * @return 缓存结果对象，包含是否存在和数据
      */
     private <T> CacheResult<T> getShopFromCache(String key, Class<T> clazz) {
-        // 1. 从 Redis 中查询商户缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(shopJson)) {
-            // 2. 如果存在，直接返回缓存中的商户
-            return CacheResult.hit(JSONUtil.toBean(shopJson, clazz));
-        }
-        // 判断是否为空字符串
-        if (StrUtil.equals(shopJson, "")) {
-            // 如果为空字符串，查询到的是穿透的结果，返回 null
-            return CacheResult.nullValue();
-        }
-
-        // 3. 如果不存在，返回缓存未命中
-        return CacheResult.miss();
+        // 从 Redis 中查询商户缓存：命中、空值（穿透的结果）或未命中
+        return cacheClient.get(key, clazz);
     }
 
     /**
@@ -389,17 +419,14 @@ public class ShopServiceImpl implements ShopService {
      * @return 商户实体类
      */
     private Shop checkCacheAndGetShop(String key) {
-        CacheResult<RedisData> cacheResult = getShopFromCache(key, RedisData.class);
-        if (!cacheResult.isExists() || cacheResult.getData() == null) {
+        CacheValue<Shop> cacheValue = cacheClient.getWithLogicalExpire(key, Shop.class);
+        if (cacheValue == null) {
             // 缓存不存在，或者缓存数据为空，返回 null
             return null;
         }
 
-        RedisData redisData = cacheResult.getData();
-        Shop shop = JSONUtil.toBean((JSONObject) redisData.getData(), Shop.class);
-
-        if (redisData.getExpireTime().isAfter(LocalDateTime.now())) {
-            return shop; // 未过期
+        if (cacheValue.expireAt() > System.currentTimeMillis()) {
+            return cacheValue.data(); // 未过期
         }
 
         return null; // 已过期
@@ -412,13 +439,8 @@ public class ShopServiceImpl implements ShopService {
      * @return 商户实体类
      */
     private Shop getExpiredShopFromCache(String key) {
-        CacheResult<RedisData> cacheResult = getShopFromCache(key, RedisData.class);
-        if (!cacheResult.isExists() || cacheResult.getData() == null) {
-            return null;
-        }
-
-        RedisData redisData = cacheResult.getData();
-        return JSONUtil.toBean((JSONObject) redisData.getData(), Shop.class);
+        CacheValue<Shop> cacheValue = cacheClient.getWithLogicalExpire(key, Shop.class);
+        return cacheValue == null ? null : cacheValue.data();
     }
 
 
@@ -454,12 +476,9 @@ public class ShopServiceImpl implements ShopService {
 
         // 从数据库中查询商户
         Shop shop = shopMapper.selectById(id);
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireSeconds));
 
-        // 向 Redis 中存入商户信息
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        // 向 Redis 中存入商户信息，逻辑过期时间写在帧头中
+        cacheClient.setWithLogicalExpire(key, shop, expireSeconds, TimeUnit.SECONDS);
     }
 
 }
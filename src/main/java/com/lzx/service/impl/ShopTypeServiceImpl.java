@@ -1,37 +1,196 @@
 package com.lzx.service.impl;
 
-import cn.hutool.json.JSONUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lzx.dto.ShopTypeSnapshot;
+import com.lzx.redis.CacheClient;
+import com.lzx.redis.RedisCircuitBreaker;
 import com.lzx.redis.RedisConstants;
 import com.lzx.entity.ShopType;
 import com.lzx.exception.BaseException;
+import com.lzx.exception.RedisUnavailableException;
 import com.lzx.mapper.ShopTypeMapper;
+import com.lzx.result.Result;
 import com.lzx.service.ShopTypeService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * 购物类型服务实现类
+ * 店铺类型一年只变化几次，每个节点在内存中保存一份不可变的快照，请求直接返回快照，不访问 Redis，也不重新序列化
+ * 1. 快照带有版本号，版本号保存在 Redis 中，店铺类型变化时加一并广播（店铺类型没有写接口，直接修改数据库后调用 POST /shopTypes/refresh）
+ * 2. 收到广播、或者定期轮询发现版本号变化时，重新加载快照并整体替换（广播丢失时由轮询兜底）
+ * 3. 快照中保存预先序列化好的响应体和 ETag，客户端带上 If-None-Match 时直接返回 304
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor(onConstructor_ = {@Autowired})
-public class ShopTypeServiceImpl implements ShopTypeService {
+public class ShopTypeServiceImpl implements ShopTypeService, MessageListener {
+
+    // Redis 不可用时加载的快照使用的版本号，恢复后第一次轮询就会重新加载
+    private static final long UNKNOWN_VERSION = -1L;
 
     private final ShopTypeMapper shopTypeMapper;
+    private final CacheClient cacheClient;
     private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+    private final ObjectMapper objectMapper;
+
+    // 轮询版本号的间隔，单位秒
+    @Value("${zxdp.shop-type.poll-seconds:30}")
+    private long pollSeconds;
+
+    // 当前快照，只会整体替换
+    private volatile ShopTypeSnapshot snapshot;
+
+    // 检查版本号、加载快照的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "shop-type-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RedisConstants.SHOP_TYPE_CHANGED_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 应用启动完成后，在后台加载快照，并开启定期轮询
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduler.scheduleWithFixedDelay(this::checkVersion, 0, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 收到店铺类型变化的广播，在后台检查版本号，不占用消息监听线程
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        scheduler.execute(this::checkVersion);
+    }
 
     /**
      * 获取所有店铺类型列表
      *
-     * @return 所有店铺类型实体列表
+     * @return 所有店铺类型实体列表，不可修改
      */
     @Override
     public List<ShopType> getList() {
+        return getSnapshot().list();
+    }
+
+    /**
+     * 获取店铺类型快照，后台还没加载完成时在当前线程加载
+     *
+     * @return 店铺类型快照
+     */
+    @Override
+    public ShopTypeSnapshot getSnapshot() {
+        ShopTypeSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                reload(readVersion());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 店铺类型变化后调用：删除 Redis 中的列表缓存，版本号加一，并通知所有节点重新加载快照
+     */
+    @Override
+    public void publishChange() {
+        cacheClient.invalidate(RedisConstants.CACHE_SHOP_TYPE_KEY);
+        Long version = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForValue().increment(RedisConstants.CACHE_SHOP_TYPE_VERSION_KEY));
+        redisCircuitBreaker.run(() -> stringRedisTemplate.convertAndSend(RedisConstants.SHOP_TYPE_CHANGED_CHANNEL, String.valueOf(version)));
+        log.info("店铺类型已变化，新版本号：{}", version);
+    }
+
+    // --------------------- 私有方法 ---------------------
+
+    /**
+     * 检查 Redis 中的版本号，与当前快照不同时重新加载
+     */
+    private void checkVersion() {
+        try {
+            long version = readVersion();
+            ShopTypeSnapshot current = snapshot;
+            if (current != null && current.version() == version) {
+                return;
+            }
+            synchronized (this) {
+                reload(version);
+            }
+        } catch (Exception e) {
+            log.warn("检查店铺类型版本号失败，继续使用当前快照：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 读取 Redis 中的版本号，还没有版本号时为 0，Redis 不可用时为 {@link #UNKNOWN_VERSION}
+     */
+    private long readVersion() {
+        try {
+            String version = redisCircuitBreaker.execute(() -> stringRedisTemplate.opsForValue().get(RedisConstants.CACHE_SHOP_TYPE_VERSION_KEY));
+            return version == null ? 0L : Long.parseLong(version);
+        } catch (RedisUnavailableException e) {
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    /**
+     * 加载快照并整体替换：先读版本号再读数据，加载期间发生的变化会在下一次检查时发现
+     *
+     * @param version 加载前读取到的版本号
+     */
+    private void reload(long version) {
+        List<ShopType> shopTypeList = List.copyOf(loadShopTypes());
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Result.success("获取所有店铺类型列表成功", shopTypeList));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("店铺类型序列化失败", e);
+        }
+        String etag = "\"" + DigestUtil.md5Hex(body) + "\"";
+        snapshot = new ShopTypeSnapshot(version, shopTypeList, body, etag);
+        log.info("店铺类型快照已加载，版本号：{}，数量：{}", version, shopTypeList.size());
+    }
+
+    /**
+     * 查询店铺类型列表：先查 Redis 中的列表缓存，不存在再查询数据库并写入缓存
+     *
+     * @return 所有店铺类型实体列表
+     */
+    private List<ShopType> loadShopTypes() {
         // 构建 Redis 缓存键名和过期时间
         String key = RedisConstants.CACHE_SHOP_TYPE_KEY;
         Long ttl = RedisConstants.CACHE_SHOP_TYPE_TTL;
@@ -57,8 +216,6 @@ public class ShopTypeServiceImpl implements ShopTypeService {
         return shopTypeList;
     }
 
-    // --------------------- 私有方法 ---------------------
-
     /**
      * 添加店铺类型列表到 Redis 中
      *
@@ -67,28 +224,22 @@ public class ShopTypeServiceImpl implements ShopTypeService {
      * @param shopTypeList 店铺类型实体列表
      */
     private void addShopTypes(String key, Long ttl, List<ShopType> shopTypeList) {
-        List<String> jsonList = shopTypeList.stream()
-                .map(JSONUtil::toJsonStr)
-                .collect(Collectors.toList());
-
-        stringRedisTemplate.opsForList().rightPushAll(key, jsonList);
-        stringRedisTemplate.expire(key, ttl, TimeUnit.DAYS);
+        try {
+            cacheClient.setList(key, shopTypeList, ttl, TimeUnit.DAYS);
+        } catch (RedisUnavailableException e) {
+            // Redis 不可用，这次不写入缓存，直接返回数据库中的数据
+            log.warn("Redis 不可用，店铺类型没有写入缓存");
+        }
     }
 
     /**
      * 从 Redis 中获取店铺类型列表
+     * 启用 Redis 客户端缓存追踪时，优先读取本地副本，店铺类型变化时由 Redis 推送失效消息
      *
      * @param key 缓存键名
      * @return 店铺类型实体列表
      */
     public List<ShopType> getShopTypes(String key) {
-        List<String> jsonList = stringRedisTemplate.opsForList().range(key, 0, -1);
-        if (jsonList == null || jsonList.isEmpty()) {
-            return List.of();
-        }
-
-        return jsonList.stream()
-                .map(json -> JSONUtil.toBean(json, ShopType.class))
-                .collect(Collectors.toList());
+        return cacheClient.getList(key, ShopType.class);
     }
 }
@@ -12,6 +12,7 @@ import com.lzx.entity.User;
 import com.lzx.exception.BaseException;
 import com.lzx.exception.PhoneInvalidException;
 import com.lzx.mapper.UserMapper;
+import com.lzx.redis.LocalCache;
 import com.lzx.redis.RedisConstants;
 import com.lzx.service.UserService;
 import com.lzx.utils.RegexUtils;
@@ -43,6 +44,7 @@ public class UserServiceImpl implements UserService {
 
     private final UserMapper userMapper;
     private final StringRedisTemplate stringRedisTemplate;
+    private final LocalCache localCache;
 
     /**
      * 发送验证码
@@ -84,6 +86,22 @@ public class UserServiceImpl implements UserService {
         return saveUserToRedis(user);
     }
 
+    /**
+     * 登出：删除本地保存的登录状态（并通知其他节点删除），再删除 redis 中的登录状态
+     * 本地旧副本在 Redis 不可用时会被当作登录状态使用，需要一起删除
+     *
+     * @param token 登录凭证
+     */
+    @Override
+    public void logout(String token) {
+        if (StrUtil.isBlank(token)) {
+            return;
+        }
+        String key = LOGIN_USER_KEY + token;
+        localCache.invalidate(key);
+        stringRedisTemplate.delete(key);
+    }
+
     /**
      * 根据 ID 查询用户信息
      *
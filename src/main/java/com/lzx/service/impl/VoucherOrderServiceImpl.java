@@ -10,13 +10,15 @@ import com.lzx.entity.VoucherOrder;
 import com.lzx.exception.BaseException;
 import com.lzx.mapper.SeckillVoucherMapper;
 import com.lzx.mapper.VoucherOrderMapper;
+import com.lzx.redis.HotKeyDetector;
 import com.lzx.redis.RedisConstants;
-import com.lzx.redis.RedisIdWorker;
+import com.lzx.redis.IdGenerator;
+import com.lzx.redis.SeckillStockShards;
 import com.lzx.redis.SimpleRedisLock;
+import com.lzx.redis.SoldOutRegistry;
 import com.lzx.service.VoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.lzx.utils.UserHolder;
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 //import org.redisson.api.RLock;
 //import org.redisson.api.RedissonClient;
@@ -24,18 +26,21 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.framework.AopContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.connection.stream.StreamRecords;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.*;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static javax.swing.Spring.minus;
 
@@ -49,11 +54,12 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
 
     private final VoucherOrderMapper voucherOrderMapper;
     private final SeckillVoucherMapper seckillVoucherMapper;
-    private final RedisIdWorker redisIdWorker;
+    private final IdGenerator idGenerator;
     private final StringRedisTemplate stringRedisTemplate;
+    private final HotKeyDetector hotKeyDetector;
+    private final SeckillStockShards seckillStockShards;
+    private final SoldOutRegistry soldOutRegistry;
     //    private final RedissonClient redissonClient;
-    // 注入自身代理对象，用于在订单处理线程中调用
-    private VoucherOrderService proxy;
 
     // 秒杀券判断的 Lua 脚本
     private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
@@ -71,117 +77,6 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
         SECKILL_STREAM_SCRIPT.setResultType(Long.class);
     }
 
-
-    // 线程池，订单处理线程使用
-    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
-
-    // 在类初始化之后就应该立即执行订单处理线程
-    @PostConstruct
-    public void init() {
-        // 启动订单处理线程
-        // SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
-    }
-
-    // Redis Stream 消息队列实现方案
-    public class VoucherOrderHandler implements Runnable {
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    // 1、从 Redis Stream 消息队列中获取订单信息，如果不存在则等待 2 s
-                    // XREADGROUP GROUP g1 CONSUMER c1 COUNT 1 BLOCK 2000 STREAMS streams.order >
-                    List<MapRecord<String, Object, Object>> voucherOrderRecords = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
-                            StreamOffset.create(RedisConstants.SECKILL_STREAMS_ORDER_KEY, ReadOffset.lastConsumed())
-                    );
-                    // 2、判断消息是否获取成功
-                    if (voucherOrderRecords == null || voucherOrderRecords.isEmpty()) {
-                        // 没有消息，继续下次循环，继续等待
-                        continue;
-                    }
-                    // 3、消息获取成功，解析订单信息
-                    MapRecord<String, Object, Object> record = voucherOrderRecords.get(0);
-                    Map<Object, Object> map = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(map, new VoucherOrder(), true);
-                    log.info("处理订单：{}", voucherOrder.getId());
-                    // 4、处理订单
-                    handleVoucherOrder(voucherOrder);
-                    // 5、ACK 确认消息处理完成
-                    // XACK streams.order g1 id
-                    stringRedisTemplate.opsForStream().acknowledge(
-                            RedisConstants.SECKILL_STREAMS_ORDER_KEY,
-                            "g1",
-                            record.getId()
-                    );
-                } catch (Exception e) {
-                    log.error("处理订单异常", e);
-                    handlePendingList();
-                }
-            }
-        }
-    }
-
-    /**
-     * 处理 pending-list 中的订单
-     */
-    private void handlePendingList() {
-        while (true) {
-            try {
-                // 1、从 pending list 中获取订单信息
-                // XREADGROUP GROUP g1 CONSUMER c1 COUNT 1 STREAMS streams.order 0
-                List<MapRecord<String, Object, Object>> voucherOrderRecords = stringRedisTemplate.opsForStream().read(
-                        Consumer.from("g1", "c1"),
-                        StreamReadOptions.empty().count(1),
-                        StreamOffset.create(RedisConstants.SECKILL_STREAMS_ORDER_KEY, ReadOffset.from("0"))
-                );
-                // 2、判断消息是否获取成功
-                if (voucherOrderRecords == null || voucherOrderRecords.isEmpty()) {
-                    // 没有消息，说明 pending-list 中没有消息，结束循环
-                    break;
-                }
-                // 3、消息获取成功，解析订单信息
-                MapRecord<String, Object, Object> record = voucherOrderRecords.get(0);
-                Map<Object, Object> map = record.getValue();
-                VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(map, new VoucherOrder(), true);
-                log.info("处理 pending-list 订单：{}", voucherOrder.getId());
-                // 4、处理订单
-                handleVoucherOrder(voucherOrder);
-                // 5、ACK 确认消息处理完成
-                // XACK streams.order g1 id
-                stringRedisTemplate.opsForStream().acknowledge(
-                        RedisConstants.SECKILL_STREAMS_ORDER_KEY,
-                        "g1",
-                        record.getId()
-                );
-            } catch (Exception e) {
-                log.error("处理 pending-list 订单异常", e);
-                // 有异常之后，会继续下次循环，所以啥也不需要做
-            }
-        }
-    }
-
-    /* JVM BlockingQueue 阻塞队列实现方案
-    // 阻塞队列
-    private final BlockingQueue<VoucherOrder> voucherOrderQueue = new ArrayBlockingQueue<>(1024);
-    // 订单处理任务，从阻塞队列中获取订单并处理
-    public class VoucherOrderHandler implements Runnable {
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    // 从阻塞队列中获取订单，如果不存在则等待
-                    VoucherOrder voucherOrder = voucherOrderQueue.take();
-                    log.info("处理订单：{}", voucherOrder.getId());
-                    // 处理订单
-                    handleVoucherOrder(voucherOrder);
-                } catch (InterruptedException e) {
-                    log.error("处理订单线程被中断", e);
-                }
-            }
-        }
-    }*/
-
     /**
      * 秒杀券下单
      *
@@ -289,8 +184,8 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
         SimpleRedisLock lock = new SimpleRedisLock("order:" + userId, stringRedisTemplate);
         // 使用 redisson 中的可重入锁实现
         // RLock lock = redissonClient.getLock(RedisConstants.REDISSON_LOCK_KEY + "order:" + userId);
-        // 尝试获取锁
-        boolean isLock = lock.tryLock(1200L);
+        // 尝试获取锁，锁在默认时间后自动释放
+        boolean isLock = lock.tryLock(RedisConstants.LOCK_KEY_TTL);
         if (!isLock) {
             // 获取锁失败，说明有其他线程在处理该用户的订单，抛出错误
             throw new BaseException("不允许重复下单");
@@ -331,8 +226,21 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
      * 使用 redis stream 队列
      */
     public Long seckillVoucherAndSinglePurchaseWithRedisStream(Long voucherId) {
+        // 已售罄的秒杀券直接拒绝，不生成订单 ID，也不执行 Lua 脚本
+        if (soldOutRegistry.isSoldOut(voucherId)) {
+            throw new BaseException("秒杀券库存不足");
+        }
+        // 扣减之前取库存代数，扣减期间补充过库存时，库存不足的结果不会再标记售罄
+        long generation = soldOutRegistry.generation(voucherId);
         Long userId = UserHolder.getUser().getId();
-        long orderId = redisIdWorker.nextId("order:");
+        // 库存拆分成多个分片的秒杀券，走分片扣减
+        int shards = seckillStockShards.shardCount(voucherId);
+        if (shards > 1) {
+            return seckillVoucherWithShardedStock(voucherId, userId, shards, generation);
+        }
+        long orderId = idGenerator.nextId("order:");
+        // 统计库存键的访问次数，抢购时可以在热点键列表中看到
+        hotKeyDetector.record(RedisConstants.SECKILL_STOCK_KEY + voucherId);
         // 使用 Lua 脚本先进行判断
         Long result = stringRedisTemplate.execute(
                 SECKILL_STREAM_SCRIPT,
@@ -343,22 +251,80 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
         );
         // 检查 Lua 脚本执行结果
         int status = result.intValue();
+        if (status == 1) {
+            // 库存不足，标记售罄，后续请求在本地直接拒绝
+            soldOutRegistry.markSoldOut(voucherId, generation);
+        }
         if (status != 0) {
-            throw new BaseException(status == 1 ? "秒杀券库存不足" : "用户已购买过该秒杀券");
+            throw new BaseException(seckillFailureMessage(status));
         }
         // Lua 脚本执行成功，说明有购买资格
-        // 对代理对象进行赋值，确保在事务中调用
-        proxy = (VoucherOrderService) AopContext.currentProxy();
         // 返回 ID
         return orderId;
 
     }
 
+    /**
+     * 秒杀券下单：分片库存
+     * 库存分散在多个分片上，不能在一个脚本中同时扣减库存和发送消息，
+     * 扣减成功后再发送订单消息，发送失败时把库存加回去并撤销购买资格
+     */
+    private Long seckillVoucherWithShardedStock(Long voucherId, Long userId, int shards, long generation) {
+        // 1. 扣减分片库存
+        SeckillStockShards.Deduction deduction = seckillStockShards.deduct(voucherId, userId, shards);
+        if (deduction.status() == SeckillStockShards.SOLD_OUT) {
+            soldOutRegistry.markSoldOut(voucherId, generation);
+        }
+        if (deduction.status() != SeckillStockShards.SUCCESS) {
+            throw new BaseException(seckillFailureMessage(deduction.status()));
+        }
+        hotKeyDetector.record(SeckillStockShards.stockKey(voucherId, deduction.shard()));
+
+        // 2. 发送订单消息，失败时补偿
+        long orderId;
+        try {
+            orderId = idGenerator.nextId("order:");
+            stringRedisTemplate.opsForStream().add(StreamRecords.string(Map.of(
+                    "userId", userId.toString(),
+                    "voucherId", voucherId.toString(),
+                    "id", Long.toString(orderId),
+                    "shard", Integer.toString(deduction.shard())
+            )).withStreamKey(RedisConstants.SECKILL_STREAMS_ORDER_KEY));
+        } catch (RuntimeException e) {
+            log.error("发送秒杀订单消息失败，归还分片库存，voucherId：{}，userId：{}", voucherId, userId, e);
+            try {
+                seckillStockShards.release(voucherId, userId, shards, deduction.shard());
+            } catch (RuntimeException releaseError) {
+                // 归还失败只会少卖，不会超卖
+                log.error("归还分片库存失败，voucherId：{}，shard：{}", voucherId, deduction.shard(), releaseError);
+            }
+            throw new BaseException("系统繁忙，请稍后重试");
+        }
+        return orderId;
+    }
+
+    /**
+     * Lua 脚本返回的失败原因：1 库存不足，2 重复购买，3 未开始，4 已结束
+     */
+    private static String seckillFailureMessage(int status) {
+        return switch (status) {
+            case SeckillStockShards.SOLD_OUT -> "秒杀券库存不足";
+            case SeckillStockShards.NOT_STARTED -> "秒杀券未开始";
+            case SeckillStockShards.ENDED -> "秒杀券已过期";
+            default -> "用户已购买过该秒杀券";
+        };
+    }
+
     /**
      * 秒杀券下单：并实现一人一单
      * 使用 redis 先进行判断
      */
     public Long seckillVoucherAndSinglePurchaseWithRedis(Long voucherId) {
+        // 已售罄的秒杀券直接拒绝，不执行 Lua 脚本
+        if (soldOutRegistry.isSoldOut(voucherId)) {
+            throw new BaseException("秒杀券库存不足");
+        }
+        long generation = soldOutRegistry.generation(voucherId);
         Long userId = UserHolder.getUser().getId();
 
         // 使用 Lua 脚本先进行判断
@@ -370,48 +336,24 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
         );
         // 检查 Lua 脚本执行结果
         int status = result.intValue();
+        if (status == 1) {
+            // 库存不足，标记售罄，后续请求在本地直接拒绝
+            soldOutRegistry.markSoldOut(voucherId, generation);
+        }
         if (status != 0) {
             throw new BaseException(status == 1 ? "秒杀券库存不足" : "用户已购买过该秒杀券");
         }
         // Lua 脚本执行成功，说明有购买资格，保存到阻塞队列中
-        Long orderId = redisIdWorker.nextId("order:");
+        Long orderId = idGenerator.nextId("order:");
         VoucherOrder voucherOrder = new VoucherOrder();
         voucherOrder.setId(orderId);
         voucherOrder.setUserId(UserHolder.getUser().getId());
         voucherOrder.setVoucherId(voucherId);
         // voucherOrderQueue.add(voucherOrder);
-        // 对代理对象进行赋值，确保在事务中调用
-        proxy = (VoucherOrderService) AopContext.currentProxy();
         // 返回 ID
         return orderId;
     }
 
-    /**
-     * 处理秒杀券订单
-     */
-    private void handleVoucherOrder(VoucherOrder voucherOrder) {
-        log.info("handleVoucherOrder-处理订单：{}", voucherOrder.getId());
-        Long userId = voucherOrder.getUserId();
-        // 创建锁对象
-        SimpleRedisLock lock = new SimpleRedisLock("order:" + userId, stringRedisTemplate);
-        // 尝试获取锁
-        boolean isLock = lock.tryLock(1200L);
-        if (!isLock) {
-            // 获取锁失败，说明有其他线程在处理该用户的订单，抛出错误
-            log.error("用户 {} 已购买过该秒杀券，无法重复购买", userId);
-            return;
-        }
-        try {
-            // 获取锁成功，说明当前线程是第一个处理该用户的订单，继续处理
-            log.info("handleVoucherOrder-获取锁成功，继续处理订单：{}", voucherOrder.getId());
-            proxy.processSeckillVoucherOrder(voucherOrder);
-        } finally {
-            // 最后释放锁，确保其他线程可以获取到锁
-            log.info("handleVoucherOrder-释放锁，订单：{}", voucherOrder.getId());
-            lock.unlock();
-        }
-    }
-
     // 将一人一单校验、库存扣除和订单创建封装到一个方法中
     @Transactional(rollbackFor = Exception.class)
     public void processSeckillVoucherOrder(VoucherOrder voucherOrder) {
@@ -435,6 +377,58 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
         voucherOrderMapper.insert(voucherOrder);
     }
 
+    /**
+     * 批量保存秒杀券订单，由订单消费者调用，在一个事务中完成
+     * 1. 过滤掉已经保存过的订单（消息重复投递）和同一个用户重复购买的订单，一次查询完成
+     * 2. 按秒杀券分组扣减库存，每个秒杀券执行一条 UPDATE，库存不足时抛出异常，整批回滚
+     * 3. 使用一条多行 INSERT 写入所有订单
+     *
+     * @param voucherOrders 秒杀券订单列表
+     * @return 实际保存的订单数量
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int saveSeckillOrders(List<VoucherOrder> voucherOrders) {
+        if (voucherOrders.isEmpty()) {
+            return 0;
+        }
+        // 1. 一人一单：查询这批订单涉及的用户已经购买过的秒杀券，批内重复的订单只保留第一条
+        Set<Long> userIds = voucherOrders.stream().map(VoucherOrder::getUserId).collect(Collectors.toSet());
+        Set<Long> voucherIds = voucherOrders.stream().map(VoucherOrder::getVoucherId).collect(Collectors.toSet());
+        Set<String> purchased = new HashSet<>();
+        voucherOrderMapper.selectList(
+                Wrappers.lambdaQuery(VoucherOrder.class)
+                        .select(VoucherOrder::getUserId, VoucherOrder::getVoucherId)
+                        .in(VoucherOrder::getUserId, userIds)
+                        .in(VoucherOrder::getVoucherId, voucherIds)
+        ).forEach(order -> purchased.add(order.getUserId() + ":" + order.getVoucherId()));
+        Map<Long, List<VoucherOrder>> ordersByVoucher = new LinkedHashMap<>();
+        for (VoucherOrder voucherOrder : voucherOrders) {
+            if (!purchased.add(voucherOrder.getUserId() + ":" + voucherOrder.getVoucherId())) {
+                log.warn("用户 {} 已购买过该秒杀券 {}，跳过订单：{}", voucherOrder.getUserId(), voucherOrder.getVoucherId(), voucherOrder.getId());
+                continue;
+            }
+            ordersByVoucher.computeIfAbsent(voucherOrder.getVoucherId(), id -> new ArrayList<>()).add(voucherOrder);
+        }
+
+        // 2. 按秒杀券分组扣减库存；这些订单已经通过 Redis 的校验、告诉用户抢购成功了，数据库库存不足时不能丢弃，
+        // 抛出异常回滚整批，由消费者逐条重试，仍然失败的留在 pending-list 中，最终进入死信队列
+        List<VoucherOrder> accepted = new ArrayList<>();
+        ordersByVoucher.forEach((voucherId, orders) -> {
+            if (!decreaseStock(voucherId, orders.size())) {
+                log.error("秒杀券 {} 数据库库存不足，订单数量：{}", voucherId, orders.size());
+                throw new BaseException("秒杀券库存不足");
+            }
+            accepted.addAll(orders);
+        });
+
+        // 3. 多行 INSERT 写入订单
+        if (!accepted.isEmpty()) {
+            voucherOrderMapper.insertBatch(accepted);
+        }
+        return accepted.size();
+    }
+
     /**
      * 对优惠券详细信息进行判断
      */
@@ -462,7 +456,7 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
      */
     private VoucherOrder createVoucherOrder(Long voucherId) {
         VoucherOrder voucherOrder = new VoucherOrder();
-        Long orderId = redisIdWorker.nextId("order:");
+        Long orderId = idGenerator.nextId("order:");
         voucherOrder.setId(orderId);
         voucherOrder.setUserId(UserHolder.getUser().getId());
         voucherOrder.setVoucherId(voucherId);
@@ -470,6 +464,24 @@ public class VoucherOrderServiceImpl implements VoucherOrderService {
         return voucherOrder;
     }
 
+    /**
+     * 扣减一批订单的库存，一条 UPDATE 扣减整批，库存不够整批扣减时不扣减
+     *
+     * @param voucherId 秒杀券 ID
+     * @param count     订单数量
+     * @return 是否扣减成功
+     */
+    private boolean decreaseStock(Long voucherId, int count) {
+        int rows = seckillVoucherMapper.update(
+                null,
+                Wrappers.<SeckillVoucher>lambdaUpdate()
+                        .setSql("stock = stock - {0}", count)
+                        .eq(SeckillVoucher::getVoucherId, voucherId)
+                        .ge(SeckillVoucher::getStock, count)
+        );
+        return rows > 0;
+    }
+
     /**
      * 使用乐观锁更新库存
      */
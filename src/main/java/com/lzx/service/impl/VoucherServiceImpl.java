@@ -1,27 +1,34 @@
 package com.lzx.service.impl;
 
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.lzx.entity.SeckillVoucher;
 import com.lzx.entity.Voucher;
+import com.lzx.exception.BaseException;
 import com.lzx.mapper.SeckillVoucherMapper;
 import com.lzx.mapper.VoucherMapper;
-import com.lzx.redis.RedisConstants;
+import com.lzx.redis.SeckillStockShards;
+import com.lzx.redis.SoldOutRegistry;
 import com.lzx.service.VoucherService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * 优惠券服务实现类
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor(onConstructor_ = {@Autowired})
 public class VoucherServiceImpl implements VoucherService {
 
     private final VoucherMapper voucherMapper;
     private final SeckillVoucherMapper seckillVoucherMapper;
-    private final StringRedisTemplate redisTemplate;
+    private final SeckillStockShards seckillStockShards;
+    private final SoldOutRegistry soldOutRegistry;
 
 
     /**
@@ -33,6 +40,10 @@ public class VoucherServiceImpl implements VoucherService {
     @Override
     @Transactional
     public Long addSeckillVoucher(Voucher voucher) {
+        if (voucher.getBeginTime() == null || voucher.getEndTime() == null
+                || !voucher.getEndTime().isAfter(voucher.getBeginTime())) {
+            throw new BaseException("秒杀券的开始时间和结束时间不正确");
+        }
         // 1、保存优惠券信息
         voucherMapper.insert(voucher);
         // 2、保存秒杀券信息
@@ -42,12 +53,60 @@ public class VoucherServiceImpl implements VoucherService {
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherMapper.insert(seckillVoucher);
-        // 同时将库存保存到Redis中
+        // 同时将抢购时间和库存保存到Redis中，开启分片模式时按分片拆分，抢购结束后自动过期
         Long voucherId = seckillVoucher.getVoucherId();
-        String redisKey = RedisConstants.SECKILL_STOCK_KEY + voucherId;
-        redisTemplate.opsForValue().set(redisKey, seckillVoucher.getStock().toString());
+        seckillStockShards.init(voucherId, seckillVoucher.getStock(), seckillVoucher.getBeginTime(), seckillVoucher.getEndTime());
         // 3、返回秒杀券 ID
         return voucherId;
     }
 
+    /**
+     * 补充秒杀券库存
+     *
+     * @param voucherId 秒杀券 ID
+     * @param amount    补充的数量
+     */
+    @Override
+    @Transactional
+    public void addSeckillStock(Long voucherId, Integer amount) {
+        if (amount == null || amount <= 0) {
+            throw new BaseException("补充的库存数量必须大于 0");
+        }
+        // 1、增加数据库中的库存
+        int rows = seckillVoucherMapper.update(
+                null,
+                Wrappers.lambdaUpdate(SeckillVoucher.class)
+                        .setSql("stock = stock + {0}", amount)
+                        .eq(SeckillVoucher::getVoucherId, voucherId)
+        );
+        if (rows == 0) {
+            throw new BaseException("秒杀券不存在");
+        }
+        // 2、事务提交之后再增加 Redis 中的库存并清除售罄标记：提交失败时 Redis 不会多出数据库中没有的库存，
+        // 数据库的行锁也不用等待 Redis 的网络往返
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addRedisStock(voucherId, amount);
+                }
+            });
+        } else {
+            addRedisStock(voucherId, amount);
+        }
+    }
+
+    /**
+     * 增加 Redis 中的库存，并清除所有节点的售罄标记
+     * 失败时数据库中的库存已经增加，只会少卖，不会超卖
+     */
+    private void addRedisStock(Long voucherId, Integer amount) {
+        try {
+            seckillStockShards.add(voucherId, amount);
+            soldOutRegistry.reset(voucherId);
+        } catch (RuntimeException e) {
+            log.error("数据库库存已增加，同步到 Redis 失败，需要手动补充，voucherId：{}，数量：{}", voucherId, amount, e);
+        }
+    }
+
 }
@@ -0,0 +1,196 @@
+package com.lzx.task;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.lzx.entity.CacheOutbox;
+import com.lzx.mapper.CacheOutboxMapper;
+import com.lzx.redis.CacheClient;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 缓存失效发件箱（transactional outbox）
+ * 1. 业务方在修改数据的事务中调用 {@link #enqueue}，失效记录与业务数据一起提交或回滚，写路径上不访问 Redis
+ * 2. 事务提交后唤醒后台线程，按批读取到期的记录，相同的键合并成一次删除，一次 DEL 删除一批键并通知所有节点删除本地缓存
+ * 3. 延迟双删：第一次删除之后，间隔一段时间再删除一次，清理掉提交前后并发读请求回填的旧数据
+ * 4. 删除失败（Redis 不可用）时按指数退避重试，记录在数据库中，节点重启也不会丢失；
+ * 定期轮询兜底，事务提交后节点宕机的记录由其他节点处理
+ * 多个节点可能同时处理同一条记录，删除缓存是幂等的，不需要加锁
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class CacheOutboxRelay {
+
+    // 重试间隔的上限，单位秒
+    private static final long MAX_RETRY_DELAY_SECONDS = 60L;
+
+    private final CacheOutboxMapper cacheOutboxMapper;
+    private final CacheClient cacheClient;
+
+    // 轮询到期记录的间隔，单位毫秒
+    @Value("${zxdp.cache.outbox.poll-millis:1000}")
+    private long pollMillis;
+
+    // 每批处理的记录数
+    @Value("${zxdp.cache.outbox.batch-size:200}")
+    private int batchSize;
+
+    // 延迟双删的间隔，单位毫秒，需要比一次“查询数据库 + 写入缓存”的耗时长
+    @Value("${zxdp.cache.outbox.double-delete-millis:1000}")
+    private long doubleDeleteMillis;
+
+    // 已经提交了一次处理任务，还没开始执行，避免短时间内大量提交重复的任务
+    private final AtomicBoolean triggered = new AtomicBoolean();
+
+    // 处理发件箱的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 应用启动完成后，开启定期轮询
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduler.scheduleWithFixedDelay(this::relay, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入缓存失效记录，需要在修改数据的事务中调用，事务提交后立即处理
+     *
+     * @param key 需要删除的缓存键
+     */
+    public void enqueue(String key) {
+        CacheOutbox outbox = new CacheOutbox();
+        outbox.setCacheKey(key);
+        outbox.setDeleteCount(0);
+        outbox.setRetryCount(0);
+        outbox.setNextTime(LocalDateTime.now());
+        cacheOutboxMapper.insert(outbox);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    trigger();
+                }
+            });
+        } else {
+            trigger();
+        }
+    }
+
+    /**
+     * 唤醒后台线程处理到期的记录
+     */
+    private void trigger() {
+        if (triggered.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                triggered.set(false);
+                relay();
+            });
+        }
+    }
+
+    /**
+     * 处理到期的记录，一批处理满了继续处理下一批
+     */
+    private void relay() {
+        try {
+            List<CacheOutbox> batch;
+            do {
+                batch = cacheOutboxMapper.selectList(
+                        Wrappers.lambdaQuery(CacheOutbox.class)
+                                .le(CacheOutbox::getNextTime, LocalDateTime.now())
+                                .orderByAsc(CacheOutbox::getId)
+                                .last("LIMIT " + batchSize)
+                );
+                if (!batch.isEmpty() && !publish(batch)) {
+                    return;
+                }
+            } while (batch.size() == batchSize);
+        } catch (Exception e) {
+            log.warn("处理缓存失效发件箱失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除一批记录对应的缓存
+     *
+     * @param batch 到期的记录
+     * @return 是否删除成功
+     */
+    private boolean publish(List<CacheOutbox> batch) {
+        // 1. 相同的键只删除一次
+        Set<String> keys = new LinkedHashSet<>();
+        batch.forEach(outbox -> keys.add(outbox.getCacheKey()));
+
+        // 2. 删除缓存，失败时按指数退避重试
+        try {
+            cacheClient.invalidateAll(keys);
+        } catch (Exception e) {
+            log.warn("删除缓存失败，稍后重试，键数量：{}，原因：{}", keys.size(), e.getMessage());
+            batch.forEach(this::retryLater);
+            return false;
+        }
+
+        // 3. 第一次删除的记录等待延迟双删，第二次删除的记录处理完成
+        List<Long> firstDeleted = batch.stream().filter(outbox -> outbox.getDeleteCount() == 0).map(CacheOutbox::getId).toList();
+        List<Long> finished = batch.stream().filter(outbox -> outbox.getDeleteCount() > 0).map(CacheOutbox::getId).toList();
+        if (!firstDeleted.isEmpty()) {
+            cacheOutboxMapper.update(
+                    null,
+                    Wrappers.lambdaUpdate(CacheOutbox.class)
+                            .set(CacheOutbox::getDeleteCount, 1)
+                            .set(CacheOutbox::getNextTime, LocalDateTime.now().plus(doubleDeleteMillis, ChronoUnit.MILLIS))
+                            .in(CacheOutbox::getId, firstDeleted)
+            );
+            scheduler.schedule(this::trigger, doubleDeleteMillis, TimeUnit.MILLISECONDS);
+        }
+        if (!finished.isEmpty()) {
+            cacheOutboxMapper.deleteByIds(finished);
+        }
+        log.debug("缓存失效发件箱处理完成，记录数：{}，键数量：{}", batch.size(), keys.size());
+        return true;
+    }
+
+    /**
+     * 按指数退避推迟下一次处理的时间
+     */
+    private void retryLater(CacheOutbox outbox) {
+        int retryCount = outbox.getRetryCount() + 1;
+        long delaySeconds = Math.min(1L << Math.min(retryCount, 6), MAX_RETRY_DELAY_SECONDS);
+        cacheOutboxMapper.update(
+                null,
+                Wrappers.lambdaUpdate(CacheOutbox.class)
+                        .set(CacheOutbox::getRetryCount, retryCount)
+                        .set(CacheOutbox::getNextTime, LocalDateTime.now().plusSeconds(delaySeconds))
+                        .eq(CacheOutbox::getId, outbox.getId())
+        );
+    }
+}
@@ -0,0 +1,200 @@
+package com.lzx.task;
+
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.BooleanUtil;
+import com.lzx.entity.Shop;
+import com.lzx.entity.ShopType;
+import com.lzx.mapper.ShopMapper;
+import com.lzx.mapper.ShopTypeMapper;
+import com.lzx.redis.CacheClient;
+import com.lzx.redis.RedisConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时预热缓存：商户详情、商户类型列表、商户位置
+ * 1. ApplicationRunner 执行完之前，Spring Boot 不会把就绪状态切换为 ACCEPTING_TRAFFIC，
+ * 负载均衡在预热完成之前不会把流量转发到这个节点，避免新节点上线时大量请求同时回源数据库
+ * 2. 使用游标流式读取商户表，每读取一批就用 pipeline 写入 Redis，内存中只保留一批数据
+ * 3. 商户位置先写入临时键，全部写完后再改名替换，预热期间查询附近商户不会读到不完整的数据
+ * 4. 多个节点同时启动时，只有拿到预热锁的节点读取数据库，其他节点直接跳过
+ * 5. 数据库或 Redis 不可用时只记录日志，不影响应用启动，缓存未命中时仍然会回源数据库
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+    // 释放锁的 Lua 脚本
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+
+    static {
+        UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("scripts/unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+    }
+
+    private final ShopMapper shopMapper;
+    private final ShopTypeMapper shopTypeMapper;
+    private final CacheClient cacheClient;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    // 是否在启动时预热缓存
+    @Value("${zxdp.warm-up.enabled:true}")
+    private boolean enabled;
+
+    // 每批写入 Redis 的商户数量
+    @Value("${zxdp.warm-up.batch-size:500}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        // 1. 获取预热锁，其他节点正在预热时直接跳过
+        String token = UUID.randomUUID().toString(true);
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(RedisConstants.LOCK_WARM_UP_KEY, token, RedisConstants.LOCK_WARM_UP_TTL, TimeUnit.MINUTES);
+            if (!BooleanUtil.isTrue(locked)) {
+                log.info("其他节点正在预热缓存，跳过");
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("获取缓存预热锁失败，跳过预热：{}", e.getMessage());
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            // 2. 预热商户类型列表
+            warmUpShopTypes();
+            // 3. 预热商户详情和商户位置
+            int count = warmUpShops();
+            log.info("缓存预热完成，商户数：{}，耗时：{} ms", count, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("缓存预热失败，耗时：{} ms", System.currentTimeMillis() - start, e);
+        } finally {
+            // 4. 释放预热锁
+            try {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(RedisConstants.LOCK_WARM_UP_KEY), token);
+            } catch (Exception e) {
+                log.warn("释放缓存预热锁失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 预热商户类型列表
+     */
+    private void warmUpShopTypes() {
+        List<ShopType> shopTypeList = shopTypeMapper.selectList(null);
+        if (shopTypeList.isEmpty()) {
+            return;
+        }
+        cacheClient.setList(RedisConstants.CACHE_SHOP_TYPE_KEY, shopTypeList, RedisConstants.CACHE_SHOP_TYPE_TTL, TimeUnit.DAYS);
+        log.info("商户类型预热完成，数量：{}", shopTypeList.size());
+    }
+
+    /**
+     * 预热商户详情和商户位置
+     *
+     * @return 预热的商户数量
+     */
+    private int warmUpShops() {
+        // 游标只能在连接打开期间遍历，使用只读事务保持连接
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        // 已经写入过的商户类型，第一次写入某个类型之前先清空它的临时键
+        Set<Long> typeIds = new HashSet<>();
+        Integer count = transactionTemplate.execute(status -> {
+            int total = 0;
+            try (Cursor<Shop> cursor = shopMapper.scanAll()) {
+                List<Shop> batch = new ArrayList<>(batchSize);
+                for (Shop shop : cursor) {
+                    batch.add(shop);
+                    if (batch.size() >= batchSize) {
+                        total += writeBatch(batch, typeIds);
+                        log.info("缓存预热中，已写入商户数：{}", total);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    total += writeBatch(batch, typeIds);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return total;
+        });
+
+        // 全部写完后，用临时键替换正式的商户位置键
+        for (Long typeId : typeIds) {
+            String key = RedisConstants.SHOP_GEO_KEY + typeId;
+            stringRedisTemplate.rename(key + RedisConstants.SHOP_GEO_WARM_UP_SUFFIX, key);
+        }
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 写入一批商户：商户详情写入逻辑过期缓存，商户位置写入临时键
+     *
+     * @param batch   商户列表
+     * @param typeIds 已经写入过的商户类型
+     * @return 写入的商户数量
+     */
+    private int writeBatch(List<Shop> batch, Set<Long> typeIds) {
+        // 1. 商户详情
+        Map<String, Shop> shops = new HashMap<>(batch.size());
+        // 2. 按类型分组的商户位置
+        Map<Long, Map<String, Point>> locations = new HashMap<>();
+        for (Shop shop : batch) {
+            shops.put(RedisConstants.CACHE_SHOP_KEY + shop.getId(), shop);
+            if (shop.getTypeId() != null && shop.getX() != null && shop.getY() != null) {
+                locations.computeIfAbsent(shop.getTypeId(), key -> new HashMap<>())
+                        .put(shop.getId().toString(), new Point(shop.getX(), shop.getY()));
+            }
+        }
+        cacheClient.setBatchWithLogicalExpire(shops, RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
+
+        // 3. 每个类型一条 GEOADD，使用 pipeline 一次发送
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            locations.forEach((typeId, members) -> {
+                String tempKey = RedisConstants.SHOP_GEO_KEY + typeId + RedisConstants.SHOP_GEO_WARM_UP_SUFFIX;
+                if (typeIds.add(typeId)) {
+                    stringConnection.del(tempKey);
+                }
+                stringConnection.geoAdd(tempKey, members);
+            });
+            return null;
+        });
+        return batch.size();
+    }
+}
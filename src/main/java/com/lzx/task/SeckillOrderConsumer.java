@@ -0,0 +1,283 @@
+package com.lzx.task;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.lzx.entity.VoucherOrder;
+import com.lzx.redis.RedisConstants;
+import com.lzx.service.VoucherOrderService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 秒杀订单消费者
+ * 秒杀下单只在 Redis 中扣减库存并把订单写入 stream 队列，这里在后台把订单批量写入数据库：
+ * 1. 每个节点启动多个消费者线程，消费者名称为“主机名-序号”，同一个消费者组内的消费者分摊消息
+ * 2. 每次读取一批消息：读到第一条之后，在等待时间内继续读取，直到凑满一批或者等待时间结束
+ * 3. 一批订单在一个事务中保存（按秒杀券分组扣减库存、多行 INSERT），成功后一次 XACK 确认整批消息
+ * 4. 整批保存失败时逐条重试，仍然失败的消息留在 pending-list 中，由 {@link SeckillOrderRecovery} 按退避时间重新投递
+ * 保存订单时会过滤已经保存过的订单，消息重复投递不会重复下单
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class SeckillOrderConsumer {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final VoucherOrderService voucherOrderService;
+
+    // 是否启动订单消费者
+    @Value("${zxdp.seckill.order-consumer.enabled:true}")
+    private boolean enabled;
+
+    // 消费者组名称
+    @Value("${zxdp.seckill.order-consumer.group:g1}")
+    private String group;
+
+    // 每个节点的消费者线程数
+    @Value("${zxdp.seckill.order-consumer.consumers:2}")
+    private int consumers;
+
+    // 每批最多处理的消息数
+    @Value("${zxdp.seckill.order-consumer.batch-size:100}")
+    private int batchSize;
+
+    // 读到第一条消息之后，继续等待凑满一批的时间，单位毫秒，0 表示不等待
+    @Value("${zxdp.seckill.order-consumer.linger-millis:50}")
+    private long lingerMillis;
+
+    // 没有消息时阻塞等待的时间，单位毫秒，必须比 Redis 命令超时时间短
+    @Value("${zxdp.seckill.order-consumer.block-millis:500}")
+    private long blockMillis;
+
+    // 出现异常后暂停的时间，单位毫秒
+    @Value("${zxdp.seckill.order-consumer.error-backoff-millis:1000}")
+    private long errorBackoffMillis;
+
+    // 消费者组是否已经创建
+    private volatile boolean groupReady;
+
+    private volatile boolean running;
+
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 应用启动完成后，启动消费者线程
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled || consumers <= 0) {
+            log.info("秒杀订单消费者未启动");
+            return;
+        }
+        running = true;
+        String prefix = consumerPrefix();
+        for (int i = 0; i < consumers; i++) {
+            String name = prefix + "-" + i;
+            Thread thread = new Thread(() -> consume(name), "seckill-order-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        log.info("秒杀订单消费者已启动，消费者组：{}，消费者：{}-0 ~ {}-{}，每批：{}，等待时间：{} ms",
+                group, prefix, prefix, consumers - 1, batchSize, lingerMillis);
+    }
+
+    /**
+     * 消费者线程的主循环
+     *
+     * @param name 消费者名称
+     */
+    private void consume(String name) {
+        Consumer consumer = Consumer.from(group, name);
+        while (running) {
+            try {
+                if (!groupReady) {
+                    createGroup();
+                }
+                List<MapRecord<String, Object, Object>> records = readBatch(consumer);
+                if (!records.isEmpty()) {
+                    handleBatch(records);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                String message = ExceptionUtil.getRootCauseMessage(e);
+                if (StrUtil.contains(message, "NOGROUP")) {
+                    // 队列被删除，重新创建消费者组
+                    groupReady = false;
+                }
+                log.error("处理秒杀订单异常，消费者：{}，原因：{}", name, message);
+                try {
+                    Thread.sleep(errorBackoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.info("秒杀订单消费者 {} 已停止", name);
+    }
+
+    /**
+     * 创建消费者组，队列不存在时一起创建，消费者组已经存在时忽略
+     * XGROUP CREATE streams.order g1 0 MKSTREAM
+     */
+    private synchronized void createGroup() {
+        if (groupReady) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForStream().createGroup(RedisConstants.SECKILL_STREAMS_ORDER_KEY, ReadOffset.from("0"), group);
+            log.info("已创建秒杀订单消费者组：{}", group);
+        } catch (Exception e) {
+            if (!StrUtil.contains(ExceptionUtil.getRootCauseMessage(e), "BUSYGROUP")) {
+                throw e;
+            }
+        }
+        groupReady = true;
+    }
+
+    /**
+     * 读取一批新消息
+     * XREADGROUP GROUP g1 CONSUMER name COUNT batchSize BLOCK blockMillis STREAMS streams.order >
+     * 读到第一条消息之后，在等待时间内继续读取，直到凑满一批
+     *
+     * @param consumer 消费者
+     * @return 消息列表，没有消息时为空
+     */
+    private List<MapRecord<String, Object, Object>> readBatch(Consumer consumer) {
+        List<MapRecord<String, Object, Object>> batch = new ArrayList<>(read(consumer, batchSize, blockMillis));
+        if (batch.isEmpty() || lingerMillis <= 0) {
+            return batch;
+        }
+        long deadline = System.currentTimeMillis() + lingerMillis;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            // BLOCK 0 表示一直阻塞，至少等待 1 ms
+            batch.addAll(read(consumer, batchSize - batch.size(), Math.max(1L, remaining)));
+        }
+        return batch;
+    }
+
+    // read 的 StreamOffset 参数是泛型可变参数，调用时会创建泛型数组，这里只传入一个偏移量，是安全的
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> read(Consumer consumer, int count, long block) {
+        StreamOffset<String> offset = StreamOffset.create(RedisConstants.SECKILL_STREAMS_ORDER_KEY, ReadOffset.lastConsumed());
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                consumer,
+                StreamReadOptions.empty().count(count).block(Duration.ofMillis(block)),
+                offset
+        );
+        return records == null ? List.of() : records;
+    }
+
+    /**
+     * 处理一批消息：整批在一个事务中保存，成功后一次确认；失败时逐条重试
+     *
+     * @param records 消息列表
+     */
+    void handleBatch(List<MapRecord<String, Object, Object>> records) {
+        // 1. 解析订单，无法解析的消息记录日志后直接确认，避免一直留在 pending-list 中
+        List<VoucherOrder> orders = new ArrayList<>(records.size());
+        List<RecordId> recordIds = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            VoucherOrder voucherOrder = parse(record.getValue());
+            if (voucherOrder == null) {
+                log.error("无法解析的秒杀订单消息，直接确认：{} {}", record.getId(), record.getValue());
+            } else {
+                orders.add(voucherOrder);
+            }
+            recordIds.add(record.getId());
+        }
+
+        // 2. 整批保存，一次确认
+        try {
+            int saved = voucherOrderService.saveSeckillOrders(orders);
+            acknowledge(recordIds);
+            log.debug("秒杀订单批量保存完成，消息数：{}，保存订单数：{}", records.size(), saved);
+            return;
+        } catch (Exception e) {
+            log.warn("秒杀订单批量保存失败，逐条重试，消息数：{}，原因：{}", records.size(), ExceptionUtil.getRootCauseMessage(e));
+        }
+
+        // 3. 逐条重试，成功的一起确认，失败的（例如数据库库存不足）不确认，留在 pending-list 中，由恢复任务重试或者移入死信队列
+        List<RecordId> succeeded = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            VoucherOrder voucherOrder = parse(record.getValue());
+            try {
+                if (voucherOrder != null) {
+                    voucherOrderService.saveSeckillOrders(List.of(voucherOrder));
+                }
+                succeeded.add(record.getId());
+            } catch (Exception e) {
+                log.error("保存秒杀订单失败，消息留在 pending-list 中：{}", record.getId(), e);
+            }
+        }
+        if (!succeeded.isEmpty()) {
+            acknowledge(succeeded);
+        }
+    }
+
+    /**
+     * 一次 XACK 确认多条消息
+     * XACK streams.order g1 id1 id2 ...
+     */
+    private void acknowledge(List<RecordId> recordIds) {
+        stringRedisTemplate.opsForStream().acknowledge(
+                RedisConstants.SECKILL_STREAMS_ORDER_KEY,
+                group,
+                recordIds.toArray(new RecordId[0])
+        );
+    }
+
+    /**
+     * 解析订单消息，缺少订单 ID、用户 ID 或秒杀券 ID 时返回 null
+     */
+    private static VoucherOrder parse(Map<Object, Object> value) {
+        VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(value, new VoucherOrder(), true);
+        if (voucherOrder.getId() == null || voucherOrder.getUserId() == null || voucherOrder.getVoucherId() == null) {
+            return null;
+        }
+        return voucherOrder;
+    }
+
+    /**
+     * 消费者名称的前缀，优先使用主机名
+     */
+    static String consumerPrefix() {
+        String hostName = NetUtil.getLocalHostName();
+        return StrUtil.isBlank(hostName) ? IdUtil.fastSimpleUUID() : hostName;
+    }
+}
@@ -0,0 +1,259 @@
+package com.lzx.task;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import com.lzx.redis.RedisConstants;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 秒杀订单 pending-list 恢复
+ * 消费者处理失败、或者消费者所在节点宕机时，消息一直留在消费者组的 pending-list 中，这里定期把它们找出来重新处理：
+ * 1. XPENDING 按 ID 顺序分页扫描整个消费者组的 pending-list，得到每条消息的空闲时间和投递次数
+ * 2. 每条消息按投递次数指数退避：空闲时间超过 最小空闲时间 × 2^(投递次数 - 1)（有上限）才重新投递
+ * 3. 到期的消息用 XCLAIM 转移给本节点的恢复消费者（投递次数加一），交给订单消费者批量处理
+ * 4. 投递次数达到上限的消息移到死信队列，再从 pending-list 中确认掉，不会一直重试
+ * 5. 死信队列中的消息排查处理后，通过 {@link #replayDeadLetters} 按批放回订单队列
+ * XCLAIM 带上最小空闲时间，多个节点同时扫描时同一条消息只会被一个节点取走
+ * 没有使用 XAUTOCLAIM：它只能按统一的空闲时间过滤，无法按每条消息的投递次数退避，Spring Data Redis 也没有提供对应的命令
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor(onConstructor_ = {@Autowired})
+public class SeckillOrderRecovery {
+
+    // 死信消息中记录原消息 ID、投递次数和最后一个消费者的字段
+    private static final String ORIGIN_ID_FIELD = "originId";
+    private static final String DELIVERIES_FIELD = "deliveries";
+    private static final String CONSUMER_FIELD = "consumer";
+    // 每次最多重放的死信消息数
+    private static final int MAX_REPLAY_COUNT = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final SeckillOrderConsumer seckillOrderConsumer;
+
+    // 是否开启 pending-list 恢复
+    @Value("${zxdp.seckill.order-recovery.enabled:true}")
+    private boolean enabled;
+
+    // 消费者组名称，与订单消费者相同
+    @Value("${zxdp.seckill.order-consumer.group:g1}")
+    private String group;
+
+    // 扫描 pending-list 的间隔，单位毫秒
+    @Value("${zxdp.seckill.order-recovery.poll-millis:5000}")
+    private long pollMillis;
+
+    // 第一次重新投递前的最小空闲时间，单位毫秒，需要比一批订单的正常处理时间长得多
+    @Value("${zxdp.seckill.order-recovery.min-idle-millis:30000}")
+    private long minIdleMillis;
+
+    // 退避后空闲时间的上限，单位毫秒
+    @Value("${zxdp.seckill.order-recovery.max-idle-millis:600000}")
+    private long maxIdleMillis;
+
+    // 最大投递次数，达到后移到死信队列
+    @Value("${zxdp.seckill.order-recovery.max-deliveries:5}")
+    private long maxDeliveries;
+
+    // 每页扫描的消息数
+    @Value("${zxdp.seckill.order-recovery.scan-count:100}")
+    private int scanCount;
+
+    // 每次扫描的最大页数，避免 pending-list 很长时一次扫描占用太久
+    @Value("${zxdp.seckill.order-recovery.max-pages:10}")
+    private int maxPages;
+
+    // 本节点的恢复消费者名称
+    private final String consumerName = SeckillOrderConsumer.consumerPrefix() + "-recovery";
+
+    // 扫描 pending-list 的线程
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "seckill-order-recovery");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 应用启动完成后，开启定期扫描
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            log.info("秒杀订单 pending-list 恢复未开启");
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::recover, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按 ID 顺序把死信队列中最早的一批消息放回订单队列，去掉死信相关的字段，放回成功后从死信队列中删除
+     * 保存订单时会过滤已经保存过的订单，重放已经处理过的消息不会重复下单
+     *
+     * @param count 本批最多重放的消息数
+     * @return 实际重放的消息数
+     */
+    public int replayDeadLetters(int count) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().range(
+                RedisConstants.SECKILL_STREAMS_ORDER_DLQ_KEY,
+                Range.unbounded(),
+                Limit.limit().count(Math.max(1, Math.min(count, MAX_REPLAY_COUNT)))
+        );
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<String, String> value = new LinkedHashMap<>();
+            record.getValue().forEach((field, fieldValue) -> value.put(String.valueOf(field), String.valueOf(fieldValue)));
+            value.remove(ORIGIN_ID_FIELD);
+            value.remove(DELIVERIES_FIELD);
+            value.remove(CONSUMER_FIELD);
+            stringRedisTemplate.opsForStream().add(
+                    StreamRecords.string(value).withStreamKey(RedisConstants.SECKILL_STREAMS_ORDER_KEY));
+            stringRedisTemplate.opsForStream().delete(RedisConstants.SECKILL_STREAMS_ORDER_DLQ_KEY, record.getId());
+        }
+        log.info("已重放秒杀订单死信消息，数量：{}", records.size());
+        return records.size();
+    }
+
+    /**
+     * 查询死信队列中的消息数
+     *
+     * @return 消息数
+     */
+    public long deadLetterSize() {
+        Long size = stringRedisTemplate.opsForStream().size(RedisConstants.SECKILL_STREAMS_ORDER_DLQ_KEY);
+        return size == null ? 0L : size;
+    }
+
+    // --------------------- 私有方法 ---------------------
+
+    /**
+     * 分页扫描 pending-list，重新投递到期的消息，把投递次数达到上限的消息移到死信队列
+     */
+    private void recover() {
+        try {
+            Range<String> range = Range.unbounded();
+            for (int page = 0; page < maxPages; page++) {
+                PendingMessages pendingMessages = stringRedisTemplate.opsForStream().pending(
+                        RedisConstants.SECKILL_STREAMS_ORDER_KEY, group, range, scanCount);
+                if (pendingMessages.isEmpty()) {
+                    return;
+                }
+                List<RecordId> retryIds = new ArrayList<>();
+                Map<RecordId, PendingMessage> deadLetters = new LinkedHashMap<>();
+                for (PendingMessage pendingMessage : pendingMessages) {
+                    long deliveries = pendingMessage.getTotalDeliveryCount();
+                    if (pendingMessage.getElapsedTimeSinceLastDelivery().toMillis() < requiredIdleMillis(deliveries)) {
+                        continue;
+                    }
+                    if (deliveries >= maxDeliveries) {
+                        deadLetters.put(pendingMessage.getId(), pendingMessage);
+                    } else {
+                        retryIds.add(pendingMessage.getId());
+                    }
+                }
+                if (!retryIds.isEmpty()) {
+                    retry(retryIds);
+                }
+                if (!deadLetters.isEmpty()) {
+                    moveToDeadLetter(deadLetters);
+                }
+                if (pendingMessages.size() < scanCount) {
+                    return;
+                }
+                // 下一页从这一页最后一条消息之后开始
+                String lastId = pendingMessages.get(pendingMessages.size() - 1).getIdAsString();
+                range = Range.rightUnbounded(Range.Bound.exclusive(lastId));
+            }
+        } catch (Exception e) {
+            log.warn("扫描秒杀订单 pending-list 失败：{}", ExceptionUtil.getRootCauseMessage(e));
+        }
+    }
+
+    /**
+     * 重新投递前需要的空闲时间：最小空闲时间 × 2^(投递次数 - 1)，不超过上限
+     *
+     * @param deliveries 已投递次数
+     * @return 空闲时间，单位毫秒
+     */
+    private long requiredIdleMillis(long deliveries) {
+        int shift = (int) Math.min(Math.max(deliveries - 1, 0), 20);
+        return Math.min(minIdleMillis << shift, maxIdleMillis);
+    }
+
+    /**
+     * 把到期的消息转移给恢复消费者，交给订单消费者处理，处理成功的消息会被确认
+     * XCLAIM streams.order g1 <恢复消费者> <最小空闲时间> id1 id2 ...
+     */
+    private void retry(List<RecordId> ids) {
+        List<MapRecord<String, Object, Object>> records = claim(ids);
+        if (records.isEmpty()) {
+            return;
+        }
+        log.info("重新投递秒杀订单消息，数量：{}", records.size());
+        seckillOrderConsumer.handleBatch(records);
+    }
+
+    /**
+     * 把投递次数达到上限的消息写入死信队列，写入成功后从 pending-list 中确认
+     * 先 XCLAIM 取回消息内容，同时避免与其他节点重复移动
+     */
+    private void moveToDeadLetter(Map<RecordId, PendingMessage> deadLetters) {
+        List<MapRecord<String, Object, Object>> records = claim(new ArrayList<>(deadLetters.keySet()));
+        for (MapRecord<String, Object, Object> record : records) {
+            PendingMessage pendingMessage = deadLetters.get(record.getId());
+            Map<String, String> value = new LinkedHashMap<>();
+            record.getValue().forEach((field, fieldValue) -> value.put(String.valueOf(field), String.valueOf(fieldValue)));
+            value.put(ORIGIN_ID_FIELD, record.getId().getValue());
+            value.put(DELIVERIES_FIELD, Long.toString(pendingMessage.getTotalDeliveryCount()));
+            value.put(CONSUMER_FIELD, pendingMessage.getConsumerName());
+            stringRedisTemplate.opsForStream().add(
+                    StreamRecords.string(value).withStreamKey(RedisConstants.SECKILL_STREAMS_ORDER_DLQ_KEY));
+            stringRedisTemplate.opsForStream().acknowledge(RedisConstants.SECKILL_STREAMS_ORDER_KEY, group, record.getId());
+            log.error("秒杀订单消息投递 {} 次仍然失败，已移到死信队列：{} {}",
+                    pendingMessage.getTotalDeliveryCount(), record.getId(), record.getValue());
+        }
+    }
+
+    /**
+     * 把消息转移给本节点的恢复消费者，其他节点刚刚取走的消息（空闲时间不够）不会被转移
+     */
+    private List<MapRecord<String, Object, Object>> claim(List<RecordId> ids) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().claim(
+                RedisConstants.SECKILL_STREAMS_ORDER_KEY,
+                group,
+                consumerName,
+                XClaimOptions.minIdle(Duration.ofMillis(minIdleMillis)).ids(ids)
+        );
+        return records == null ? List.of() : records;
+    }
+}
@@ -0,0 +1,32 @@
+-- 布隆过滤器新增元素：写入位图并累加元素个数，有节点正在重建时同时写入重建中的位图，只有一次网络往返
+-- 1、数据 key
+-- 位图
+local bitsKey = KEYS[1]
+-- 元素个数，构建完成后才存在
+local countKey = KEYS[2]
+-- 重建中的位图（可选）
+local rebuildKey = KEYS[3]
+-- 重建中的元素个数，存在表示有节点正在重建（可选）
+local rebuildCountKey = KEYS[4]
+
+-- 2、参数：ARGV 是所有位偏移量
+-- 把所有位置为 1，至少有一位从 0 变为 1 时元素个数加一，重复写入同一个 ID 不会重复计数
+local function add(bits, count)
+    local changed = 0
+    for i = 1, #ARGV do
+        if (redis.call('setbit', bits, ARGV[i], 1) == 0) then
+            changed = 1
+        end
+    end
+    if (changed == 1 and redis.call('exists', count) == 1) then
+        redis.call('incr', count)
+    end
+    return changed
+end
+
+-- 3、业务逻辑
+local changed = add(bitsKey, countKey)
+if (rebuildKey ~= nil and redis.call('exists', rebuildCountKey) == 1) then
+    add(rebuildKey, rebuildCountKey)
+end
+return changed
@@ -0,0 +1,24 @@
+-- 布隆过滤器重建完成：用重建好的位图和元素个数原子地替换当前的，查询方不会看到半成品
+-- 1、数据 key
+-- 位图
+local bitsKey = KEYS[1]
+-- 元素个数
+local countKey = KEYS[2]
+-- 重建好的位图
+local rebuildKey = KEYS[3]
+-- 重建好的元素个数
+local rebuildCountKey = KEYS[4]
+
+-- 2、业务逻辑
+if (redis.call('exists', rebuildKey) == 1) then
+    redis.call('rename', rebuildKey, bitsKey)
+else
+    -- 没有任何数据，说明表是空的
+    redis.call('del', bitsKey)
+end
+-- 元素个数写在位图旁边，其他节点据此判断是否构建完成、估算误判率
+local count = redis.call('get', rebuildCountKey) or '0'
+redis.call('set', countKey, count)
+-- 删除重建标记，之后新增的元素不再写入重建中的位图
+redis.call('del', rebuildCountKey)
+return tonumber(count)
@@ -0,0 +1,14 @@
+-- 可重入锁
+-- 续期锁（看门狗）
+local key = KEYS[1]         -- 锁的key
+local threadId = ARGV[1]    -- 线程唯一标识
+local releaseTime = ARGV[2] -- 锁的自动释放时间
+
+-- 判断锁是否还被自己持有
+if (redis.call('hexists', key, threadId) == 1) then
+    -- 还被自己持有，重置有效期，返回 1
+    redis.call('expire', key, releaseTime)
+    return 1
+end
+-- 锁已经不被自己持有（过期或者被删除），返回 0
+return 0
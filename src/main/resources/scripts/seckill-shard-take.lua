@@ -0,0 +1,11 @@
+-- 分片库存秒杀：主分片售罄后，从其他分片扣减一个库存
+-- 1、数据 key：分片的库存 key
+local stockKey = KEYS[1]
+
+-- 2、业务逻辑：还有库存就扣减，返回 0；否则返回 1 表示这个分片已售罄
+local stock = tonumber(redis.call('get', stockKey))
+if (stock ~= nil and stock > 0) then
+    redis.call('decr', stockKey)
+    return 0
+end
+return 1
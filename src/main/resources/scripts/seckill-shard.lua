@@ -0,0 +1,49 @@
+-- 分片库存秒杀：在用户的主分片上判断抢购时间、一人一单、占住购买资格并扣减库存
+-- 主分片的库存键和订单键使用相同的 hash tag，在集群中位于同一个槽，可以在一个脚本中原子执行
+-- 元数据键不在这个槽中，开始时间、结束时间由调用方从本地缓存中读取后作为参数传入
+-- 1、数据 key
+-- 1.1、主分片的库存 key
+local stockKey = KEYS[1]
+-- 1.2、主分片的订单 key，里面存的是主分片是这个分片的已购买用户 ID 集合
+local orderKey = KEYS[2]
+-- 2、参数列表
+-- 2.1、用户 ID
+local userId = ARGV[1]
+-- 2.2、开始时间、结束时间、键的过期时间（毫秒时间戳），0 表示没有元数据，不判断
+local beginTime = tonumber(ARGV[2])
+local endTime = tonumber(ARGV[3])
+local expireAt = tonumber(ARGV[4])
+
+-- 3、业务逻辑
+-- 3.1、判断秒杀券是否在抢购时间内，使用 Redis 服务器的时间
+if (beginTime > 0) then
+    local time = redis.call('time')
+    local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+    if (now < beginTime) then
+        return 3
+    end
+    if (now > endTime) then
+        return 4
+    end
+end
+-- 3.2、判断用户是否已经购买过该秒杀券
+if (redis.call('sismember', orderKey, userId) == 1) then
+    return 2
+end
+-- 3.3、秒杀券不存在
+local stock = tonumber(redis.call('get', stockKey))
+if (stock == nil) then
+    return 1
+end
+-- 3.4、占住购买资格，同一个用户的并发请求只有一个能继续，抢购结束后和其他键一起过期
+redis.call('sadd', orderKey, userId)
+if (expireAt > 0) then
+    redis.call('pexpireat', orderKey, expireAt)
+end
+-- 3.5、主分片还有库存，扣减库存，返回 0 表示购买成功
+if (stock > 0) then
+    redis.call('decr', stockKey)
+    return 0
+end
+-- 3.6、主分片已售罄，返回 5，由调用方到其他分片扣减库存，全部售罄时撤销购买资格
+return 5
@@ -12,23 +12,46 @@ local orderId = ARGV[3]
 local stockKey = 'seckill:stock:' .. voucherId
 -- 2.2、秒杀券订单 key，里面存的是已购买秒杀券的用户 ID 集合
 local orderKey = 'seckill:order:' .. voucherId
+-- 2.3、秒杀券元数据 key，里面存的是开始时间、结束时间和键的过期时间（毫秒时间戳）
+local metaKey = 'seckill:meta:' .. voucherId
 
 -- 3、业务逻辑
--- 3.1、判断秒杀券是否还有库存
-if (tonumber(redis.call('get', stockKey)) <= 0) then
+-- 3.1、判断秒杀券是否在抢购时间内，使用 Redis 服务器的时间，没有元数据的秒杀券（之前创建的）不判断
+local meta = redis.call('hmget', metaKey, 'begin', 'end', 'expireAt')
+local beginTime = tonumber(meta[1])
+local endTime = tonumber(meta[2])
+local expireAt = tonumber(meta[3])
+if (beginTime ~= nil and endTime ~= nil) then
+    local time = redis.call('time')
+    local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+    if (now < beginTime) then
+        -- 秒杀券未开始
+        return 3
+    end
+    if (now > endTime) then
+        -- 秒杀券已结束
+        return 4
+    end
+end
+-- 3.2、判断秒杀券是否还有库存
+local stock = tonumber(redis.call('get', stockKey))
+if (stock == nil or stock <= 0) then
     -- 秒杀券不存在或已售罄
     return 1
 end
--- 3.2、判断用户是否已经购买过该秒杀券
+-- 3.3、判断用户是否已经购买过该秒杀券
 if (redis.call('sismember', orderKey, userId) == 1) then
     -- 用户已经购买过该秒杀券
     return 2
 end
--- 3.3、秒杀券库存减一
+-- 3.4、秒杀券库存减一
 redis.call('decr', stockKey)
--- 3.4、将用户 ID 加入已购买秒杀券的用户 ID 集合
+-- 3.5、将用户 ID 加入已购买秒杀券的用户 ID 集合，抢购结束后和其他键一起过期
 redis.call('sadd', orderKey, userId)
--- 3.5、发送消息到 stream 队列
+if (expireAt ~= nil) then
+    redis.call('pexpireat', orderKey, expireAt)
+end
+-- 3.6、发送消息到 stream 队列
 redis.call('xadd', 'streams.order', '*', 'userId', userId, 'voucherId', voucherId, 'id', orderId)
--- 3.6、返回 0 表示秒杀券购买成功
+-- 3.7、返回 0 表示秒杀券购买成功
 return 0
@@ -0,0 +1,11 @@
+-- 释放工作节点 ID 的租约：比较持有者标识和租约中的是否一致
+if (redis.call('get', KEYS[1]) == ARGV[1]) then
+    -- 记录已经分配到的最大时间戳，只增不减，下一个持有者的时钟超过它之后才能生成 ID
+    local mark = tonumber(redis.call('get', KEYS[2]) or '0')
+    if (tonumber(ARGV[2]) > mark) then
+        redis.call('set', KEYS[2], ARGV[2])
+    end
+    -- 删除租约
+    return redis.call('del', KEYS[1])
+end
+return 0
@@ -0,0 +1,6 @@
+-- 工作节点 ID 续约：比较持有者标识和租约中的是否一致
+if (redis.call('get', KEYS[1]) == ARGV[1]) then
+    -- 是自己的租约，延长过期时间
+    return redis.call('expire', KEYS[1], ARGV[2])
+end
+return 0
@@ -0,0 +1,13 @@
+-- 缓存失效发件箱：与业务数据在同一个事务中写入，提交后由后台任务删除对应的缓存
+CREATE TABLE IF NOT EXISTS `tb_cache_outbox`
+(
+    `id`           bigint unsigned NOT NULL AUTO_INCREMENT COMMENT '主键',
+    `cache_key`    varchar(255)    NOT NULL COMMENT '需要删除的缓存键',
+    `delete_count` tinyint         NOT NULL DEFAULT 0 COMMENT '已完成的删除次数：0 还没删除，1 第一次删除已完成、等待延迟双删',
+    `retry_count`  int             NOT NULL DEFAULT 0 COMMENT '失败重试次数',
+    `next_time`    datetime(3)     NOT NULL COMMENT '下一次处理的时间',
+    `create_time`  timestamp       NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (`id`) USING BTREE,
+    KEY `idx_next_time` (`next_time`) USING BTREE
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='缓存失效发件箱';
@@ -0,0 +1,164 @@
+package com.lzx.redis;
+
+import com.lzx.entity.Shop;
+import com.lzx.exception.BaseException;
+import com.lzx.redis.codec.CacheCodecs;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * CacheClient 在 Redis 不可用时的降级：返回本地旧副本，没有旧副本的在并发限制内回源数据库
+ */
+class CacheClientFallbackTest {
+
+    private static final String KEY_PREFIX = "cache:shop:";
+
+    private ValueOperations<String, byte[]> valueOperations;
+    private LocalCache localCache;
+    private RedisCircuitBreaker breaker;
+    private DbFallbackLimiter dbFallbackLimiter;
+    private CacheClient cacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, byte[]> cacheRedisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(cacheRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("connection refused"));
+        when(valueOperations.multiGet(anyCollection())).thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        localCache = new LocalCache(mock(StringRedisTemplate.class), mock(RedisMessageListenerContainer.class));
+
+        // 默认不会打开，需要打开的测试再调小最小调用次数
+        breaker = RedisCircuitBreakerFixture.create(100L);
+
+        dbFallbackLimiter = new DbFallbackLimiter();
+        ReflectionTestUtils.setField(dbFallbackLimiter, "permits", 2);
+        ReflectionTestUtils.setField(dbFallbackLimiter, "waitMillis", 10L);
+        dbFallbackLimiter.init();
+
+        cacheClient = new CacheClient(
+                mock(StringRedisTemplate.class),
+                cacheRedisTemplate,
+                mock(CacheCodecs.class),
+                localCache,
+                new SingleFlight(),
+                mock(CacheRefreshExecutor.class),
+                mock(HotKeyDetector.class),
+                mock(CacheMetrics.class),
+                breaker,
+                dbFallbackLimiter,
+                mock(RedisLockClient.class)
+        );
+    }
+
+    @Test
+    void servesStaleCopyWhenRedisFails() {
+        Shop cached = shop(1L, "103茶餐厅");
+        localCache.putStale(KEY_PREFIX + 1, cached);
+
+        Shop shop = query(1L, id -> fail("有旧副本时不应该回源数据库"));
+
+        assertEquals("103茶餐厅", shop.getName());
+        // 返回的是拷贝，调用方修改不会影响旧副本
+        assertNotSame(cached, shop);
+        shop.setName("changed");
+        assertEquals("103茶餐厅", query(1L, id -> fail("有旧副本时不应该回源数据库")).getName());
+    }
+
+    @Test
+    void loadsFromDatabaseOnceWhenNoStaleCopy() {
+        AtomicInteger loads = new AtomicInteger();
+
+        Shop first = query(2L, id -> {
+            loads.incrementAndGet();
+            return shop(id, "蔡馬洪涛烤肉");
+        });
+        Shop second = query(2L, id -> {
+            loads.incrementAndGet();
+            return shop(id, "蔡馬洪涛烤肉");
+        });
+
+        assertEquals("蔡馬洪涛烤肉", first.getName());
+        assertEquals("蔡馬洪涛烤肉", second.getName());
+        // 第一次回源的结果保存为旧副本，之后 Redis 仍然不可用时直接使用
+        assertEquals(1, loads.get());
+        assertEquals(1, dbFallbackLimiter.getAcquiredCount());
+    }
+
+    @Test
+    void shedsDatabaseLoadsWhenLimiterIsExhausted() {
+        ReflectionTestUtils.setField(dbFallbackLimiter, "permits", 0);
+        dbFallbackLimiter.init();
+
+        assertThrows(BaseException.class, () -> query(3L, id -> shop(id, "新白鹿")));
+        assertEquals(1, dbFallbackLimiter.getShedCount());
+    }
+
+    @Test
+    void stopsCallingRedisOnceBreakerOpens() {
+        ReflectionTestUtils.setField(breaker, "minimumCalls", 2L);
+        localCache.putStale(KEY_PREFIX + 4, shop(4L, "Mamala"));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Mamala", query(4L, id -> fail("有旧副本时不应该回源数据库")).getName());
+        }
+
+        // 两次失败后熔断器打开，之后的请求不再访问 Redis
+        verify(valueOperations, times(2)).get(any());
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void batchQueryMergesStaleCopiesAndOneDatabaseLoad() {
+        localCache.putStale(KEY_PREFIX + 1, shop(1L, "103茶餐厅"));
+        List<Collection<Long>> loaded = new ArrayList<>();
+
+        Map<Long, Shop> shops = cacheClient.queryBatchWithPassThrough(KEY_PREFIX, List.of(1L, 2L, 3L), Shop.class, ids -> {
+            loaded.add(List.copyOf(ids));
+            return Map.of(2L, shop(2L, "蔡馬洪涛烤肉"));
+        }, 30L, TimeUnit.MINUTES);
+
+        assertEquals(List.of(1L, 2L), List.copyOf(shops.keySet()));
+        assertEquals("103茶餐厅", shops.get(1L).getName());
+        assertEquals(List.of(List.of(2L, 3L)), loaded);
+    }
+
+    private Shop query(Long id, Function<Long, Shop> dbFallback) {
+        return cacheClient.queryWithPassThrough(KEY_PREFIX, id, Shop.class, dbFallback, 30L, TimeUnit.MINUTES);
+    }
+
+    private static Shop shop(Long id, String name) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName(name);
+        return shop;
+    }
+}
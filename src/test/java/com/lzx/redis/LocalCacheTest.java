@@ -0,0 +1,60 @@
+package com.lzx.redis;
+
+import com.lzx.dto.UserDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * LocalCache 旧副本：按保存时间限制使用、删除缓存时一起删除
+ */
+class LocalCacheTest {
+
+    private static final String KEY = RedisConstants.LOGIN_USER_KEY + "token";
+
+    private LocalCache localCache;
+
+    @BeforeEach
+    void setUp() {
+        localCache = new LocalCache(mock(StringRedisTemplate.class), mock(RedisMessageListenerContainer.class));
+    }
+
+    @Test
+    void boundedStaleReadIgnoresOldCopies() throws InterruptedException {
+        localCache.putStale(KEY, user());
+
+        UserDTO recent = localCache.getStale(KEY, 50, TimeUnit.MILLISECONDS);
+        assertNotNull(recent);
+        assertEquals(1010L, recent.getId());
+
+        Thread.sleep(100);
+        assertNull(localCache.getStale(KEY, 50, TimeUnit.MILLISECONDS));
+        // 不限制保存时间时仍然可用
+        assertNotNull(localCache.getStale(KEY));
+    }
+
+    @Test
+    void invalidateRemovesStaleCopy() {
+        localCache.putStale(KEY, user());
+
+        localCache.invalidate(KEY);
+
+        assertNull(localCache.getStale(KEY));
+        assertNull(localCache.getStale(KEY, RedisConstants.LOCAL_STALE_LOGIN_TTL, TimeUnit.SECONDS));
+    }
+
+    private static UserDTO user() {
+        UserDTO user = new UserDTO();
+        user.setId(1010L);
+        user.setNickName("小鱼同学");
+        return user;
+    }
+}
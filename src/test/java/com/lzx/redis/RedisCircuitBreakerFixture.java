@@ -0,0 +1,32 @@
+package com.lzx.redis;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 测试用的熔断器：统计窗口 10 秒，失败率 50% 打开，打开 60 秒后半开，半开时放行 2 次探测调用
+ */
+final class RedisCircuitBreakerFixture {
+
+    private RedisCircuitBreakerFixture() {
+    }
+
+    /**
+     * 创建并初始化熔断器
+     *
+     * @param minimumCalls 窗口内至少调用多少次才计算失败率
+     * @return 熔断器
+     */
+    static RedisCircuitBreaker create(long minimumCalls) {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "enabled", true);
+        ReflectionTestUtils.setField(breaker, "windowSeconds", 10);
+        ReflectionTestUtils.setField(breaker, "minimumCalls", minimumCalls);
+        ReflectionTestUtils.setField(breaker, "failureRate", 50);
+        ReflectionTestUtils.setField(breaker, "slowCallMillis", 1000L);
+        ReflectionTestUtils.setField(breaker, "slowCallRate", 80);
+        ReflectionTestUtils.setField(breaker, "openSeconds", 60L);
+        ReflectionTestUtils.setField(breaker, "halfOpenCalls", 2);
+        breaker.init();
+        return breaker;
+    }
+}
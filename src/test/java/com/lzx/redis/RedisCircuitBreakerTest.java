@@ -0,0 +1,119 @@
+package com.lzx.redis;
+
+import com.lzx.exception.RedisUnavailableException;
+import io.lettuce.core.RedisCommandExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * RedisCircuitBreaker 状态切换：关闭 -> 打开 -> 半开 -> 关闭 / 重新打开
+ * 打开时间通过修改 openedAt 模拟，不需要真的等待
+ */
+class RedisCircuitBreakerTest {
+
+    private RedisCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = RedisCircuitBreakerFixture.create(4L);
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        breaker.execute(() -> "ok");
+        breaker.execute(() -> "ok");
+        fail();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+
+        // 4 次调用中 2 次失败，达到 50%
+        fail();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenedCount());
+    }
+
+    @Test
+    void rejectsCallsWhileOpen() {
+        open();
+        AtomicInteger invoked = new AtomicInteger();
+
+        assertThrows(RedisUnavailableException.class, () -> breaker.execute(invoked::incrementAndGet));
+        assertEquals(0, invoked.get());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    void serverErrorsDoNotCountAsFailures() {
+        for (int i = 0; i < 10; i++) {
+            assertThrows(RedisSystemException.class, () -> breaker.execute(() -> {
+                throw new RedisSystemException("WRONGTYPE", new RedisCommandExecutionException("WRONGTYPE"));
+            }));
+        }
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate());
+    }
+
+    @Test
+    void closesAfterSuccessfulProbes() {
+        open();
+        elapseOpenTime();
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.execute(() -> "probe-1");
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.execute(() -> "probe-2");
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        // 关闭时清空统计窗口，之前的失败不会让熔断器马上再次打开
+        assertEquals(0, breaker.getCalls());
+    }
+
+    @Test
+    void reopensWhenProbeFails() {
+        open();
+        elapseOpenTime();
+
+        fail();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpenedCount());
+        assertThrows(RedisUnavailableException.class, () -> breaker.execute(() -> "rejected"));
+    }
+
+    @Test
+    void limitsProbesWhileHalfOpen() {
+        open();
+        elapseOpenTime();
+
+        // 探测调用还没有返回时，超过探测次数的调用直接拒绝
+        assertThrows(RedisUnavailableException.class, () -> breaker.execute(() -> {
+            breaker.execute(() -> "probe-2");
+            return breaker.execute(() -> "probe-3");
+        }));
+    }
+
+    /**
+     * 一次连接失败
+     */
+    private void fail() {
+        assertThrows(RedisUnavailableException.class, () -> breaker.execute(() -> {
+            throw new RedisConnectionFailureException("connection refused");
+        }));
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void elapseOpenTime() {
+        ReflectionTestUtils.setField(breaker, "openedAt", 0L);
+    }
+}
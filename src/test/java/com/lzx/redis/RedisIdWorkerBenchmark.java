@@ -0,0 +1,77 @@
+package com.lzx.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisIdWorker 基准测试：每个 ID 一次 INCR（segmentSize = 1）与号段模式对比
+ * 需要本地运行的 Redis，地址通过 -Dredis.host、-Dredis.port 指定，默认 127.0.0.1:6379
+ * 运行方式：在 IDE 中运行 main 方法，或者 mvn test-compile 之后用 test classpath 运行这个类
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class RedisIdWorkerBenchmark {
+
+    // 每次领取的序列号数量，1 是原来的实现
+    @Param({"1", "1000"})
+    private long segmentSize;
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisIdWorker redisIdWorker;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "127.0.0.1"),
+                Integer.getInteger("redis.port", 6379)
+        );
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        redisIdWorker = new RedisIdWorker(new StringRedisTemplate(connectionFactory));
+        ReflectionTestUtils.setField(redisIdWorker, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(redisIdWorker, "prefetchRatio", 0.8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        redisIdWorker.destroy();
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public long nextId() {
+        return redisIdWorker.nextId("benchmark:");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RedisIdWorkerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,98 @@
+package com.lzx.redis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ReentrantRedisLock：重入后部分释放时的续期登记和有效期
+ * 获取锁的脚本总是成功，释放锁的脚本按本地记录的重入次数返回剩余次数
+ */
+class ReentrantRedisLockTest {
+
+    private RedisLockWatchdog watchdog;
+    private ReentrantRedisLock lock;
+
+    // 锁在 Redis 中的重入次数
+    private long count;
+    // 每次执行释放锁脚本时传入的有效期
+    private final List<String> unlockLeases = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            // 获取锁：线程标识、有效期；释放锁：线程标识、有效期、通知频道
+            if (invocation.getArguments().length == 4) {
+                count++;
+                return null;
+            }
+            unlockLeases.add(invocation.getArgument(3));
+            return --count;
+        });
+        RedisLockNotifier notifier = mock(RedisLockNotifier.class);
+        when(notifier.acquire(anyString(), anyLong(), anyBoolean(), any())).thenAnswer(invocation -> {
+            Supplier<Long> attempt = invocation.getArgument(3);
+            return attempt.get() == null;
+        });
+
+        watchdog = new RedisLockWatchdog(stringRedisTemplate);
+        ReflectionTestUtils.setField(watchdog, "leaseSeconds", 30L);
+        lock = new ReentrantRedisLock("order:1", stringRedisTemplate, watchdog, notifier, false);
+    }
+
+    @Test
+    void partialReleaseKeepsFixedLeaseUnrenewed() {
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS));
+        assertTrue(lock.tryLock(0, 10, TimeUnit.SECONDS));
+
+        lock.unlock();
+
+        // 指定租约时间的锁部分释放后仍然不续期，有效期按获取锁时的租约时间重置
+        assertTrue(leases().isEmpty());
+        assertEquals(List.of("10000"), unlockLeases);
+
+        lock.unlock();
+        assertEquals(0, count);
+        assertTrue(leases().isEmpty());
+    }
+
+    @Test
+    void partialReleaseKeepsWatchdogRenewal() {
+        assertTrue(lock.tryLock(0));
+        assertTrue(lock.tryLock(0));
+
+        lock.unlock();
+
+        assertEquals(1, leases().size());
+        assertEquals(1, leases().values().iterator().next());
+        assertEquals(List.of("30000"), unlockLeases);
+
+        lock.unlock();
+        assertTrue(leases().isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, Integer> leases() {
+        return (Map<Object, Integer>) ReflectionTestUtils.getField(watchdog, "leases");
+    }
+}
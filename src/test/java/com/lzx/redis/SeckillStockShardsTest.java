@@ -0,0 +1,157 @@
+package com.lzx.redis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * SeckillStockShards：主分片扣减、主分片售罄后到其他分片扣减的顺序、全部售罄时撤销购买资格
+ * Lua 脚本的执行结果由 mock 按键名返回：两个键的是主分片脚本，一个键的是其他分片的扣减脚本
+ */
+class SeckillStockShardsTest {
+
+    private static final Long VOUCHER_ID = 10L;
+    private static final int SHARDS = 4;
+    // 用户 5 的主分片是 5 % 4 = 1
+    private static final Long USER_ID = 5L;
+    private static final int HOME = 1;
+    // 主分片脚本返回的"主分片已售罄"
+    private static final long HOME_SOLD_OUT = 5L;
+
+    private SetOperations<String, String> setOperations;
+    private SeckillStockShards seckillStockShards;
+
+    // 主分片脚本的返回值
+    private long homeResult;
+    // 其他分片扣减脚本的返回值，按库存键
+    private final Map<String, Long> takeResults = new HashMap<>();
+    // 其他分片扣减脚本的调用顺序
+    private final List<String> takenKeys = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        setOperations = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        // 没有元数据，不判断抢购时间
+        when(hashOperations.multiGet(anyString(), any())).thenReturn(Arrays.asList(null, null, null));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            if (keys.size() == 2) {
+                return homeResult;
+            }
+            takenKeys.add(keys.get(0));
+            return takeResults.getOrDefault(keys.get(0), (long) SeckillStockShards.SOLD_OUT);
+        });
+        seckillStockShards = new SeckillStockShards(stringRedisTemplate);
+    }
+
+    @Test
+    void deductsFromHomeShard() {
+        homeResult = SeckillStockShards.SUCCESS;
+
+        SeckillStockShards.Deduction deduction = seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS);
+
+        assertEquals(new SeckillStockShards.Deduction(SeckillStockShards.SUCCESS, HOME), deduction);
+        assertTrue(takenKeys.isEmpty());
+    }
+
+    @Test
+    void passesThroughHomeShardRejections() {
+        homeResult = SeckillStockShards.DUPLICATE;
+
+        SeckillStockShards.Deduction deduction = seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS);
+
+        assertEquals(new SeckillStockShards.Deduction(SeckillStockShards.DUPLICATE, -1), deduction);
+        assertTrue(takenKeys.isEmpty());
+    }
+
+    @Test
+    void fallsBackToOtherShardsInRingOrder() {
+        homeResult = HOME_SOLD_OUT;
+        takeResults.put(SeckillStockShards.stockKey(VOUCHER_ID, 3), (long) SeckillStockShards.SUCCESS);
+
+        SeckillStockShards.Deduction deduction = seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS);
+
+        assertEquals(new SeckillStockShards.Deduction(SeckillStockShards.SUCCESS, 3), deduction);
+        // 从随机位置开始按环形顺序访问，不会访问主分片，也不会重复访问
+        assertFalse(takenKeys.contains(SeckillStockShards.stockKey(VOUCHER_ID, HOME)));
+        assertEquals(takenKeys.size(), new HashSet<>(takenKeys).size());
+        assertEquals(SeckillStockShards.stockKey(VOUCHER_ID, 3), takenKeys.get(takenKeys.size() - 1));
+        for (int i = 1; i < takenKeys.size(); i++) {
+            int next = (shardOf(takenKeys.get(i - 1)) + 1) % SHARDS;
+            if (next == HOME) {
+                next = (next + 1) % SHARDS;
+            }
+            assertEquals(next, shardOf(takenKeys.get(i)));
+        }
+    }
+
+    @Test
+    void releasesPurchaseWhenAllShardsAreSoldOut() {
+        homeResult = HOME_SOLD_OUT;
+
+        SeckillStockShards.Deduction deduction = seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS);
+
+        assertEquals(new SeckillStockShards.Deduction(SeckillStockShards.SOLD_OUT, -1), deduction);
+        assertEquals(SHARDS - 1, takenKeys.size());
+        verify(setOperations).remove(SeckillStockShards.orderKey(VOUCHER_ID, HOME), USER_ID.toString());
+    }
+
+    @Test
+    void skipsRecentlyEmptyShardsUntilCleared() {
+        homeResult = HOME_SOLD_OUT;
+        seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS);
+        takenKeys.clear();
+
+        // 刚发现售罄的分片短时间内不再访问
+        assertEquals(SeckillStockShards.SOLD_OUT, seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS).status());
+        assertTrue(takenKeys.isEmpty());
+
+        // 补充库存后作废售罄记录，重新访问其他分片
+        seckillStockShards.clearEmptyShards(VOUCHER_ID);
+        takeResults.put(SeckillStockShards.stockKey(VOUCHER_ID, 2), (long) SeckillStockShards.SUCCESS);
+        assertEquals(SeckillStockShards.SUCCESS, seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS).status());
+        assertFalse(takenKeys.isEmpty());
+    }
+
+    @Test
+    void doesNotReleaseWhenHomeShardSucceeds() {
+        homeResult = SeckillStockShards.SUCCESS;
+
+        seckillStockShards.deduct(VOUCHER_ID, USER_ID, SHARDS);
+
+        verify(setOperations, never()).remove(anyString(), any());
+    }
+
+    /**
+     * 从分片库存键 seckill:stock:{10:3} 中取出分片号
+     */
+    private static int shardOf(String stockKey) {
+        return Integer.parseInt(stockKey.substring(stockKey.lastIndexOf(':') + 1, stockKey.length() - 1));
+    }
+}
@@ -0,0 +1,120 @@
+package com.lzx.redis;
+
+import com.lzx.exception.BaseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SingleFlight：相同 key 的并发加载只执行一次，等待超时、加载失败时的行为
+ */
+class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void coalescesConcurrentLoads() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("shop:1", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "shop";
+        }, 5, TimeUnit.SECONDS));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            followers.add(executor.submit(() -> singleFlight.execute("shop:1", () -> {
+                loads.incrementAndGet();
+                return "duplicate";
+            }, 5, TimeUnit.SECONDS)));
+        }
+        // 等待所有后到的线程都挂到同一个 future 上
+        while (singleFlight.getCoalescedCount() < 7) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertEquals("shop", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("shop", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, singleFlight.getLoadCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void waiterTimesOutWithoutLoading() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("shop:2", () -> {
+            loading.countDown();
+            await(release);
+            return "shop";
+        }, 5, TimeUnit.SECONDS));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        assertThrows(BaseException.class, () -> singleFlight.execute("shop:2", () -> "duplicate", 50, TimeUnit.MILLISECONDS));
+        assertEquals(1, singleFlight.getTimeoutCount());
+
+        release.countDown();
+        assertEquals("shop", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void propagatesLoaderFailureAndAllowsRetry() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("shop:3", () -> {
+            loading.countDown();
+            await(release);
+            throw new IllegalStateException("db down");
+        }, 5, TimeUnit.SECONDS));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        Future<String> follower = executor.submit(() -> singleFlight.execute("shop:3", () -> "duplicate", 5, TimeUnit.SECONDS));
+        while (singleFlight.getCoalescedCount() < 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderError.getCause() instanceof IllegalStateException);
+        Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertTrue(followerError.getCause() instanceof IllegalStateException);
+
+        // 失败之后不会留下加载中的记录，下一次请求重新加载
+        assertEquals("shop", singleFlight.execute("shop:3", () -> "shop", 5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
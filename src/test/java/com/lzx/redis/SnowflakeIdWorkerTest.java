@@ -0,0 +1,215 @@
+package com.lzx.redis;
+
+import com.lzx.exception.BaseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * SnowflakeIdWorker：ID 结构（标记位、时间戳、工作节点 ID）、单调递增、时钟回拨时的处理、工作节点 ID 交接
+ * Redis 用一个 Map 模拟，只有工作节点 ID 7 可以租用；时钟回拨通过把保存的时间戳调到当前时间之后模拟
+ */
+class SnowflakeIdWorkerTest {
+
+    private static final long BEGIN_MILLIS = 1640995200000L;
+    private static final int WORKER_ID = 7;
+
+    private static final String LEASE_KEY = RedisConstants.ID_WORKER_LEASE_KEY + "{" + WORKER_ID + "}";
+    private static final String MARK_KEY = RedisConstants.ID_WORKER_MARK_KEY + "{" + WORKER_ID + "}";
+
+    // 模拟的 Redis 键值
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private StringRedisTemplate stringRedisTemplate;
+    private SnowflakeIdWorker idWorker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.setIfAbsent(eq(LEASE_KEY), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(LEASE_KEY, invocation.getArgument(1)) == null);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        // 释放租约的脚本：是自己的租约时记录最大时间戳（只增不减），删除租约
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            String owner = invocation.getArgument(2);
+            long mark = Long.parseLong(invocation.getArgument(3));
+            if (!owner.equals(redis.get(keys.get(0)))) {
+                return 0L;
+            }
+            redis.merge(keys.get(1), Long.toString(mark), (old, value) -> Long.toString(Math.max(Long.parseLong(old), mark)));
+            redis.remove(keys.get(0));
+            return 1L;
+        });
+
+        idWorker = newWorker();
+    }
+
+    @AfterEach
+    void tearDown() {
+        idWorker.destroy();
+    }
+
+    @Test
+    void layoutContainsMarkerTimestampAndWorker() {
+        heartbeat();
+        long before = System.currentTimeMillis() - BEGIN_MILLIS;
+
+        long id = idWorker.nextId("order");
+
+        long after = System.currentTimeMillis() - BEGIN_MILLIS;
+        assertTrue(id > 0);
+        assertEquals(1L, id >>> 62);
+        assertEquals(WORKER_ID, (id >>> 12) & 0x3FF);
+        long timestamp = (id >>> 22) & ((1L << 40) - 1);
+        assertTrue(timestamp >= before && timestamp <= after);
+    }
+
+    @Test
+    void idsAreStrictlyIncreasing() {
+        heartbeat();
+
+        long last = idWorker.nextId("order");
+        for (int i = 0; i < 100_000; i++) {
+            long id = idWorker.nextId("order");
+            assertTrue(id > last);
+            last = id;
+        }
+    }
+
+    @Test
+    void keepsIncreasingWhenClockMovesBackSlightly() {
+        heartbeat();
+        long before = idWorker.nextId("order");
+        // 时钟回拨 50 ms：保存的时间戳比当前时间超前 50 ms，沿用保存的时间戳继续分配
+        long ahead = System.currentTimeMillis() - BEGIN_MILLIS + 50;
+        state().set(ahead << 12);
+
+        long id = idWorker.nextId("order");
+
+        assertTrue(id > before);
+        assertEquals(ahead, (id >>> 22) & ((1L << 40) - 1));
+        assertEquals(1L, id & 0xFFF);
+    }
+
+    @Test
+    void waitsForClockWhenBorrowedTooMuch() {
+        heartbeat();
+        long ahead = System.currentTimeMillis() - BEGIN_MILLIS + 150;
+        state().set(ahead << 12);
+
+        long id = idWorker.nextId("order");
+
+        // 超前超过 100 ms 时等待时钟追上，之后的时间戳不会早于保存的时间戳
+        long timestamp = (id >>> 22) & ((1L << 40) - 1);
+        assertTrue(timestamp >= ahead);
+        assertTrue(System.currentTimeMillis() - BEGIN_MILLIS >= ahead - 100);
+    }
+
+    @Test
+    void rejectsWhenClockMovesBackTooFar() {
+        heartbeat();
+        state().set((System.currentTimeMillis() - BEGIN_MILLIS + 10_000) << 12);
+
+        assertThrows(BaseException.class, () -> idWorker.nextId("order"));
+    }
+
+    @Test
+    void rejectsWithoutLease() {
+        assertThrows(BaseException.class, () -> idWorker.nextId("order"));
+
+        heartbeat();
+        // 租约在本地已经过期，续约一直失败
+        ReflectionTestUtils.setField(idWorker, "leaseDeadline", System.currentTimeMillis() - 1);
+        assertThrows(BaseException.class, () -> idWorker.nextId("order"));
+    }
+
+    @Test
+    void newHolderWaitsForPreviousHolderMark() {
+        heartbeat();
+        // 上一个持有者借用了 80 ms 的未来时间戳
+        long ahead = System.currentTimeMillis() - BEGIN_MILLIS + 80;
+        state().set(ahead << 12);
+        long last = idWorker.nextId("order");
+        idWorker.destroy();
+        assertEquals(Long.toString(BEGIN_MILLIS + ahead), redis.get(MARK_KEY));
+        assertFalse(redis.containsKey(LEASE_KEY));
+
+        // 立即接手同一个工作节点 ID 的节点，在时钟超过记录的时间戳加上时钟偏差之前不生成 ID
+        SnowflakeIdWorker next = newWorker();
+        ReflectionTestUtils.setField(next, "skewMillis", 50L);
+        ReflectionTestUtils.invokeMethod(next, "heartbeat");
+        assertEquals(WORKER_ID, (int) ReflectionTestUtils.getField(next, "workerId"));
+        assertThrows(BaseException.class, () -> next.nextId("order"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        Long id = null;
+        while (id == null && System.currentTimeMillis() < deadline) {
+            try {
+                id = next.nextId("order");
+            } catch (BaseException e) {
+                Thread.onSpinWait();
+            }
+        }
+        assertNotNull(id);
+        assertTrue(System.currentTimeMillis() >= BEGIN_MILLIS + ahead + 50);
+        // 时间戳在上一个持有者分配过的所有时间戳之后，不会生成重复的 ID
+        assertTrue(((id >>> 22) & ((1L << 40) - 1)) > ahead);
+        assertTrue(id > last);
+        next.destroy();
+    }
+
+    @Test
+    void releaseKeepsHigherMark() {
+        long future = System.currentTimeMillis() + 60_000;
+        redis.put(MARK_KEY, Long.toString(future));
+        heartbeat();
+
+        idWorker.destroy();
+
+        assertEquals(Long.toString(future), redis.get(MARK_KEY));
+    }
+
+    private SnowflakeIdWorker newWorker() {
+        SnowflakeIdWorker worker = new SnowflakeIdWorker(stringRedisTemplate);
+        ReflectionTestUtils.setField(worker, "leaseSeconds", 60L);
+        ReflectionTestUtils.setField(worker, "maxBorrowMillis", 100L);
+        ReflectionTestUtils.setField(worker, "maxWaitMillis", 5000L);
+        ReflectionTestUtils.setField(worker, "skewMillis", 0L);
+        return worker;
+    }
+
+    private void heartbeat() {
+        ReflectionTestUtils.invokeMethod(idWorker, "heartbeat");
+        assertEquals(WORKER_ID, (int) ReflectionTestUtils.getField(idWorker, "workerId"));
+    }
+
+    private AtomicLong state() {
+        return (AtomicLong) ReflectionTestUtils.getField(idWorker, "state");
+    }
+}
@@ -0,0 +1,126 @@
+package com.lzx.redis.codec;
+
+import com.lzx.entity.Shop;
+import com.lzx.redis.CacheMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * CacheCodecs：二进制格式的编解码往返、超过阈值时压缩、旧版 JSON 格式兼容、损坏数据的处理
+ */
+class CacheCodecsTest {
+
+    // 帧头第 4 个字节是标志位，第 2 位表示数据经过压缩
+    private static final int FLAG_COMPRESSED = 2;
+
+    private CacheCodecs cacheCodecs;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        CacheCompressor compressor = new CacheCompressor(mock(RedisTemplate.class));
+        ReflectionTestUtils.setField(compressor, "enabled", true);
+        ReflectionTestUtils.setField(compressor, "threshold", 512);
+        JsonCacheCodec jsonCodec = new JsonCacheCodec();
+        cacheCodecs = new CacheCodecs(List.of(jsonCodec, new BinaryCacheCodec()), jsonCodec, compressor, mock(CacheMetrics.class));
+        ReflectionTestUtils.setField(cacheCodecs, "writeCodecName", BinaryCacheCodec.NAME);
+        cacheCodecs.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheCodecs.destroy();
+    }
+
+    @Test
+    void roundTripsWithExpireAndDelta() {
+        Shop shop = shop("103茶餐厅");
+        long expireAt = System.currentTimeMillis() + 60_000;
+
+        byte[] bytes = cacheCodecs.encode("cache:shop:1", shop, expireAt, 35);
+        CacheValue<Shop> value = cacheCodecs.decodeLogical("cache:shop:1", bytes, Shop.class);
+
+        assertNotNull(value);
+        assertEquals(expireAt, value.expireAt());
+        assertEquals(35, value.delta());
+        assertShopEquals(shop, value.data());
+    }
+
+    @Test
+    void smallValuesAreNotCompressed() {
+        byte[] bytes = cacheCodecs.encode("cache:shop:1", shop("103茶餐厅"));
+
+        assertEquals(0, bytes[3] & FLAG_COMPRESSED);
+        assertEquals(CacheCodecs.NO_EXPIRE, cacheCodecs.decode("cache:shop:1", bytes, Shop.class).expireAt());
+    }
+
+    @Test
+    void largeValuesAreCompressedAndRoundTrip() {
+        Shop shop = shop("103茶餐厅");
+        shop.setImages("https://qcloud.dpfile.com/pc/image.jpg,".repeat(40));
+
+        byte[] bytes = cacheCodecs.encode("cache:shop:1", shop);
+        CacheValue<Shop> value = cacheCodecs.decode("cache:shop:1", bytes, Shop.class);
+
+        assertTrue((bytes[3] & FLAG_COMPRESSED) != 0);
+        assertTrue(bytes.length < shop.getImages().length());
+        assertShopEquals(shop, value.data());
+    }
+
+    @Test
+    void decodesLegacyJson() {
+        byte[] legacy = "{\"id\":1,\"name\":\"103茶餐厅\"}".getBytes(StandardCharsets.UTF_8);
+
+        CacheValue<Shop> value = cacheCodecs.decode("cache:shop:1", legacy, Shop.class);
+
+        assertEquals(1L, value.data().getId());
+        assertEquals("103茶餐厅", value.data().getName());
+        assertEquals(CacheCodecs.NO_EXPIRE, value.expireAt());
+    }
+
+    @Test
+    void corruptedDataIsTreatedAsMiss() {
+        byte[] bytes = cacheCodecs.encode("cache:shop:1", shop("103茶餐厅"));
+        byte[] truncated = Arrays.copyOf(bytes, 6);
+
+        assertNull(cacheCodecs.decode("cache:shop:1", truncated, Shop.class));
+    }
+
+    private static Shop shop(String name) {
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName(name);
+        shop.setTypeId(1L);
+        shop.setArea("大关");
+        shop.setX(120.149192);
+        shop.setY(30.316078);
+        shop.setAvgPrice(80L);
+        shop.setScore(37);
+        shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+        return shop;
+    }
+
+    private static void assertShopEquals(Shop expected, Shop actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getImages(), actual.getImages());
+        assertEquals(expected.getX(), actual.getX());
+        assertEquals(expected.getAvgPrice(), actual.getAvgPrice());
+        assertEquals(expected.getScore(), actual.getScore());
+        assertEquals(expected.getCreateTime(), actual.getCreateTime());
+    }
+}
@@ -0,0 +1,59 @@
+package com.lzx.redis.codec;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * CacheCompressor：压缩阈值、压缩后不变小的数据不压缩、关闭压缩
+ */
+class CacheCompressorTest {
+
+    private CacheCompressor compressor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        compressor = new CacheCompressor(mock(RedisTemplate.class));
+        ReflectionTestUtils.setField(compressor, "enabled", true);
+        ReflectionTestUtils.setField(compressor, "threshold", 512);
+    }
+
+    @Test
+    void respectsThreshold() {
+        byte[] payload = "a".repeat(511).getBytes(StandardCharsets.UTF_8);
+        assertNull(compressor.compress(payload));
+
+        byte[] larger = "a".repeat(512).getBytes(StandardCharsets.UTF_8);
+        CacheCompressor.Compressed compressed = compressor.compress(larger);
+        assertNotNull(compressed);
+        assertTrue(compressed.bytes().length < larger.length);
+        // 没有加载共享字典
+        assertEquals(0, compressed.dictionaryId());
+    }
+
+    @Test
+    void incompressibleValuesStayUncompressed() {
+        byte[] random = new byte[1024];
+        new Random(1).nextBytes(random);
+
+        assertNull(compressor.compress(random));
+    }
+
+    @Test
+    void disabledCompressorNeverCompresses() {
+        ReflectionTestUtils.setField(compressor, "enabled", false);
+
+        assertNull(compressor.compress("a".repeat(4096).getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,171 @@
+package com.lzx.task;
+
+import com.lzx.redis.RedisConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * SeckillOrderRecovery：按投递次数指数退避重新投递，投递次数达到上限的消息移到死信队列
+ * 最小空闲时间 1 秒、上限 8 秒，需要的空闲时间依次为 1、2、4、8、8... 秒
+ */
+class SeckillOrderRecoveryTest {
+
+    private static final String GROUP = "g1";
+
+    private StreamOperations<String, Object, Object> streamOperations;
+    private SeckillOrderConsumer seckillOrderConsumer;
+    private SeckillOrderRecovery recovery;
+
+    // XCLAIM 转移过的消息 ID
+    private final List<RecordId> claimedIds = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        streamOperations = mock(StreamOperations.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(streamOperations.claim(eq(RedisConstants.SECKILL_STREAMS_ORDER_KEY), eq(GROUP), anyString(), any(XClaimOptions.class)))
+                .thenAnswer(invocation -> {
+                    XClaimOptions options = invocation.getArgument(3);
+                    claimedIds.addAll(options.getIds());
+                    return options.getIds().stream().map(SeckillOrderRecoveryTest::record).toList();
+                });
+        seckillOrderConsumer = mock(SeckillOrderConsumer.class);
+
+        recovery = new SeckillOrderRecovery(stringRedisTemplate, seckillOrderConsumer);
+        ReflectionTestUtils.setField(recovery, "group", GROUP);
+        ReflectionTestUtils.setField(recovery, "minIdleMillis", 1000L);
+        ReflectionTestUtils.setField(recovery, "maxIdleMillis", 8000L);
+        ReflectionTestUtils.setField(recovery, "maxDeliveries", 5L);
+        ReflectionTestUtils.setField(recovery, "scanCount", 100);
+        ReflectionTestUtils.setField(recovery, "maxPages", 10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriesOnlyMessagesPastTheirBackoff() {
+        pending(
+                pendingMessage("1-0", 1, 1500),
+                pendingMessage("2-0", 2, 1500),
+                pendingMessage("3-0", 3, 4500),
+                pendingMessage("4-0", 4, 7000)
+        );
+
+        recover();
+
+        // 2-0 需要 2 秒，4-0 需要 8 秒，都还没到期
+        assertEquals(List.of(RecordId.of("1-0"), RecordId.of("3-0")), claimedIds);
+        ArgumentCaptor<List<MapRecord<String, Object, Object>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(seckillOrderConsumer).handleBatch(captor.capture());
+        assertEquals(List.of(RecordId.of("1-0"), RecordId.of("3-0")),
+                captor.getValue().stream().map(MapRecord::getId).toList());
+        verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    void capsBackoffAtMaxIdle() {
+        ReflectionTestUtils.setField(recovery, "maxDeliveries", 100L);
+        pending(pendingMessage("1-0", 40, 8000));
+
+        recover();
+
+        assertEquals(8000L, (long) ReflectionTestUtils.invokeMethod(recovery, "requiredIdleMillis", 40L));
+        assertEquals(List.of(RecordId.of("1-0")), claimedIds);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void movesExhaustedMessagesToDeadLetter() {
+        pending(pendingMessage("1-0", 5, 9000), pendingMessage("2-0", 5, 7000));
+
+        recover();
+
+        // 2-0 虽然达到投递次数上限，但还没到期，留在 pending-list 中
+        assertEquals(List.of(RecordId.of("1-0")), claimedIds);
+        ArgumentCaptor<MapRecord<String, String, String>> captor = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamOperations).add(captor.capture());
+        MapRecord<String, String, String> deadLetter = captor.getValue();
+        assertEquals(RedisConstants.SECKILL_STREAMS_ORDER_DLQ_KEY, deadLetter.getStream());
+        assertEquals("1-0", deadLetter.getValue().get("originId"));
+        assertEquals("5", deadLetter.getValue().get("deliveries"));
+        assertEquals("consumer-0", deadLetter.getValue().get("consumer"));
+        assertEquals("1-0", deadLetter.getValue().get("id"));
+        verify(streamOperations).acknowledge(RedisConstants.SECKILL_STREAMS_ORDER_KEY, GROUP, RecordId.of("1-0"));
+        verify(seckillOrderConsumer, never()).handleBatch(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scansNextPageAfterLastId() {
+        ReflectionTestUtils.setField(recovery, "scanCount", 2);
+        PendingMessages firstPage = pendingMessages(pendingMessage("1-0", 1, 0), pendingMessage("2-0", 1, 0));
+        PendingMessages secondPage = pendingMessages(pendingMessage("3-0", 1, 1500));
+        when(streamOperations.pending(eq(RedisConstants.SECKILL_STREAMS_ORDER_KEY), eq(GROUP), any(Range.class), anyLong()))
+                .thenReturn(firstPage, secondPage);
+
+        recover();
+
+        ArgumentCaptor<Range<String>> captor = ArgumentCaptor.forClass(Range.class);
+        verify(streamOperations, times(2))
+                .pending(eq(RedisConstants.SECKILL_STREAMS_ORDER_KEY), eq(GROUP), captor.capture(), anyLong());
+        Range<String> nextRange = captor.getAllValues().get(1);
+        assertEquals("2-0", nextRange.getLowerBound().getValue().orElseThrow());
+        assertFalse(nextRange.getLowerBound().isInclusive());
+        assertEquals(List.of(RecordId.of("3-0")), claimedIds);
+    }
+
+    private void recover() {
+        ReflectionTestUtils.invokeMethod(recovery, "recover");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pending(PendingMessage... messages) {
+        when(streamOperations.pending(eq(RedisConstants.SECKILL_STREAMS_ORDER_KEY), eq(GROUP), any(Range.class), anyLong()))
+                .thenReturn(pendingMessages(messages));
+    }
+
+    private static PendingMessages pendingMessages(PendingMessage... messages) {
+        return new PendingMessages(GROUP, List.of(messages));
+    }
+
+    private static PendingMessage pendingMessage(String id, long deliveries, long idleMillis) {
+        return new PendingMessage(RecordId.of(id), Consumer.from(GROUP, "consumer-0"), Duration.ofMillis(idleMillis), deliveries);
+    }
+
+    private static MapRecord<String, Object, Object> record(RecordId id) {
+        return StreamRecords.newRecord()
+                .in(RedisConstants.SECKILL_STREAMS_ORDER_KEY)
+                .withId(id)
+                .ofMap(Map.<Object, Object>of("id", id.getValue(), "userId", "1010", "voucherId", "10"));
+    }
+}